@@ -0,0 +1,42 @@
+package vacislavbaluyev.eduatlas.config;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Aggiunge il Cache-Control preparato da CachePaesiInterceptor subito prima della scrittura del corpo,
+ * quando lo stato della risposta è già stabilito: solo le risposte 2xx diventano riusabili da browser e CDN.
+ * Le risposte di errore (anche quelle di GlobalExceptionHandler) passano di qui senza riceverlo.
+ */
+@ControllerAdvice
+public class CacheControlPaesiAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (request instanceof ServletServerHttpRequest servletRequest
+                && response instanceof ServletServerHttpResponse servletResponse
+                && servletRequest.getServletRequest().getAttribute(CachePaesiInterceptor.ATTRIBUTO_CACHE_CONTROL)
+                        instanceof String cacheControl) {
+            int stato = servletResponse.getServletResponse().getStatus();
+            if (stato >= 200 && stato < 300) {
+                response.getHeaders().set(HttpHeaders.CACHE_CONTROL, cacheControl);
+            }
+        }
+        return body;
+    }
+}
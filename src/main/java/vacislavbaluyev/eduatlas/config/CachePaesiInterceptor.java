@@ -0,0 +1,56 @@
+package vacislavbaluyev.eduatlas.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import vacislavbaluyev.eduatlas.service.CorpiPaesiCache;
+import vacislavbaluyev.eduatlas.service.CountryCatalogue;
+
+import java.time.Duration;
+
+/**
+ * GET condizionali sulle letture dei paesi: ETag forte e Last-Modified derivano dalla versione persistita
+ * del catalogo, quindi una richiesta con If-None-Match (o If-Modified-Since) ancora valido riceve 304 prima di
+ * arrivare al controller, qualunque replica la serva. Cache-Control public permette a browser e CDN di riusare
+ * la risposta per max-age; sulle risposte del controller lo aggiunge CacheControlPaesiAdvice, solo se 2xx.
+ * Gli endpoint con @CorpoPrecalcolato hanno due rappresentazioni (JSON e JSON gzip), quindi due ETag distinti.
+ */
+public class CachePaesiInterceptor implements HandlerInterceptor {
+
+    static final String ATTRIBUTO_CACHE_CONTROL = CachePaesiInterceptor.class.getName() + ".cacheControl";
+
+    private final CountryCatalogue countryCatalogue;
+    private final String cacheControl;
+
+    public CachePaesiInterceptor(CountryCatalogue countryCatalogue, Duration maxAge) {
+        this.countryCatalogue = countryCatalogue;
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePublic().getHeaderValue();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())) {
+            return true;
+        }
+        CountryCatalogue.VersioneDataset versione = countryCatalogue.versioneDataset();
+        String etag = versione.etag();
+        if (handler instanceof HandlerMethod metodo && metodo.hasMethodAnnotation(CorpoPrecalcolato.class)) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (CorpiPaesiCache.accettaGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING))) {
+                etag = etag.substring(0, etag.length() - 1) + "-gz\"";
+            }
+        }
+        // Imposta ETag e Last-Modified e, se il client ha già questa versione, risponde 304
+        if (new ServletWebRequest(request, response).checkNotModified(etag, versione.ultimaModificaMillis())) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+            return false;
+        }
+        // Un 404 o un errore non devono finire nella cache: l'intestazione si decide quando lo stato è noto
+        request.setAttribute(ATTRIBUTO_CACHE_CONTROL, cacheControl);
+        return true;
+    }
+}
@@ -0,0 +1,17 @@
+package vacislavbaluyev.eduatlas.config;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Segna un endpoint che risponde con un corpo già serializzato, in chiaro o compresso con gzip secondo
+ * Accept-Encoding: CachePaesiInterceptor aggiunge Vary: Accept-Encoding e usa un ETag distinto per la variante gzip
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CorpoPrecalcolato {
+}
@@ -0,0 +1,104 @@
+package vacislavbaluyev.eduatlas.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limita il numero di connessioni aperte contemporaneamente: ogni getConnection prende un permesso,
+ * restituito alla chiusura della connessione. Con i thread virtuali migliaia di richieste possono chiedere
+ * una connessione nello stesso momento; qui attendono in ordine di arrivo (semaforo fair) e, oltre
+ * l'attesa massima, falliscono subito invece di accumularsi sul pool e su PostgreSQL.
+ */
+public class DataSourceLimitato extends DelegatingDataSource {
+
+    private final Semaphore permessi;
+    private final long attesaMassimaNanos;
+
+    public DataSourceLimitato(DataSource dataSource, int connessioniMassime, Duration attesaMassima) {
+        super(dataSource);
+        this.permessi = new Semaphore(connessioniMassime, true);
+        this.attesaMassimaNanos = attesaMassima.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        acquisisci();
+        try {
+            return rilascioAllaChiusura(super.getConnection());
+        } catch (SQLException | RuntimeException e) {
+            permessi.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        acquisisci();
+        try {
+            return rilascioAllaChiusura(super.getConnection(username, password));
+        } catch (SQLException | RuntimeException e) {
+            permessi.release();
+            throw e;
+        }
+    }
+
+    public int permessiDisponibili() {
+        return permessi.availablePermits();
+    }
+
+    private void acquisisci() throws SQLException {
+        try {
+            if (!permessi.tryAcquire(attesaMassimaNanos, TimeUnit.NANOSECONDS)) {
+                // SQLState 08: Hibernate e Spring la traducono in un errore di connessione (503)
+                throw new SQLTransientConnectionException(
+                        "Troppe richieste concorrenti al database: attesa massima superata", "08001");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Attesa di una connessione interrotta", "08001", e);
+        }
+    }
+
+    // Il permesso viene restituito alla prima chiusura; tutti gli altri metodi (unwrap compreso) passano alla connessione
+    private Connection rilascioAllaChiusura(Connection connessione) {
+        AtomicBoolean chiusa = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, metodo, argomenti) -> {
+                    switch (metodo.getName()) {
+                        case "equals":
+                            return proxy == argomenti[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            break;
+                    }
+                    if ("close".equals(metodo.getName()) && metodo.getParameterCount() == 0) {
+                        try {
+                            connessione.close();
+                        } finally {
+                            if (chiusa.compareAndSet(false, true)) {
+                                permessi.release();
+                            }
+                        }
+                        return null;
+                    }
+                    try {
+                        return metodo.invoke(connessione, argomenti);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,42 @@
+package vacislavbaluyev.eduatlas.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Modalità a thread virtuali (spring.threads.virtual.enabled=true): Tomcat e @Async eseguono ogni richiesta
+ * su un thread virtuale, quindi le richieste bloccate su JDBC non occupano più un thread di piattaforma.
+ * Il limite alla concorrenza passa dal pool di Tomcat al database: il DataSource viene avvolto in un
+ * DataSourceLimitato con tanti permessi quante le connessioni del pool Hikari.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class ThreadVirtualiConfig {
+
+    @Bean
+    static BeanPostProcessor dataSourceLimitatoPostProcessor(
+            @Value("${eduatlas.db.attesa-massima:5s}") Duration attesaMassima) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource hikari) {
+                    // Senza configurazione esplicita Hikari usa 10 connessioni, valore fissato solo all'avvio del pool
+                    int connessioni = hikari.getMaximumPoolSize() > 0 ? hikari.getMaximumPoolSize() : 10;
+                    log.info("Thread virtuali attivi: al più {} connessioni contemporanee, attesa massima {}",
+                            connessioni, attesaMassima);
+                    return new DataSourceLimitato(hikari, connessioni, attesaMassima);
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,28 @@
+package vacislavbaluyev.eduatlas.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import vacislavbaluyev.eduatlas.service.CountryCatalogue;
+
+import java.time.Duration;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final CountryCatalogue countryCatalogue;
+    private final Duration maxAgePaesi;
+
+    public WebConfig(CountryCatalogue countryCatalogue,
+                     @Value("${eduatlas.http.paesi.max-age:60s}") Duration maxAgePaesi) {
+        this.countryCatalogue = countryCatalogue;
+        this.maxAgePaesi = maxAgePaesi;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new CachePaesiInterceptor(countryCatalogue, maxAgePaesi))
+                .addPathPatterns("/paesi", "/paesi/**");
+    }
+}
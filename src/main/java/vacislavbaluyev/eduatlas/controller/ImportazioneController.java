@@ -0,0 +1,52 @@
+package vacislavbaluyev.eduatlas.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import vacislavbaluyev.eduatlas.payload.StatoImportDTO;
+import vacislavbaluyev.eduatlas.service.ImportJobService;
+import vacislavbaluyev.eduatlas.service.SnapshotMatriceService;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/importazioni")
+@RequiredArgsConstructor
+public class ImportazioneController {
+    private final ImportJobService importJobService;
+    private final SnapshotMatriceService snapshotMatriceService;
+
+    @PostMapping(value = "/matrice", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'ROOT_ADMIN')")
+    public ResponseEntity<StatoImportDTO> importaMatrice(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "rimuoviAssenti", defaultValue = "false") boolean rimuoviAssenti) throws IOException {
+        StatoImportDTO stato = importJobService.avvia(file, rimuoviAssenti);
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/importazioni/{id}")
+                .buildAndExpand(stato.id())
+                .toUri();
+        return ResponseEntity.accepted().location(location).body(stato);
+    }
+
+    @GetMapping(value = "/snapshot", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'ROOT_ADMIN')")
+    public ResponseEntity<byte[]> esportaSnapshot() {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"matrice.snapshot\"")
+                .body(snapshotMatriceService.esporta());
+    }
+
+    @GetMapping("/{id}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'ROOT_ADMIN')")
+    public ResponseEntity<StatoImportDTO> getStatoImportazione(@PathVariable UUID id) {
+        return ResponseEntity.ok(importJobService.getStato(id));
+    }
+}
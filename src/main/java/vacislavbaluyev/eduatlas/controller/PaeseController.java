@@ -1,15 +1,26 @@
 package vacislavbaluyev.eduatlas.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import vacislavbaluyev.eduatlas.config.CorpoPrecalcolato;
+import vacislavbaluyev.eduatlas.exception.ResourceNotFoundException;
+import vacislavbaluyev.eduatlas.payload.ConfrontoPaesiDTO;
 import vacislavbaluyev.eduatlas.payload.DettaglioPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.FiltroPaeseDTO;
 import vacislavbaluyev.eduatlas.payload.PaeseCreateDTO;
 import vacislavbaluyev.eduatlas.payload.PaeseDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaRichiestaDTO;
+import vacislavbaluyev.eduatlas.payload.QueryPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.RisultatoQueryPaeseDTO;
+import vacislavbaluyev.eduatlas.service.CorpiPaesiCache;
 import vacislavbaluyev.eduatlas.service.PaeseService;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
 import java.util.List;
 
 @RestController
@@ -17,15 +28,30 @@ import java.util.List;
 @RequiredArgsConstructor
 public class PaeseController {
     private final PaeseService paeseService;
+    private final CorpiPaesiCache corpiPaesiCache;
+
+    // Le due letture più frequenti scrivono byte già serializzati (e già compressi se il client accetta gzip).
+    // Come i filtri, GET /paesi è sempre paginato per id: senza parametri restituisce la prima pagina di
+    // dimensione predefinita, condivisa tra le richieste; con cursore o dimensione si passa a getPaesi
+    @GetMapping(params = {"!cursore", "!dimensione"})
+    @CorpoPrecalcolato
+    public ResponseEntity<byte[]> getPrimaPaginaPaesi(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        CorpiPaesiCache.PrimaPagina prima = corpiPaesiCache.primaPagina();
+        return corpo(prima.corpo(), acceptEncoding, prima.cursoreSuccessivo());
+    }
 
     @GetMapping
-    public ResponseEntity<List<DettaglioPaeseDTO>> getAllPaesi() {
-        return ResponseEntity.ok(paeseService.getAllPaesi());
+    public ResponseEntity<List<DettaglioPaeseDTO>> getPaesi(@Valid PaginaRichiestaDTO pagina) {
+        return RispostePaginate.ok(paeseService.getPaesi(pagina));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<DettaglioPaeseDTO> getPaeseById(@PathVariable Long id) {
-        return ResponseEntity.ok(paeseService.getPaeseById(id));
+    @CorpoPrecalcolato
+    public ResponseEntity<byte[]> getPaeseById(@PathVariable Long id,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        CorpiPaesiCache.Corpo corpo = corpiPaesiCache.paese(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Paese", "id", id));
+        return corpo(corpo, acceptEncoding, null);
     }
 
     @GetMapping("/nome/{nome}")
@@ -34,8 +60,9 @@ public class PaeseController {
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<PaeseDTO>> searchPaesi(@RequestParam("q") String query) {
-        return ResponseEntity.ok(paeseService.searchPaesiByNome(query));
+    public ResponseEntity<List<PaeseDTO>> searchPaesi(@RequestParam("q") String query,
+                                                      @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return ResponseEntity.ok(paeseService.searchPaesiByNome(query, limit));
     }
 
     @GetMapping("/confronta")
@@ -44,24 +71,63 @@ public class PaeseController {
         return ResponseEntity.ok(paeseService.confrontaPaesiByNome(paese1, paese2));
     }
 
+    @GetMapping(value = "/confronta", params = "paesi")
+    public ResponseEntity<ConfrontoPaesiDTO> confrontaPaesi(
+            @RequestParam("paesi")
+            @Size(min = 2, max = 10, message = "Si possono confrontare da 2 a 10 paesi")
+            List<String> paesi) {
+        return ResponseEntity.ok(paeseService.confrontaPaesiByNome(paesi));
+    }
+
     @GetMapping("/anni-scuola/{anni}")
-    public ResponseEntity<List<DettaglioPaeseDTO>> getPaesiByAnniScuola(@PathVariable Integer anni) {
-        return ResponseEntity.ok(paeseService.getPaesiByAnniScuolaObbligatoria(anni));
+    public ResponseEntity<List<DettaglioPaeseDTO>> getPaesiByAnniScuola(@PathVariable Integer anni, @Valid PaginaRichiestaDTO pagina) {
+        return RispostePaginate.ok(paeseService.getPaesiByAnniScuolaObbligatoria(anni, pagina));
+    }
+
+    @GetMapping("/anni-scuola")
+    public ResponseEntity<List<DettaglioPaeseDTO>> getPaesiByAnniScuolaRange(@RequestParam(required = false) Integer min,
+                                                                             @RequestParam(required = false) Integer max,
+                                                                             @Valid PaginaRichiestaDTO pagina) {
+        return RispostePaginate.ok(paeseService.getPaesiByAnniScuolaObbligatoria(min, max, pagina));
     }
 
     @GetMapping("/durata-base/{anni}")
-    public ResponseEntity<List<DettaglioPaeseDTO>> getPaesiByDurataBase(@PathVariable Integer anni) {
-        return ResponseEntity.ok(paeseService.getPaesiByDurataBaseAnni(anni));
+    public ResponseEntity<List<DettaglioPaeseDTO>> getPaesiByDurataBase(@PathVariable Integer anni, @Valid PaginaRichiestaDTO pagina) {
+        return RispostePaginate.ok(paeseService.getPaesiByDurataBaseAnni(anni, pagina));
+    }
+
+    @GetMapping("/durata-base")
+    public ResponseEntity<List<DettaglioPaeseDTO>> getPaesiByDurataBaseRange(@RequestParam(required = false) Integer min,
+                                                                             @RequestParam(required = false) Integer max,
+                                                                             @Valid PaginaRichiestaDTO pagina) {
+        return RispostePaginate.ok(paeseService.getPaesiByDurataBaseAnni(min, max, pagina));
     }
 
     @GetMapping("/crediti-anno/{crediti}")
-    public ResponseEntity<List<DettaglioPaeseDTO>> getPaesiByCreditiAnno(@PathVariable Integer crediti) {
-        return ResponseEntity.ok(paeseService.getPaesiByCreditiPerAnno(crediti));
+    public ResponseEntity<List<DettaglioPaeseDTO>> getPaesiByCreditiAnno(@PathVariable Integer crediti, @Valid PaginaRichiestaDTO pagina) {
+        return RispostePaginate.ok(paeseService.getPaesiByCreditiPerAnno(crediti, pagina));
+    }
+
+    @GetMapping("/crediti-anno")
+    public ResponseEntity<List<DettaglioPaeseDTO>> getPaesiByCreditiAnnoRange(@RequestParam(required = false) Integer min,
+                                                                              @RequestParam(required = false) Integer max,
+                                                                              @Valid PaginaRichiestaDTO pagina) {
+        return RispostePaginate.ok(paeseService.getPaesiByCreditiPerAnno(min, max, pagina));
     }
 
     @GetMapping("/livello-eqf/{livello}")
-    public ResponseEntity<List<DettaglioPaeseDTO>> getPaesiByLivelloEQF(@PathVariable String livello) {
-        return ResponseEntity.ok(paeseService.getPaesiByLivelloEQF(livello));
+    public ResponseEntity<List<DettaglioPaeseDTO>> getPaesiByLivelloEQF(@PathVariable String livello, @Valid PaginaRichiestaDTO pagina) {
+        return RispostePaginate.ok(paeseService.getPaesiByLivelloEQF(livello, pagina));
+    }
+
+    @GetMapping("/filtra")
+    public ResponseEntity<List<DettaglioPaeseDTO>> filtraPaesi(FiltroPaeseDTO filtro, @Valid PaginaRichiestaDTO pagina) {
+        return RispostePaginate.ok(paeseService.filtraPaesi(filtro, pagina));
+    }
+
+    @GetMapping("/query")
+    public ResponseEntity<RisultatoQueryPaeseDTO> queryPaesi(@Valid QueryPaeseDTO query) {
+        return ResponseEntity.ok(paeseService.queryPaesi(query));
     }
 
     @PostMapping
@@ -76,4 +142,16 @@ public class PaeseController {
         paeseService.deletePaese(id);
         return ResponseEntity.ok().build();
     }
-}
\ No newline at end of file
+
+    private static ResponseEntity<byte[]> corpo(CorpiPaesiCache.Corpo corpo, String acceptEncoding, String cursoreSuccessivo) {
+        boolean gzip = CorpiPaesiCache.accettaGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder risposta = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            risposta.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        if (cursoreSuccessivo != null) {
+            risposta.header(RispostePaginate.CURSORE_SUCCESSIVO, cursoreSuccessivo);
+        }
+        return risposta.body(corpo.per(gzip));
+    }
+}
@@ -0,0 +1,26 @@
+package vacislavbaluyev.eduatlas.controller;
+
+import org.springframework.http.ResponseEntity;
+import vacislavbaluyev.eduatlas.payload.PaginaDTO;
+
+import java.util.List;
+
+/**
+ * Il corpo di una risposta paginata resta un array JSON; il cursore della pagina successiva viaggia
+ * nell'intestazione X-Next-Cursor, assente sull'ultima pagina
+ */
+final class RispostePaginate {
+
+    static final String CURSORE_SUCCESSIVO = "X-Next-Cursor";
+
+    private RispostePaginate() {
+    }
+
+    static <T> ResponseEntity<List<T>> ok(PaginaDTO<T> pagina) {
+        ResponseEntity.BodyBuilder risposta = ResponseEntity.ok();
+        if (pagina.cursoreSuccessivo() != null) {
+            risposta.header(CURSORE_SUCCESSIVO, pagina.cursoreSuccessivo());
+        }
+        return risposta.body(pagina.contenuto());
+    }
+}
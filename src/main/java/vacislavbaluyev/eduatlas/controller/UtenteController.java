@@ -6,6 +6,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import vacislavbaluyev.eduatlas.payload.AdminCreationDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaRichiestaDTO;
 import vacislavbaluyev.eduatlas.payload.UtenteDTO;
 import vacislavbaluyev.eduatlas.payload.UtenteUpdateDTO;
 import vacislavbaluyev.eduatlas.service.AuthService;
@@ -24,8 +25,8 @@ public class UtenteController {
 
     @GetMapping
     @PreAuthorize("hasAnyRole('ROOT_ADMIN')")
-    public ResponseEntity<List<UtenteDTO>> getAllUsers() {
-        return ResponseEntity.ok(utenteService.getAllUsers());
+    public ResponseEntity<List<UtenteDTO>> getAllUsers(@Valid PaginaRichiestaDTO pagina) {
+        return RispostePaginate.ok(utenteService.getAllUsers(pagina));
     }
 
     @GetMapping("/{id}")
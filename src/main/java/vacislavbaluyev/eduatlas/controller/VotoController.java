@@ -0,0 +1,44 @@
+package vacislavbaluyev.eduatlas.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import vacislavbaluyev.eduatlas.payload.ConversioneVotiDTO;
+import vacislavbaluyev.eduatlas.payload.EquivalenzaVotoDTO;
+import vacislavbaluyev.eduatlas.payload.RisultatoConversioneVotiDTO;
+import vacislavbaluyev.eduatlas.payload.TabellaEquivalenzaDTO;
+import vacislavbaluyev.eduatlas.security.LimitatoreConversioni;
+import vacislavbaluyev.eduatlas.service.EquivalenzaVotiService;
+import vacislavbaluyev.eduatlas.service.SistemaValutazioneService;
+
+@RestController
+@RequestMapping("/voti")
+@RequiredArgsConstructor
+public class VotoController {
+    private final SistemaValutazioneService sistemaValutazioneService;
+    private final EquivalenzaVotiService equivalenzaVotiService;
+    private final LimitatoreConversioni limitatoreConversioni;
+
+    // Pubblico ma limitato per client: ogni voto del libretto consuma un gettone
+    @PostMapping("/converti")
+    public ResponseEntity<RisultatoConversioneVotiDTO> convertiVoti(@Valid @RequestBody ConversioneVotiDTO richiesta,
+                                                                    HttpServletRequest request) {
+        limitatoreConversioni.consuma(request.getRemoteAddr(), richiesta.voti().size());
+        return ResponseEntity.ok(sistemaValutazioneService.convertiVoti(richiesta));
+    }
+
+    @GetMapping("/equivalenza")
+    public ResponseEntity<EquivalenzaVotoDTO> convertiVoto(@RequestParam("da") Long paeseOrigineId,
+                                                           @RequestParam("a") Long paeseDestinazioneId,
+                                                           @RequestParam("voto") String voto) {
+        return ResponseEntity.ok(equivalenzaVotiService.convertiVoto(paeseOrigineId, paeseDestinazioneId, voto));
+    }
+
+    @GetMapping("/equivalenza/tabella")
+    public ResponseEntity<TabellaEquivalenzaDTO> getTabellaEquivalenza(@RequestParam("da") Long paeseOrigineId,
+                                                                       @RequestParam("a") Long paeseDestinazioneId) {
+        return ResponseEntity.ok(equivalenzaVotiService.getTabella(paeseOrigineId, paeseDestinazioneId));
+    }
+}
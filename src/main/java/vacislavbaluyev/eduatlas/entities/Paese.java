@@ -7,6 +7,7 @@ import lombok.Builder;
 
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
 @Table(name = "paese")
@@ -24,4 +25,15 @@ public class Paese {
 
     @Column(name = "anniScuolaObbligatoria")
     protected Integer anniSculaObbligaroia;
+
+    // Impronta della riga della matrice CSV da cui proviene il paese; null per i paesi creati dall'API
+    // e per quelli scritti dall'importazione precedente alle impronte, che la prossima sincronizzazione allinea
+    @Column(name = "hashContenuto")
+    private Long hashContenuto;
+
+    // Paese creato o modificato dall'API: la reimportazione della matrice non lo sovrascrive e non lo rimuove
+    @Column(name = "modificatoLocalmente", nullable = false)
+    @ColumnDefault("false")
+    @Builder.Default
+    private boolean modificatoLocalmente = false;
 }
@@ -3,6 +3,7 @@ package vacislavbaluyev.eduatlas.entities;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
 @Table(name = "utente")
@@ -37,4 +38,10 @@ public class Utente {
     @Column(nullable = false)
     private Ruolo ruolo;
 
+    // Incrementata quando cambiano password o ruolo: i token emessi con una versione precedente non sono più validi
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    @Builder.Default
+    private int versioneToken = 0;
+
 }
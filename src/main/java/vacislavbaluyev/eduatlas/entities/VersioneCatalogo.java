@@ -0,0 +1,29 @@
+package vacislavbaluyev.eduatlas.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Unica riga (id 1) con la versione dei dati dei paesi, incrementata nella stessa transazione di ogni
+ * scrittura o importazione: ETag e Last-Modified ne derivano e coincidono tra repliche e riavvii.
+ */
+@Entity
+@Table(name = "versioneCatalogo")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+public class VersioneCatalogo {
+    public static final long ID = 1;
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private long versione;
+
+    // Epoch in millisecondi, sempre multiplo di 1000 (la risoluzione di Last-Modified)
+    @Column(name = "ultimaModificaMillis", nullable = false)
+    private long ultimaModificaMillis;
+}
@@ -0,0 +1,7 @@
+package vacislavbaluyev.eduatlas.exception;
+
+public class ConversioneVotoException extends RuntimeException {
+    public ConversioneVotoException(String message) {
+        super(message);
+    }
+}
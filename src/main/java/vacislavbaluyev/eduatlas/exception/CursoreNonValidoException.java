@@ -0,0 +1,7 @@
+package vacislavbaluyev.eduatlas.exception;
+
+public class CursoreNonValidoException extends RuntimeException {
+    public CursoreNonValidoException(String message) {
+        super(message);
+    }
+}
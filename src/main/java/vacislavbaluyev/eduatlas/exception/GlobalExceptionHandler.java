@@ -1,12 +1,14 @@
 package vacislavbaluyev.eduatlas.exception;
 
 import jakarta.validation.ConstraintViolationException;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -14,6 +16,7 @@ import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.web.servlet.NoHandlerFoundException;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
@@ -49,6 +52,20 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
     }
 
+    // Vincoli sui parametri dei metodi dei controller (ad esempio @Size su /paesi/confronta)
+    @Override
+    protected ResponseEntity<Object> handleHandlerMethodValidationException(HandlerMethodValidationException ex,
+                                                                            HttpHeaders headers,
+                                                                            HttpStatusCode status,
+                                                                            WebRequest request) {
+        String details = ex.getParameterValidationResults().stream()
+                .flatMap(risultato -> risultato.getResolvableErrors().stream()
+                        .map(errore -> risultato.getMethodParameter().getParameterName() + ": " + errore.getDefaultMessage()))
+                .collect(Collectors.joining(", "));
+        ErrorResposneDTO body = new ErrorResposneDTO(LocalDateTime.now(), "Validation failed", details);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(body);
+    }
+
     @ExceptionHandler(ConstraintViolationException.class)
     public ResponseEntity<ErrorResposneDTO> handleConstraintViolation(ConstraintViolationException ex, WebRequest request) {
         String details = ex.getConstraintViolations().stream()
@@ -102,11 +119,51 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return build(HttpStatus.FORBIDDEN, ex.getMessage(), request.getDescription(false));
     }
 
+    @ExceptionHandler(ImportazioneInCorsoException.class)
+    public ResponseEntity<ErrorResposneDTO> handleImportazioneInCorso(ImportazioneInCorsoException ex, WebRequest request) {
+        return build(HttpStatus.CONFLICT, ex.getMessage(), request.getDescription(false));
+    }
+
     @ExceptionHandler(CsvImportException.class)
     public ResponseEntity<ErrorResposneDTO> handleCsv(CsvImportException ex, WebRequest request) {
         return build(HttpStatus.BAD_REQUEST, ex.getMessage(), request.getDescription(false));
     }
 
+    @ExceptionHandler(CursoreNonValidoException.class)
+    public ResponseEntity<ErrorResposneDTO> handleCursore(CursoreNonValidoException ex, WebRequest request) {
+        return build(HttpStatus.BAD_REQUEST, ex.getMessage(), request.getDescription(false));
+    }
+
+    @ExceptionHandler(ConversioneVotoException.class)
+    public ResponseEntity<ErrorResposneDTO> handleConversioneVoto(ConversioneVotoException ex, WebRequest request) {
+        return build(HttpStatus.BAD_REQUEST, ex.getMessage(), request.getDescription(false));
+    }
+
+    // 429 - limite del client superato, può ritentare dopo Retry-After secondi
+    @ExceptionHandler(TroppeRichiesteException.class)
+    public ResponseEntity<ErrorResposneDTO> handleTroppeRichieste(TroppeRichiesteException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getSecondiAttesa()))
+                .body(new ErrorResposneDTO(LocalDateTime.now(), ex.getMessage(), request.getDescription(false)));
+    }
+
+    // 503 - il client può ritentare dopo Retry-After secondi
+    @ExceptionHandler(ServizioSovraccaricoException.class)
+    public ResponseEntity<ErrorResposneDTO> handleSovraccarico(ServizioSovraccaricoException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResposneDTO(LocalDateTime.now(), ex.getMessage(), request.getDescription(false)));
+    }
+
+    // 503 - nessuna connessione al database entro l'attesa massima (o database non raggiungibile)
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class})
+    public ResponseEntity<ErrorResposneDTO> handleDatabaseNonDisponibile(RuntimeException ex, WebRequest request) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ErrorResposneDTO(LocalDateTime.now(), "Database momentaneamente non disponibile",
+                        request.getDescription(false)));
+    }
+
     // Fallback
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResposneDTO> handleGeneric(Exception ex, WebRequest request) {
@@ -0,0 +1,7 @@
+package vacislavbaluyev.eduatlas.exception;
+
+public class ImportazioneInCorsoException extends RuntimeException {
+    public ImportazioneInCorsoException(String message) {
+        super(message);
+    }
+}
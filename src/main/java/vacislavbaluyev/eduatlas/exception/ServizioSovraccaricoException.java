@@ -0,0 +1,7 @@
+package vacislavbaluyev.eduatlas.exception;
+
+public class ServizioSovraccaricoException extends RuntimeException {
+    public ServizioSovraccaricoException(String message) {
+        super(message);
+    }
+}
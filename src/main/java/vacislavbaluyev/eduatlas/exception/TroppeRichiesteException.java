@@ -0,0 +1,14 @@
+package vacislavbaluyev.eduatlas.exception;
+
+public class TroppeRichiesteException extends RuntimeException {
+    private final long secondiAttesa;
+
+    public TroppeRichiesteException(String message, long secondiAttesa) {
+        super(message);
+        this.secondiAttesa = secondiAttesa;
+    }
+
+    public long getSecondiAttesa() {
+        return secondiAttesa;
+    }
+}
@@ -0,0 +1,46 @@
+package vacislavbaluyev.eduatlas.payload;
+
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Confronto in formato colonnare: una lista per attributo, con i paesi nello stesso ordine della richiesta.
+ */
+public record ConfrontoPaesiDTO(
+        List<Long> id,
+        List<String> nome,
+        List<Integer> anniScuolaObbligatoria,
+        List<String> votoA,
+        List<String> votoB,
+        List<String> votoC,
+        List<String> votoDE,
+        List<String> votoF,
+        List<TipoScala> scalaTipo,
+        List<Integer> durataBaseAnni,
+        List<Integer> creditiPerAnno,
+        List<String> livelloEQF
+) {
+
+    public static ConfrontoPaesiDTO fromDettagli(List<DettaglioPaeseDTO> paesi) {
+        return new ConfrontoPaesiDTO(
+                colonna(paesi, DettaglioPaeseDTO::id),
+                colonna(paesi, DettaglioPaeseDTO::nome),
+                colonna(paesi, DettaglioPaeseDTO::anniScuolaObbligatoria),
+                colonna(paesi, DettaglioPaeseDTO::votoA),
+                colonna(paesi, DettaglioPaeseDTO::votoB),
+                colonna(paesi, DettaglioPaeseDTO::votoC),
+                colonna(paesi, DettaglioPaeseDTO::votoDE),
+                colonna(paesi, DettaglioPaeseDTO::votoF),
+                colonna(paesi, DettaglioPaeseDTO::scalaTipo),
+                colonna(paesi, DettaglioPaeseDTO::durataBaseanni),
+                colonna(paesi, DettaglioPaeseDTO::creditiPerAnno),
+                colonna(paesi, DettaglioPaeseDTO::livelloEQF)
+        );
+    }
+
+    private static <T> List<T> colonna(List<DettaglioPaeseDTO> paesi, Function<DettaglioPaeseDTO, T> attributo) {
+        return paesi.stream().map(attributo).toList();
+    }
+}
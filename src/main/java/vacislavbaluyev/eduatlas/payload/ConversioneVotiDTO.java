@@ -0,0 +1,17 @@
+package vacislavbaluyev.eduatlas.payload;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record ConversioneVotiDTO(
+        // Paese nella cui scala esprimere i voti; se assente viene restituita solo la fascia
+        Long paeseDestinazioneId,
+
+        @NotEmpty(message = "Il libretto deve contenere almeno un voto")
+        @Size(max = 2000, message = "Un libretto non può contenere più di 2000 voti")
+        List<@Valid VotoDaConvertireDTO> voti
+) {
+}
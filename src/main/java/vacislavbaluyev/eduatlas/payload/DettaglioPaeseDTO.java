@@ -6,7 +6,8 @@ import vacislavbaluyev.eduatlas.entities.SistemaUniversitario;
 import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
 import vacislavbaluyev.eduatlas.entities.TipoScala;
 
-public record DettaglioPaeseDTO(String nome,
+public record DettaglioPaeseDTO(Long id,
+                                String nome,
                                 Integer anniScuolaObbligatoria,
                                 String votoA,
                                 String votoB,
@@ -25,6 +26,7 @@ public record DettaglioPaeseDTO(String nome,
             SistemaUniversitario sistemaUni
     ){
         return new DettaglioPaeseDTO(
+                paese.getId(),
                 paese.getNome(),
                 paese.getAnniSculaObbligaroia(),
                 sistemaVal.getVotoA(),
@@ -0,0 +1,13 @@
+package vacislavbaluyev.eduatlas.payload;
+
+import vacislavbaluyev.eduatlas.entities.TipoVoto;
+
+public record EquivalenzaVotoDTO(
+        Long paeseOrigineId,
+        Long paeseDestinazioneId,
+        String voto,
+        // Fascia del voto: le scale sono allineate per fascia, quindi vale anche per il voto equivalente
+        TipoVoto tipoVoto,
+        double votoEquivalente
+) {
+}
@@ -0,0 +1,12 @@
+package vacislavbaluyev.eduatlas.payload;
+
+public record FiltroPaeseDTO(
+        Integer anniScuolaMin,
+        Integer anniScuolaMax,
+        Integer durataBaseMin,
+        Integer durataBaseMax,
+        Integer creditiMin,
+        Integer creditiMax,
+        String livelloEQF
+) {
+}
@@ -0,0 +1,25 @@
+package vacislavbaluyev.eduatlas.payload;
+
+import vacislavbaluyev.eduatlas.tools.CursoreKeyset;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Una pagina ordinata per id e il cursore della successiva (null se è l'ultima)
+ */
+public record PaginaDTO<T>(List<T> contenuto, String cursoreSuccessivo) {
+
+    /**
+     * Pagina costruita da una lettura di dimensione + 1 righe: la riga in più indica solo che esiste
+     * una pagina successiva e non viene restituita
+     */
+    public static <T, R> PaginaDTO<T> daRighe(List<R> righe, int dimensione, ToLongFunction<R> id,
+                                              Function<R, T> converti) {
+        boolean altre = righe.size() > dimensione;
+        List<R> pagina = altre ? righe.subList(0, dimensione) : righe;
+        String successivo = altre ? CursoreKeyset.codifica(id.applyAsLong(pagina.get(dimensione - 1))) : null;
+        return new PaginaDTO<>(pagina.stream().map(converti).toList(), successivo);
+    }
+}
@@ -0,0 +1,34 @@
+package vacislavbaluyev.eduatlas.payload;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import vacislavbaluyev.eduatlas.tools.CursoreKeyset;
+
+/**
+ * Parametri di una pagina keyset: cursore restituito dalla pagina precedente (assente per la prima) e dimensione
+ */
+public record PaginaRichiestaDTO(
+        String cursore,
+
+        @Min(value = 1, message = "La dimensione della pagina deve essere almeno 1")
+        @Max(value = PaginaRichiestaDTO.DIMENSIONE_MASSIMA, message = "La dimensione della pagina non può superare 200")
+        Integer dimensione
+) {
+    public static final int DIMENSIONE_PREDEFINITA = 50;
+    public static final int DIMENSIONE_MASSIMA = 200;
+
+    public static PaginaRichiestaDTO prima(int dimensione) {
+        return new PaginaRichiestaDTO(null, dimensione);
+    }
+
+    public int dimensioneOrDefault() {
+        return dimensione == null ? DIMENSIONE_PREDEFINITA : dimensione;
+    }
+
+    /**
+     * Id dopo il quale inizia la pagina (Long.MIN_VALUE per la prima)
+     */
+    public long dopoId() {
+        return cursore == null || cursore.isEmpty() ? Long.MIN_VALUE : CursoreKeyset.decodifica(cursore);
+    }
+}
@@ -0,0 +1,28 @@
+package vacislavbaluyev.eduatlas.payload;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+
+public record QueryPaeseDTO(
+        Integer anniScuolaObbligatoria,
+        Integer durataBaseAnni,
+        Integer creditiPerAnno,
+        String livelloEQF,
+        TipoScala scalaTipo,
+
+        @Min(value = 0, message = "La pagina non può essere negativa")
+        Integer pagina,
+
+        @Min(value = 1, message = "La dimensione della pagina deve essere almeno 1")
+        @Max(value = 100, message = "La dimensione della pagina non può superare 100")
+        Integer dimensione
+) {
+    public int paginaOrDefault() {
+        return pagina == null ? 0 : pagina;
+    }
+
+    public int dimensioneOrDefault() {
+        return dimensione == null ? 20 : dimensione;
+    }
+}
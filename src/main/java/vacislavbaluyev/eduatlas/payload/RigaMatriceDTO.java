@@ -0,0 +1,75 @@
+package vacislavbaluyev.eduatlas.payload;
+
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+
+/**
+ * Una riga della matrice CSV già analizzata e validata, pronta per la scrittura
+ */
+public record RigaMatriceDTO(
+        int numeroRiga,
+        String nome,
+        Integer anniScuolaObbligatoria,
+        String votoA,
+        String votoB,
+        String votoC,
+        String votoDE,
+        String votoF,
+        TipoScala scalaTipo,
+        Integer durataBaseAnni,
+        Integer creditiPerAnno,
+        String livelloEQF,
+        String denominazione
+) {
+    public boolean haSistemaValutazione() {
+        return votoA != null || votoB != null || votoC != null || votoDE != null || votoF != null;
+    }
+
+    public boolean haSistemaUniversitario() {
+        return durataBaseAnni != null || creditiPerAnno != null || livelloEQF != null;
+    }
+
+    public boolean haTitoloStudio() {
+        return denominazione != null;
+    }
+
+    /**
+     * Impronta FNV-1a a 64 bit del contenuto della riga (escluso il numero di riga), stabile tra esecuzioni:
+     * viene salvata sul paese e permette alla reimportazione di riconoscere le righe invariate.
+     */
+    public long hashContenuto() {
+        long hash = FNV_OFFSET;
+        hash = mescola(hash, nome);
+        hash = mescola(hash, anniScuolaObbligatoria);
+        hash = mescola(hash, votoA);
+        hash = mescola(hash, votoB);
+        hash = mescola(hash, votoC);
+        hash = mescola(hash, votoDE);
+        hash = mescola(hash, votoF);
+        hash = mescola(hash, scalaTipo == null ? null : scalaTipo.name());
+        hash = mescola(hash, durataBaseAnni);
+        hash = mescola(hash, creditiPerAnno);
+        hash = mescola(hash, livelloEQF);
+        return mescola(hash, denominazione);
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long mescola(long hash, String valore) {
+        if (valore == null) return mescolaCarattere(hash, '\u0000');
+        for (int i = 0; i < valore.length(); i++) {
+            hash = mescolaCarattere(hash, valore.charAt(i));
+        }
+        // Separatore tra i campi: ("ab", "c") e ("a", "bc") non devono collidere
+        return mescolaCarattere(hash, '\u001f');
+    }
+
+    private static long mescola(long hash, Integer valore) {
+        return mescola(hash, valore == null ? null : valore.toString());
+    }
+
+    private static long mescolaCarattere(long hash, char c) {
+        hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+        return (hash ^ (c >>> 8)) * FNV_PRIME;
+    }
+}
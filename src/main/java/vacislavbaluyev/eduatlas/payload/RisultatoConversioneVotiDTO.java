@@ -0,0 +1,9 @@
+package vacislavbaluyev.eduatlas.payload;
+
+import java.util.List;
+
+public record RisultatoConversioneVotiDTO(
+        Long paeseDestinazioneId,
+        List<VotoConvertitoDTO> voti
+) {
+}
@@ -0,0 +1,12 @@
+package vacislavbaluyev.eduatlas.payload;
+
+public record RisultatoImportDTO(
+        int righe,
+        long millisecondi,
+        double righePerSecondo
+) {
+    public static RisultatoImportDTO di(int righe, long inizioNanos) {
+        long nanos = Math.max(1, System.nanoTime() - inizioNanos);
+        return new RisultatoImportDTO(righe, nanos / 1_000_000, righe * 1_000_000_000.0 / nanos);
+    }
+}
@@ -0,0 +1,13 @@
+package vacislavbaluyev.eduatlas.payload;
+
+import java.util.List;
+import java.util.Map;
+
+public record RisultatoQueryPaeseDTO(
+        List<DettaglioPaeseDTO> contenuto,
+        int pagina,
+        int dimensione,
+        int totale,
+        Map<String, Map<String, Integer>> facet
+) {
+}
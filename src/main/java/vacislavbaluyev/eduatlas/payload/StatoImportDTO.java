@@ -0,0 +1,49 @@
+package vacislavbaluyev.eduatlas.payload;
+
+import vacislavbaluyev.eduatlas.service.ImportJob;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record StatoImportDTO(
+        UUID id,
+        ImportJob.Stato stato,
+        String nomeFile,
+        long dimensioneByte,
+        long byteLetti,
+        double percentuale,
+        long righeAnalizzate,
+        long righeScritte,
+        long millisecondi,
+        double righePerSecondo,
+        String errore,
+        LocalDateTime creato,
+        LocalDateTime terminato
+) {
+    public static StatoImportDTO fromJob(ImportJob job) {
+        ImportJob.Stato stato = job.getStato();
+        long byteLetti = job.getByteLetti();
+        double percentuale;
+        if (stato == ImportJob.Stato.COMPLETATO) {
+            percentuale = 100.0;
+        } else if (job.getDimensioneByte() == 0) {
+            percentuale = 0.0;
+        } else {
+            percentuale = Math.min(100.0, byteLetti * 100.0 / job.getDimensioneByte());
+        }
+        return new StatoImportDTO(
+                job.getId(),
+                stato,
+                job.getNomeFile(),
+                job.getDimensioneByte(),
+                byteLetti,
+                percentuale,
+                job.getRigheAnalizzate(),
+                job.getRigheScritte(),
+                job.millisecondi(),
+                job.righePerSecondo(),
+                job.getErrore(),
+                job.getCreato(),
+                job.getTerminato());
+    }
+}
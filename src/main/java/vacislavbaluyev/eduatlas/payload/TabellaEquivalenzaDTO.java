@@ -0,0 +1,14 @@
+package vacislavbaluyev.eduatlas.payload;
+
+import java.util.List;
+
+/**
+ * Nodi della corrispondenza tra due scale: tra due nodi consecutivi la conversione è lineare
+ */
+public record TabellaEquivalenzaDTO(
+        Long paeseOrigineId,
+        Long paeseDestinazioneId,
+        List<Double> votiOrigine,
+        List<Double> votiDestinazione
+) {
+}
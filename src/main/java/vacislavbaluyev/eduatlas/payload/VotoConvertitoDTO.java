@@ -0,0 +1,15 @@
+package vacislavbaluyev.eduatlas.payload;
+
+import vacislavbaluyev.eduatlas.entities.TipoVoto;
+
+public record VotoConvertitoDTO(
+        Long paeseId,
+        String voto,
+        TipoVoto tipoVoto,
+        // Voto nella scala del paese di destinazione, calcolato come in /voti/equivalenza;
+        // null senza destinazione o se una delle due scale non è numerica
+        Double votoEquivalente,
+        // Testo della fascia con lo stesso TipoVoto nel sistema di destinazione (es. "27-28")
+        String fasciaEquivalente
+) {
+}
@@ -0,0 +1,13 @@
+package vacislavbaluyev.eduatlas.payload;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+public record VotoDaConvertireDTO(
+        @NotNull(message = "Il paese di origine del voto è obbligatorio")
+        Long paeseId,
+
+        @NotBlank(message = "Il voto è obbligatorio")
+        String voto
+) {
+}
@@ -0,0 +1,145 @@
+package vacislavbaluyev.eduatlas.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+import vacislavbaluyev.eduatlas.payload.RigaMatriceDTO;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scrittura in blocco delle righe della matrice con batch JDBC.
+ * Per ogni blocco: un batch di INSERT per i paesi, una SELECT per recuperarne gli id (generati con IDENTITY)
+ * e un batch per ciascuna tabella figlia, invece di quattro round trip per riga.
+ */
+@Repository
+public class MatriceImportRepository {
+
+    public static final int DIMENSIONE_BATCH = 500;
+
+    private static final String INSERT_PAESE =
+            "INSERT INTO paese (nome, anni_scuola_obbligatoria, hash_contenuto) VALUES (?, ?, ?)";
+    private static final String INSERT_SISTEMA_VALUTAZIONE =
+            "INSERT INTO sistema_valutazione (paese_id, votoa, votob, votoc, votode, votof, scala_tipo) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_SISTEMA_UNIVERSITARIO =
+            "INSERT INTO sistema_universitario (paese_id, durata_base_anni, crediti_per_anno, livelloeqf) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_TITOLO_STUDIO =
+            "INSERT INTO titolo_studio (paese_id, denominazione) VALUES (?, ?)";
+    // Un solo titolo per paese, come nella matrice: se ce ne fossero più d'uno viene esportato il primo inserito
+    private static final String SELECT_MATRICE =
+            "SELECT p.nome, p.anni_scuola_obbligatoria, v.votoa, v.votob, v.votoc, v.votode, v.votof, v.scala_tipo, " +
+            "u.durata_base_anni, u.crediti_per_anno, u.livelloeqf, " +
+            "(SELECT t.denominazione FROM titolo_studio t WHERE t.paese_id = p.id ORDER BY t.id LIMIT 1) AS denominazione " +
+            "FROM paese p " +
+            "LEFT JOIN sistema_valutazione v ON v.paese_id = p.id " +
+            "LEFT JOIN sistema_universitario u ON u.paese_id = p.id " +
+            "ORDER BY p.id";
+    private static final String SELECT_ID_PAESI =
+            "SELECT id, nome FROM paese WHERE nome IN (:nomi)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public MatriceImportRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    /**
+     * Inserisce le righe a blocchi di DIMENSIONE_BATCH; deve essere chiamato dentro una transazione
+     */
+    public void inserisci(List<RigaMatriceDTO> righe) {
+        for (int inizio = 0; inizio < righe.size(); inizio += DIMENSIONE_BATCH) {
+            inserisciBlocco(righe.subList(inizio, Math.min(righe.size(), inizio + DIMENSIONE_BATCH)));
+        }
+    }
+
+    private void inserisciBlocco(List<RigaMatriceDTO> righe) {
+        jdbcTemplate.batchUpdate(INSERT_PAESE, righe, righe.size(), (ps, riga) -> {
+            ps.setString(1, riga.nome());
+            setInteger(ps, 2, riga.anniScuolaObbligatoria());
+            ps.setLong(3, riga.hashContenuto());
+        });
+
+        Map<String, Long> ids = idPerNome(righe);
+
+        List<RigaMatriceDTO> valutazioni = righe.stream().filter(RigaMatriceDTO::haSistemaValutazione).toList();
+        jdbcTemplate.batchUpdate(INSERT_SISTEMA_VALUTAZIONE, valutazioni, valutazioni.size(), (ps, riga) -> {
+            ps.setLong(1, ids.get(riga.nome()));
+            ps.setString(2, riga.votoA());
+            ps.setString(3, riga.votoB());
+            ps.setString(4, riga.votoC());
+            ps.setString(5, riga.votoDE());
+            ps.setString(6, riga.votoF());
+            ps.setString(7, riga.scalaTipo() == null ? null : riga.scalaTipo().name());
+        });
+
+        List<RigaMatriceDTO> universitari = righe.stream().filter(RigaMatriceDTO::haSistemaUniversitario).toList();
+        jdbcTemplate.batchUpdate(INSERT_SISTEMA_UNIVERSITARIO, universitari, universitari.size(), (ps, riga) -> {
+            ps.setLong(1, ids.get(riga.nome()));
+            setInteger(ps, 2, riga.durataBaseAnni());
+            setInteger(ps, 3, riga.creditiPerAnno());
+            ps.setString(4, riga.livelloEQF());
+        });
+
+        List<RigaMatriceDTO> titoli = righe.stream().filter(RigaMatriceDTO::haTitoloStudio).toList();
+        jdbcTemplate.batchUpdate(INSERT_TITOLO_STUDIO, titoli, titoli.size(), (ps, riga) -> {
+            ps.setLong(1, ids.get(riga.nome()));
+            ps.setString(2, riga.denominazione());
+        });
+    }
+
+    /**
+     * Legge l'intera matrice in una sola query, una riga per paese nell'ordine di inserimento
+     */
+    public List<RigaMatriceDTO> esporta() {
+        int[] numeroRiga = {0};
+        return jdbcTemplate.query(SELECT_MATRICE, (rs, i) -> {
+            String scala = rs.getString("scala_tipo");
+            return new RigaMatriceDTO(
+                    ++numeroRiga[0],
+                    rs.getString("nome"),
+                    getInteger(rs, "anni_scuola_obbligatoria"),
+                    rs.getString("votoa"),
+                    rs.getString("votob"),
+                    rs.getString("votoc"),
+                    rs.getString("votode"),
+                    rs.getString("votof"),
+                    scala == null ? null : TipoScala.valueOf(scala),
+                    getInteger(rs, "durata_base_anni"),
+                    getInteger(rs, "crediti_per_anno"),
+                    rs.getString("livelloeqf"),
+                    rs.getString("denominazione"));
+        });
+    }
+
+    private Map<String, Long> idPerNome(List<RigaMatriceDTO> righe) {
+        Map<String, Long> ids = new HashMap<>(righe.size() * 2);
+        MapSqlParameterSource parametri = new MapSqlParameterSource("nomi",
+                righe.stream().map(RigaMatriceDTO::nome).toList());
+        namedJdbcTemplate.query(SELECT_ID_PAESI, parametri,
+                rs -> { ids.put(rs.getString("nome"), rs.getLong("id")); });
+        return ids;
+    }
+
+    private static Integer getInteger(ResultSet rs, String colonna) throws SQLException {
+        int valore = rs.getInt(colonna);
+        return rs.wasNull() ? null : valore;
+    }
+
+    private static void setInteger(PreparedStatement ps, int indice, Integer valore) throws SQLException {
+        if (valore == null) {
+            ps.setNull(indice, Types.INTEGER);
+        } else {
+            ps.setInt(indice, valore);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package vacislavbaluyev.eduatlas.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import vacislavbaluyev.eduatlas.payload.RigaMatriceDTO;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.function.Consumer;
+
+/**
+ * Caricamento della matrice tramite una tabella temporanea di appoggio.
+ * Su PostgreSQL le righe arrivano con COPY ... FROM STDIN mentre il file viene analizzato; sugli altri
+ * database (H2 nei test) con insert JDBC a blocchi. L'unione nelle tabelle definitive è SQL set-based
+ * identico per entrambi e va eseguita nella stessa transazione del caricamento.
+ */
+@Repository
+@Slf4j
+public class MatriceStagingRepository {
+
+    private static final int DIMENSIONE_BATCH = 500;
+    private static final int DIMENSIONE_BUFFER_COPY = 64 * 1024;
+
+    private static final String COLONNE_STAGING =
+            "numero_riga, nome, anni_scuola_obbligatoria, votoa, votob, votoc, votode, votof, scala_tipo, " +
+            "durata_base_anni, crediti_per_anno, livelloeqf, denominazione, hash_contenuto";
+
+    private static final String DEFINIZIONE_STAGING = "matrice_staging (" +
+            "numero_riga INTEGER, nome VARCHAR PRIMARY KEY, anni_scuola_obbligatoria INTEGER, " +
+            "votoa VARCHAR, votob VARCHAR, votoc VARCHAR, votode VARCHAR, votof VARCHAR, scala_tipo VARCHAR, " +
+            "durata_base_anni INTEGER, crediti_per_anno INTEGER, livelloeqf VARCHAR, denominazione VARCHAR, " +
+            "hash_contenuto BIGINT)";
+
+    private static final String CREATE_STAGING_POSTGRES =
+            "CREATE TEMP TABLE IF NOT EXISTS " + DEFINIZIONE_STAGING + " ON COMMIT DROP";
+    // In H2 una CREATE TABLE chiude la transazione, tranne per le tabelle temporanee TRANSACTIONAL
+    private static final String CREATE_STAGING_H2 =
+            "CREATE LOCAL TEMPORARY TABLE IF NOT EXISTS " + DEFINIZIONE_STAGING + " ON COMMIT DROP TRANSACTIONAL";
+
+    private static final String COPY_STAGING =
+            "COPY matrice_staging (" + COLONNE_STAGING + ") FROM STDIN";
+    private static final String INSERT_STAGING =
+            "INSERT INTO matrice_staging (" + COLONNE_STAGING + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Paesi della matrice il cui contenuto differisce dalla riga in appoggio o non ha ancora un'impronta,
+    // come quelli scritti dall'importazione precedente alle impronte; quelli segnati come creati o modificati
+    // dall'API non vengono mai toccati
+    private static final String CONDIZIONE_MODIFICATO =
+            "p.modificato_localmente = FALSE AND (p.hash_contenuto IS NULL OR p.hash_contenuto <> s.hash_contenuto)";
+    private static final String MODIFICATI =
+            "SELECT p.id FROM paese p JOIN matrice_staging s ON s.nome = p.nome WHERE " + CONDIZIONE_MODIFICATO;
+    // Paesi importati in precedenza dalla matrice, mai modificati dall'API e assenti dal nuovo file
+    private static final String SCOMPARSI =
+            "SELECT p.id FROM paese p WHERE p.hash_contenuto IS NOT NULL AND p.modificato_localmente = FALSE " +
+            "AND NOT EXISTS (SELECT 1 FROM matrice_staging s WHERE s.nome = p.nome)";
+    private static final String LOCALI_NEL_FILE =
+            "SELECT count(*) FROM paese p JOIN matrice_staging s ON s.nome = p.nome WHERE p.modificato_localmente = TRUE";
+
+    // I paesi nuovi nascono senza impronta, così i passi successivi li trattano come modificati
+    private static final String INSERT_PAESI =
+            "INSERT INTO paese (nome, anni_scuola_obbligatoria) " +
+            "SELECT s.nome, s.anni_scuola_obbligatoria FROM matrice_staging s " +
+            "WHERE NOT EXISTS (SELECT 1 FROM paese p WHERE p.nome = s.nome) ORDER BY s.numero_riga";
+    private static final String INSERT_SISTEMI_VALUTAZIONE =
+            "INSERT INTO sistema_valutazione (paese_id, votoa, votob, votoc, votode, votof, scala_tipo) " +
+            "SELECT p.id, s.votoa, s.votob, s.votoc, s.votode, s.votof, s.scala_tipo " +
+            "FROM matrice_staging s JOIN paese p ON p.nome = s.nome " +
+            "WHERE (s.votoa IS NOT NULL OR s.votob IS NOT NULL OR s.votoc IS NOT NULL " +
+            "OR s.votode IS NOT NULL OR s.votof IS NOT NULL) AND " + CONDIZIONE_MODIFICATO;
+    private static final String INSERT_SISTEMI_UNIVERSITARI =
+            "INSERT INTO sistema_universitario (paese_id, durata_base_anni, crediti_per_anno, livelloeqf) " +
+            "SELECT p.id, s.durata_base_anni, s.crediti_per_anno, s.livelloeqf " +
+            "FROM matrice_staging s JOIN paese p ON p.nome = s.nome " +
+            "WHERE (s.durata_base_anni IS NOT NULL OR s.crediti_per_anno IS NOT NULL OR s.livelloeqf IS NOT NULL) AND " +
+            CONDIZIONE_MODIFICATO;
+    private static final String INSERT_TITOLI_STUDIO =
+            "INSERT INTO titolo_studio (paese_id, denominazione) " +
+            "SELECT p.id, s.denominazione FROM matrice_staging s JOIN paese p ON p.nome = s.nome " +
+            "WHERE s.denominazione IS NOT NULL AND " + CONDIZIONE_MODIFICATO;
+    // Ultimo passo: allinea anni e impronta, dopodiché il paese non risulta più modificato
+    private static final String UPDATE_PAESI =
+            "UPDATE paese p SET " +
+            "anni_scuola_obbligatoria = (SELECT s.anni_scuola_obbligatoria FROM matrice_staging s WHERE s.nome = p.nome), " +
+            "hash_contenuto = (SELECT s.hash_contenuto FROM matrice_staging s WHERE s.nome = p.nome) " +
+            "WHERE EXISTS (SELECT 1 FROM matrice_staging s WHERE s.nome = p.nome AND " + CONDIZIONE_MODIFICATO + ")";
+    private static final String[] TABELLE_FIGLIE = {"sistema_valutazione", "sistema_universitario", "titolo_studio"};
+
+    /**
+     * Sorgente delle righe da caricare, ad esempio il parser del CSV che consegna una riga alla volta
+     */
+    @FunctionalInterface
+    public interface SorgenteRighe {
+        int leggi(Consumer<RigaMatriceDTO> destinazione) throws IOException;
+    }
+
+    public record EsitoUnione(int paesiNuovi, int paesiAggiornati, int paesiRimossi) {
+        public boolean haModifiche() {
+            return paesiNuovi + paesiAggiornati + paesiRimossi > 0;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public MatriceStagingRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Crea (o svuota) la tabella di appoggio e la riempie con le righe della sorgente.
+     * Gli errori di lettura vengono rilanciati come UncheckedIOException.
+     */
+    public int caricaStaging(SorgenteRighe sorgente) {
+        return jdbcTemplate.execute((ConnectionCallback<Integer>) con -> {
+            boolean postgres = con.isWrapperFor(BaseConnection.class);
+            try (Statement st = con.createStatement()) {
+                st.execute(postgres ? CREATE_STAGING_POSTGRES : CREATE_STAGING_H2);
+                st.execute("DELETE FROM matrice_staging");
+            }
+            int righe = postgres ? copia(con.unwrap(BaseConnection.class), sorgente) : inserisci(con, sorgente);
+            if (postgres) {
+                // Le tabelle temporanee non vengono analizzate da autovacuum: senza statistiche
+                // il planner sceglie nested loop per le join dell'unione
+                try (Statement st = con.createStatement()) {
+                    st.execute("ANALYZE matrice_staging");
+                }
+            }
+            log.debug("Caricate {} righe nella tabella di appoggio ({})", righe, postgres ? "COPY" : "batch");
+            return righe;
+        });
+    }
+
+    /**
+     * Unisce la tabella di appoggio nelle tabelle definitive confrontando le impronte: i paesi nuovi
+     * vengono inseriti, quelli la cui riga è cambiata aggiornati con i dati collegati sostituiti,
+     * quelli invariati non vengono toccati. Un paese senza impronta presente nel file appartiene alla matrice
+     * e riceve l'impronta della riga; i paesi segnati come creati o modificati dall'API restano come sono
+     * anche se il file contiene una riga con lo stesso nome.
+     */
+    public EsitoUnione unisci() {
+        Integer locali = jdbcTemplate.queryForObject(LOCALI_NEL_FILE, Integer.class);
+        if (locali != null && locali > 0) {
+            log.warn("{} righe della matrice ignorate: il paese corrispondente è stato creato o modificato dall'API", locali);
+        }
+        int nuovi = jdbcTemplate.update(INSERT_PAESI);
+        for (String tabella : TABELLE_FIGLIE) {
+            jdbcTemplate.update("DELETE FROM " + tabella + " WHERE paese_id IN (" + MODIFICATI + ")");
+        }
+        jdbcTemplate.update(INSERT_SISTEMI_VALUTAZIONE);
+        jdbcTemplate.update(INSERT_SISTEMI_UNIVERSITARI);
+        jdbcTemplate.update(INSERT_TITOLI_STUDIO);
+        int modificati = jdbcTemplate.update(UPDATE_PAESI);
+        return new EsitoUnione(nuovi, modificati - nuovi, 0);
+    }
+
+    /**
+     * Come unisci, ma rimuove anche i paesi importati in precedenza dalla matrice che non compaiono più
+     * nella tabella di appoggio. I paesi creati o modificati dall'API non vengono mai rimossi.
+     */
+    public EsitoUnione sincronizza() {
+        EsitoUnione unione = unisci();
+        for (String tabella : TABELLE_FIGLIE) {
+            jdbcTemplate.update("DELETE FROM " + tabella + " WHERE paese_id IN (" + SCOMPARSI + ")");
+        }
+        int rimossi = jdbcTemplate.update("DELETE FROM paese WHERE id IN (" + SCOMPARSI + ")");
+        return new EsitoUnione(unione.paesiNuovi(), unione.paesiAggiornati(), rimossi);
+    }
+
+    private int copia(BaseConnection con, SorgenteRighe sorgente) throws SQLException {
+        CopyIn copy = new CopyManager(con).copyIn(COPY_STAGING);
+        try {
+            StringBuilder buffer = new StringBuilder(DIMENSIONE_BUFFER_COPY + 1024);
+            int righe = leggi(sorgente, riga -> {
+                rigaCopy(buffer, riga);
+                if (buffer.length() >= DIMENSIONE_BUFFER_COPY) {
+                    scrivi(copy, buffer);
+                }
+            });
+            scrivi(copy, buffer);
+            copy.endCopy();
+            return righe;
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+    }
+
+    private int inserisci(Connection con, SorgenteRighe sorgente) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(INSERT_STAGING)) {
+            int[] inBatch = {0};
+            int righe = leggi(sorgente, riga -> {
+                try {
+                    parametri(ps, riga);
+                    ps.addBatch();
+                    if (++inBatch[0] == DIMENSIONE_BATCH) {
+                        ps.executeBatch();
+                        inBatch[0] = 0;
+                    }
+                } catch (SQLException e) {
+                    throw new ErroreSql(e);
+                }
+            });
+            if (inBatch[0] > 0) {
+                ps.executeBatch();
+            }
+            return righe;
+        }
+    }
+
+    private static int leggi(SorgenteRighe sorgente, Consumer<RigaMatriceDTO> destinazione) throws SQLException {
+        try {
+            return sorgente.leggi(destinazione);
+        } catch (ErroreSql e) {
+            throw e.getCause();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void scrivi(CopyIn copy, StringBuilder buffer) {
+        if (buffer.isEmpty()) return;
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            copy.writeToCopy(bytes, 0, bytes.length);
+        } catch (SQLException e) {
+            throw new ErroreSql(e);
+        }
+        buffer.setLength(0);
+    }
+
+    private static void parametri(PreparedStatement ps, RigaMatriceDTO riga) throws SQLException {
+        ps.setInt(1, riga.numeroRiga());
+        ps.setString(2, riga.nome());
+        setInteger(ps, 3, riga.anniScuolaObbligatoria());
+        ps.setString(4, riga.votoA());
+        ps.setString(5, riga.votoB());
+        ps.setString(6, riga.votoC());
+        ps.setString(7, riga.votoDE());
+        ps.setString(8, riga.votoF());
+        ps.setString(9, riga.scalaTipo() == null ? null : riga.scalaTipo().name());
+        setInteger(ps, 10, riga.durataBaseAnni());
+        setInteger(ps, 11, riga.creditiPerAnno());
+        ps.setString(12, riga.livelloEQF());
+        ps.setString(13, riga.denominazione());
+        ps.setLong(14, riga.hashContenuto());
+    }
+
+    // Formato testo di COPY: colonne separate da tab, \N per NULL, backslash e separatori con escape
+    static void rigaCopy(StringBuilder sb, RigaMatriceDTO riga) {
+        sb.append(riga.numeroRiga()).append('\t');
+        campo(sb, riga.nome()).append('\t');
+        campo(sb, riga.anniScuolaObbligatoria()).append('\t');
+        campo(sb, riga.votoA()).append('\t');
+        campo(sb, riga.votoB()).append('\t');
+        campo(sb, riga.votoC()).append('\t');
+        campo(sb, riga.votoDE()).append('\t');
+        campo(sb, riga.votoF()).append('\t');
+        campo(sb, riga.scalaTipo() == null ? null : riga.scalaTipo().name()).append('\t');
+        campo(sb, riga.durataBaseAnni()).append('\t');
+        campo(sb, riga.creditiPerAnno()).append('\t');
+        campo(sb, riga.livelloEQF()).append('\t');
+        campo(sb, riga.denominazione()).append('\t');
+        sb.append(riga.hashContenuto()).append('\n');
+    }
+
+    private static StringBuilder campo(StringBuilder sb, Integer valore) {
+        return valore == null ? sb.append("\\N") : sb.append(valore.intValue());
+    }
+
+    private static StringBuilder campo(StringBuilder sb, String valore) {
+        if (valore == null) return sb.append("\\N");
+        for (int i = 0; i < valore.length(); i++) {
+            char c = valore.charAt(i);
+            switch (c) {
+                case '\\' -> sb.append("\\\\");
+                case '\t' -> sb.append("\\t");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                default -> sb.append(c);
+            }
+        }
+        return sb;
+    }
+
+    private static void setInteger(PreparedStatement ps, int indice, Integer valore) throws SQLException {
+        if (valore == null) {
+            ps.setNull(indice, Types.INTEGER);
+        } else {
+            ps.setInt(indice, valore);
+        }
+    }
+
+    // Trasporta una SQLException attraverso il Consumer della sorgente
+    private static final class ErroreSql extends RuntimeException {
+        ErroreSql(SQLException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized SQLException getCause() {
+            return (SQLException) super.getCause();
+        }
+    }
+}
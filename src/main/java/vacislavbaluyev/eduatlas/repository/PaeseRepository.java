@@ -1,16 +1,28 @@
 package vacislavbaluyev.eduatlas.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import vacislavbaluyev.eduatlas.entities.Paese;
+import vacislavbaluyev.eduatlas.payload.DettaglioPaeseDTO;
 
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PaeseRepository extends JpaRepository<Paese, Long> {
+
+    // Proiezione unica paese + sistema di valutazione + sistema universitario: una sola query per tutte le righe
+    String SELECT_DETTAGLIO = "SELECT new vacislavbaluyev.eduatlas.payload.DettaglioPaeseDTO(" +
+            "p.id, p.nome, p.anniSculaObbligaroia, " +
+            "v.votoA, v.votoB, v.votoC, v.votoDE, v.votoF, v.scalaTipo, " +
+            "u.durataBaseAnni, u.creditiPerAnno, u.livelloEQF) " +
+            "FROM Paese p " +
+            "JOIN SistemaValutazione v ON v.paese = p " +
+            "JOIN SistemaUniversitario u ON u.paese = p ";
+
     Optional<Paese> findByNome(String nome);
 
     boolean existsByNome(String nome);
@@ -19,4 +31,27 @@ public interface PaeseRepository extends JpaRepository<Paese, Long> {
     List<Paese> findByAnniScuolaObbligatoria(@Param("anni") Integer anni);
 
     List<Paese> findByNomeContainingIgnoreCase(String nome);
+
+    // Dopo una modifica dall'API il paese appartiene all'amministratore, non più alla matrice
+    @Modifying
+    @Query("UPDATE Paese p SET p.modificatoLocalmente = true WHERE p.id = :id")
+    int segnaModificatoLocalmente(@Param("id") Long id);
+
+    @Query(SELECT_DETTAGLIO + "ORDER BY p.id")
+    List<DettaglioPaeseDTO> findAllDettagli();
+
+    @Query(SELECT_DETTAGLIO + "WHERE p.id = :id")
+    Optional<DettaglioPaeseDTO> findDettaglioById(@Param("id") Long id);
+
+    @Query(SELECT_DETTAGLIO + "WHERE p.anniSculaObbligaroia = :anni ORDER BY p.id")
+    List<DettaglioPaeseDTO> findDettagliByAnniScuolaObbligatoria(@Param("anni") Integer anni);
+
+    @Query(SELECT_DETTAGLIO + "WHERE u.durataBaseAnni = :durataAnni ORDER BY p.id")
+    List<DettaglioPaeseDTO> findDettagliByDurataBaseAnni(@Param("durataAnni") Integer durataAnni);
+
+    @Query(SELECT_DETTAGLIO + "WHERE u.creditiPerAnno = :crediti ORDER BY p.id")
+    List<DettaglioPaeseDTO> findDettagliByCreditiPerAnno(@Param("crediti") Integer crediti);
+
+    @Query(SELECT_DETTAGLIO + "WHERE u.livelloEQF = :livello ORDER BY p.id")
+    List<DettaglioPaeseDTO> findDettagliByLivelloEQF(@Param("livello") String livello);
 }
@@ -1,11 +1,28 @@
 package vacislavbaluyev.eduatlas.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import vacislavbaluyev.eduatlas.entities.Paese;
 import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface SistemaValutazioneRepository extends JpaRepository<SistemaValutazione, Long> {
     Optional<SistemaValutazione> findByPaese(Paese paese);
+
+    @Query("SELECT v FROM SistemaValutazione v JOIN FETCH v.paese WHERE v.paese.id = :paeseId")
+    Optional<SistemaValutazione> findByPaeseId(@Param("paeseId") Long paeseId);
+
+    @Query("SELECT v FROM SistemaValutazione v JOIN FETCH v.paese")
+    List<SistemaValutazione> findAllConPaese();
+
+    @Query("SELECT v FROM SistemaValutazione v JOIN FETCH v.paese WHERE v.id > :dopoId ORDER BY v.id")
+    List<SistemaValutazione> findPaginaConPaese(@Param("dopoId") long dopoId, Limit limit);
+
+    @Query("SELECT v FROM SistemaValutazione v JOIN FETCH v.paese WHERE v.paese.id IN :paeseIds")
+    List<SistemaValutazione> findByPaeseIdIn(@Param("paeseIds") Collection<Long> paeseIds);
 }
\ No newline at end of file
@@ -1,12 +1,22 @@
 package vacislavbaluyev.eduatlas.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import vacislavbaluyev.eduatlas.entities.Utente;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface UtenteRepository extends JpaRepository<Utente, Long> {
     Optional<Utente> findByUsername(String username);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+
+    @Query("SELECT u.versioneToken FROM Utente u WHERE u.username = :username")
+    Optional<Integer> findVersioneTokenByUsername(@Param("username") String username);
+
+    // Paginazione keyset: la pagina successiva parte dall'ultimo id letto, sfruttando l'indice della chiave primaria
+    List<Utente> findByIdGreaterThanOrderByIdAsc(long dopoId, Limit limit);
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package vacislavbaluyev.eduatlas.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import vacislavbaluyev.eduatlas.entities.VersioneCatalogo;
+
+public interface VersioneCatalogoRepository extends JpaRepository<VersioneCatalogo, Long> {
+
+    // L'ultima modifica avanza di almeno un secondo anche se due scritture cadono nello stesso secondo
+    @Transactional
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE VersioneCatalogo v SET v.versione = v.versione + 1, v.ultimaModificaMillis = " +
+            "CASE WHEN v.ultimaModificaMillis + 1000 > :adesso THEN v.ultimaModificaMillis + 1000 ELSE :adesso END " +
+            "WHERE v.id = " + VersioneCatalogo.ID)
+    int incrementa(@Param("adesso") long adessoMillis);
+
+    // Eseguita all'avvio in una transazione propria: se un'altra replica crea la riga nello stesso momento,
+    // il conflitto annulla solo questa e non una scrittura sui paesi
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO versione_catalogo (id, versione, ultima_modifica_millis) " +
+            "SELECT " + VersioneCatalogo.ID + ", 0, -1 WHERE NOT EXISTS " +
+            "(SELECT 1 FROM versione_catalogo WHERE id = " + VersioneCatalogo.ID + ")", nativeQuery = true)
+    int crea();
+
+    // Letta con un'espressione costruttore e non con findById: un'entità già nel contesto di persistenza
+    // non vedrebbe l'incremento appena eseguito
+    @Query("SELECT new vacislavbaluyev.eduatlas.entities.VersioneCatalogo(v.id, v.versione, v.ultimaModificaMillis) " +
+            "FROM VersioneCatalogo v WHERE v.id = " + VersioneCatalogo.ID)
+    VersioneCatalogo leggi();
+}
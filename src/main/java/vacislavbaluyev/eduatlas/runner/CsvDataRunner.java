@@ -1,71 +1,159 @@
 package vacislavbaluyev.eduatlas.runner;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 import vacislavbaluyev.eduatlas.entities.Ruolo;
 import vacislavbaluyev.eduatlas.entities.Utente;
-import vacislavbaluyev.eduatlas.repository.PaeseRepository;
 import vacislavbaluyev.eduatlas.repository.UtenteRepository;
-import vacislavbaluyev.eduatlas.service.CsvImportService;
+import vacislavbaluyev.eduatlas.service.MatriceCopyImportService;
+import vacislavbaluyev.eduatlas.service.SnapshotMatriceService;
 
 import java.io.IOException;
 import java.io.InputStream;
-
-
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Popola il database (admin root e sincronizzazione della matrice, dall'istantanea binaria se presente e non
+ * più vecchia del CSV, altrimenti dal CSV) in background dopo l'avvio, così l'hashing BCrypt e l'importazione non ritardano l'ApplicationReadyEvent. Finché non termina, il gruppo
+ * di health "readiness" resta fuori servizio (vedi SeedMatriceHealthIndicator).
+ * Metriche: eduatlas.seed.durata (durata del popolamento) ed eduatlas.seed.ready.time (tempo dall'avvio
+ * della JVM al termine del popolamento), accanto ad application.started.time e application.ready.time di Spring Boot.
+ */
 @Component
 @Slf4j
-public class CsvDataRunner implements CommandLineRunner {
+public class CsvDataRunner {
     private static final String CSV_FILE_PATH = "MATRIXCSV.csv";
 
-    private final PaeseRepository paeseRepository;
     private final UtenteRepository utenteRepository;
     private final PasswordEncoder passwordEncoder;
-    private final CsvImportService csvImportService;
+    private final MatriceCopyImportService matriceCopyImportService;
+    private final SnapshotMatriceService snapshotMatriceService;
+    private final MeterRegistry meterRegistry;
+    private final CompletableFuture<Void> completamento = new CompletableFuture<>();
+    private volatile double prontoDopoMillis = Double.NaN;
 
     @Autowired
-    public CsvDataRunner(PaeseRepository paeseRepository,
-                        UtenteRepository utenteRepository,
+    public CsvDataRunner(UtenteRepository utenteRepository,
                         PasswordEncoder passwordEncoder,
-                        CsvImportService csvImportService) {
-        this.paeseRepository = paeseRepository;
+                        MatriceCopyImportService matriceCopyImportService,
+                        SnapshotMatriceService snapshotMatriceService,
+                        MeterRegistry meterRegistry) {
         this.utenteRepository = utenteRepository;
         this.passwordEncoder = passwordEncoder;
-        this.csvImportService = csvImportService;
+        this.matriceCopyImportService = matriceCopyImportService;
+        this.snapshotMatriceService = snapshotMatriceService;
+        this.meterRegistry = meterRegistry;
+        TimeGauge.builder("eduatlas.seed.ready.time", () -> prontoDopoMillis, TimeUnit.MILLISECONDS)
+                .description("Tempo dall'avvio della JVM al termine del popolamento iniziale")
+                .register(meterRegistry);
     }
 
     @Value("${admin.root.password}")
     private String adminRootPassword;
 
-    @Override
-    public void run(String... args) {
+    // Se presente (ad esempio generata con GET /importazioni/snapshot e inclusa nel jar) sostituisce il CSV,
+    // purché non sia più vecchia: un'istantanea dimenticata non deve nascondere una matrice aggiornata
+    @Value("${eduatlas.seed.snapshot:classpath:matrice.snapshot}")
+    private Resource snapshot;
+
+    private final Resource csv = new ClassPathResource(CSV_FILE_PATH);
+
+    // All'avvio la matrice viene solo unita; la rimozione dei paesi usciti dal file va chiesta esplicitamente
+    @Value("${eduatlas.seed.rimuovi-scomparsi:false}")
+    private boolean rimuoviScomparsi;
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        long inizio = System.nanoTime();
+        String esito = "successo";
         try {
             initializeRootAdmin();
 
-            if (paeseRepository.count() > 0) {
-                log.info("Il database contiene già dei dati. Saltando l'importazione CSV.");
-                return;
+            // La sincronizzazione confronta le impronte delle righe: su un database già allineato non scrive nulla
+            if (usaSnapshot()) {
+                log.info("Sincronizzazione dei dati con l'istantanea {} (rimozione dei paesi scomparsi: {})...",
+                        snapshot.getDescription(), rimuoviScomparsi);
+                snapshotMatriceService.importa(snapshot, rimuoviScomparsi);
+                log.info("Sincronizzazione dall'istantanea completata con successo.");
+            } else {
+                log.info("Sincronizzazione dei dati con il CSV (rimozione dei paesi scomparsi: {})...", rimuoviScomparsi);
+                importCSVData();
+                log.info("Sincronizzazione CSV completata con successo.");
             }
-
-            log.info("Iniziando l'importazione dei dati dal CSV...");
-            importCSVData();
-            log.info("Importazione CSV completata con successo.");
+            completamento.complete(null);
 
         } catch (Exception e) {
+            esito = "errore";
             log.error("Errore durante l'inizializzazione: {}", e.getMessage(), e);
+            completamento.completeExceptionally(e);
+        } finally {
+            Timer.builder("eduatlas.seed.durata")
+                    .description("Durata del popolamento iniziale (admin root e matrice)")
+                    .tag("esito", esito)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - inizio, TimeUnit.NANOSECONDS);
+            prontoDopoMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+            log.info("Popolamento iniziale terminato ({}) dopo {} ms dall'avvio della JVM", esito, Math.round(prontoDopoMillis));
+        }
+    }
+
+    /**
+     * Completato al termine del popolamento (eccezionalmente se è fallito)
+     */
+    public CompletionStage<Void> completamento() {
+        return completamento.minimalCompletionStage();
+    }
+
+    private boolean usaSnapshot() {
+        if (!snapshot.exists()) return false;
+        if (!csv.exists()) return true;
+        long modificaSnapshot = ultimaModifica(snapshot);
+        long modificaCsv = ultimaModifica(csv);
+        boolean usaSnapshot = modificaSnapshot >= modificaCsv;
+        log.warn("Trovati sia l'istantanea {} (modificata {}) sia il CSV {} (modificato {}): viene usato {}. " +
+                        "Rimuovere quello superato per evitare ambiguità.",
+                snapshot.getDescription(), Instant.ofEpochMilli(modificaSnapshot),
+                csv.getDescription(), Instant.ofEpochMilli(modificaCsv),
+                usaSnapshot ? "l'istantanea" : "il CSV, più recente");
+        return usaSnapshot;
+    }
+
+    // 0 se la data non è disponibile: a parità prevale l'istantanea, come prima
+    private static long ultimaModifica(Resource risorsa) {
+        try {
+            return risorsa.lastModified();
+        } catch (IOException e) {
+            return 0;
         }
     }
 
     private void importCSVData() {
-        try (InputStream inputStream = getClass().getClassLoader()
-                .getResourceAsStream(CSV_FILE_PATH)) {
-            if (inputStream == null) {
-                throw new RuntimeException("File CSV non trovato: " + CSV_FILE_PATH);
+        if (!csv.exists()) {
+            throw new RuntimeException("File CSV non trovato: " + CSV_FILE_PATH);
+        }
+        try (InputStream inputStream = csv.getInputStream()) {
+            if (rimuoviScomparsi) {
+                matriceCopyImportService.sincronizza(inputStream);
+            } else {
+                matriceCopyImportService.importa(inputStream);
             }
-            csvImportService.importCsvData(inputStream);
         } catch (IOException e) {
             throw new RuntimeException("Errore nell'importazione del CSV", e);
         }
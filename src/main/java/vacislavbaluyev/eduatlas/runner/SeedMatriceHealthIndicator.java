@@ -0,0 +1,35 @@
+package vacislavbaluyev.eduatlas.runner;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Stato del popolamento iniziale, incluso nel gruppo "readiness": OUT_OF_SERVICE finché CsvDataRunner
+ * non ha terminato, DOWN se il popolamento è fallito.
+ */
+@Component
+public class SeedMatriceHealthIndicator implements HealthIndicator {
+
+    private final CompletableFuture<Void> completamento;
+
+    public SeedMatriceHealthIndicator(CsvDataRunner csvDataRunner) {
+        this.completamento = csvDataRunner.completamento().toCompletableFuture();
+    }
+
+    @Override
+    public Health health() {
+        if (!completamento.isDone()) {
+            return Health.outOfService().withDetail("seed", "in corso").build();
+        }
+        try {
+            completamento.join();
+            return Health.up().build();
+        } catch (CompletionException e) {
+            return Health.down().withDetail("errore", String.valueOf(e.getCause().getMessage())).build();
+        }
+    }
+}
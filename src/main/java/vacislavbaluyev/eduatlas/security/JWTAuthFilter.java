@@ -14,9 +14,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 import vacislavbaluyev.eduatlas.exception.UnauthorizedOperationException;
-import vacislavbaluyev.eduatlas.payload.UtenteDTO;
-import vacislavbaluyev.eduatlas.service.UtenteService;
-import vacislavbaluyev.eduatlas.tools.JWTTools;
 
 import java.io.IOException;
 import java.util.List;
@@ -26,8 +23,11 @@ import java.util.List;
 @RequiredArgsConstructor
 public class JWTAuthFilter extends OncePerRequestFilter {
 
-    private final JWTTools jwtTools;
-    private final UtenteService utenteService;
+    // Condiviso: AntPathMatcher tiene in cache i pattern già analizzati, un'istanza nuova li ricompila a ogni richiesta
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final TokenVerificatiCache tokenVerificatiCache;
+    private final VersioniTokenRegistry versioniTokenRegistry;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -54,15 +54,18 @@ public class JWTAuthFilter extends OncePerRequestFilter {
 
         try {
             String accessToken = authHeader.replace("Bearer ", "");
-            jwtTools.verifyToken(accessToken);
-            String username = jwtTools.extractSubject(accessToken); // Modifica qui per usare username invece di id
+            // Un'unica verifica del token, saltata se lo stesso token è già stato verificato
+            TokenVerificatiCache.TokenVerificato token = tokenVerificatiCache.verifica(accessToken);
+            String username = token.username();
 
-            // Recupera l'utente usando lo username
-            UtenteDTO utente = utenteService.getUserByUsername(username);
+            // Password o ruolo cambiati, o utente eliminato, dopo l'emissione del token
+            if (!versioniTokenRegistry.valida(username, token.versione())) {
+                throw new UnauthorizedOperationException("Token revocato");
+            }
 
-            // Crea l'authority basata sul ruolo dell'utente
+            // Le authority vengono dal ruolo scritto nel token: nessuna query per richiesta
             List<SimpleGrantedAuthority> authorities = List.of(
-                    new SimpleGrantedAuthority("ROLE_" + utente.ruolo().name())
+                    new SimpleGrantedAuthority("ROLE_" + token.ruolo().name())
             );
 
             Authentication authentication = new UsernamePasswordAuthenticationToken(
@@ -83,8 +86,10 @@ public class JWTAuthFilter extends OncePerRequestFilter {
     @Override
     protected boolean shouldNotFilter(HttpServletRequest request) {
         return "OPTIONS".equalsIgnoreCase(request.getMethod()) ||
-                new AntPathMatcher().match("/auth/**", request.getServletPath()) ||
-                (new AntPathMatcher().match("/paesi/**", request.getServletPath())
+                PATH_MATCHER.match("/auth/**", request.getServletPath()) ||
+                PATH_MATCHER.match("/voti/**", request.getServletPath()) ||
+                PATH_MATCHER.match("/actuator/health/**", request.getServletPath()) ||
+                (PATH_MATCHER.match("/paesi/**", request.getServletPath())
                         && "GET".equalsIgnoreCase(request.getMethod()));
     }
 
@@ -93,6 +98,8 @@ public class JWTAuthFilter extends OncePerRequestFilter {
         String method = request.getMethod();
 
         return (path.startsWith("/auth/") ||
+                path.startsWith("/voti/") ||
+                path.startsWith("/actuator/health/") ||
                 (path.startsWith("/paesi/") && "GET".equalsIgnoreCase(method)));
     }
 
@@ -0,0 +1,93 @@
+package vacislavbaluyev.eduatlas.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import vacislavbaluyev.eduatlas.exception.TroppeRichiesteException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Limite per client (indirizzo remoto) sulla conversione pubblica dei libretti: un secchio di gettoni
+ * da eduatlas.voti.limite.voti-al-minuto che si riempie in un minuto, e ogni richiesta consuma un gettone
+ * per voto. Oltre il limite la richiesta viene rifiutata con 429 e Retry-After.
+ * I secchi sono al più eduatlas.voti.limite.client-massimi: quando sono troppi vengono rimossi quelli
+ * di nuovo pieni (client inattivi da almeno un minuto) e, se non basta, tutti.
+ * Dietro un proxy l'indirizzo remoto è quello del client grazie a server.forward-headers-strategy=native,
+ * purché il proxy sia tra quelli fidati (server.tomcat.remoteip.internal-proxies).
+ */
+@Component
+@Slf4j
+public class LimitatoreConversioni {
+
+    private static final long MINUTO_NANOS = 60_000_000_000L;
+
+    private record Secchio(double gettoni, long aggiornatoAlle) {
+    }
+
+    private final double capacita;
+    private final double gettoniPerNano;
+    private final int clientMassimi;
+    private final LongSupplier orologio;
+    private final Counter rifiutate;
+    private final Map<String, Secchio> secchi = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LimitatoreConversioni(MeterRegistry meterRegistry,
+                                 @Value("${eduatlas.voti.limite.voti-al-minuto:6000}") int votiAlMinuto,
+                                 @Value("${eduatlas.voti.limite.client-massimi:10000}") int clientMassimi) {
+        this(meterRegistry, votiAlMinuto, clientMassimi, System::nanoTime);
+    }
+
+    LimitatoreConversioni(MeterRegistry meterRegistry, int votiAlMinuto, int clientMassimi, LongSupplier orologio) {
+        this.capacita = votiAlMinuto;
+        this.gettoniPerNano = (double) votiAlMinuto / MINUTO_NANOS;
+        this.clientMassimi = clientMassimi;
+        this.orologio = orologio;
+        this.rifiutate = Counter.builder("eduatlas.voti.rifiutate")
+                .description("Conversioni di libretti rifiutate per superamento del limite del client")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Consuma un gettone per voto
+     *
+     * @throws TroppeRichiesteException se il client ha esaurito i gettoni
+     */
+    public void consuma(String client, int voti) {
+        long adesso = orologio.getAsLong();
+        // Un libretto più grande del secchio lo svuota tutto, invece di essere rifiutato per sempre
+        double costo = Math.min(voti, capacita);
+        if (secchi.size() >= clientMassimi && !secchi.containsKey(client)) {
+            libera(adesso);
+        }
+        boolean[] accettata = new boolean[1];
+        Secchio secchio = secchi.compute(client, (k, attuale) -> {
+            double gettoni = attuale == null ? capacita : riempi(attuale, adesso);
+            accettata[0] = gettoni >= costo;
+            return new Secchio(accettata[0] ? gettoni - costo : gettoni, adesso);
+        });
+        if (!accettata[0]) {
+            rifiutate.increment();
+            long attesa = (long) Math.ceil((costo - secchio.gettoni()) / gettoniPerNano / 1e9);
+            throw new TroppeRichiesteException("Troppi voti convertiti, riprova tra " + attesa + " secondi", Math.max(1, attesa));
+        }
+    }
+
+    private double riempi(Secchio secchio, long adesso) {
+        return Math.min(capacita, secchio.gettoni() + (adesso - secchio.aggiornatoAlle()) * gettoniPerNano);
+    }
+
+    private void libera(long adesso) {
+        secchi.values().removeIf(secchio -> riempi(secchio, adesso) >= capacita);
+        if (secchi.size() >= clientMassimi) {
+            log.debug("Limitatore delle conversioni pieno ({} client): svuotato", secchi.size());
+            secchi.clear();
+        }
+    }
+}
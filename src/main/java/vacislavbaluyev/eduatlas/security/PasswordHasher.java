@@ -0,0 +1,125 @@
+package vacislavbaluyev.eduatlas.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import vacislavbaluyev.eduatlas.exception.ServizioSovraccaricoException;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Esegue l'hashing delle password su un pool dedicato e limitato, così un picco di login occupa al più
+ * eduatlas.password.hashing.thread core (di default metà) e il resto resta alle altre richieste.
+ * Oltre eduatlas.password.hashing.coda richieste in attesa le nuove vengono rifiutate con 503.
+ * Metriche: eduatlas.password.attesa (tempo in coda), eduatlas.password.hashing (durata del calcolo),
+ * eduatlas.password.rifiutate ed eduatlas.password.coda.
+ */
+@Component
+@Slf4j
+public class PasswordHasher {
+
+    /**
+     * Esito di una verifica: se la password corrisponde ma l'hash salvato usa un algoritmo o un costo superato,
+     * nuovoHash contiene l'hash ricalcolato con la configurazione attuale (altrimenti è null)
+     */
+    public record Verifica(boolean corrisponde, String nuovoHash) {
+    }
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor esecutore;
+    private final Timer attesa;
+    private final Timer hashing;
+    private final Counter rifiutate;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+                          MeterRegistry meterRegistry,
+                          @Value("${eduatlas.password.hashing.thread:0}") int thread,
+                          @Value("${eduatlas.password.hashing.coda:64}") int coda) {
+        this.passwordEncoder = passwordEncoder;
+        int numeroThread = thread > 0 ? thread : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger contatore = new AtomicInteger();
+        this.esecutore = new ThreadPoolExecutor(numeroThread, numeroThread, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(coda),
+                r -> {
+                    Thread t = new Thread(r, "hash-password-" + contatore.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.attesa = Timer.builder("eduatlas.password.attesa")
+                .description("Tempo trascorso in coda prima dell'hashing della password")
+                .register(meterRegistry);
+        this.hashing = Timer.builder("eduatlas.password.hashing")
+                .description("Durata dell'hashing o della verifica di una password")
+                .register(meterRegistry);
+        this.rifiutate = Counter.builder("eduatlas.password.rifiutate")
+                .description("Richieste di hashing rifiutate perché la coda era piena")
+                .register(meterRegistry);
+        Gauge.builder("eduatlas.password.coda", esecutore, e -> e.getQueue().size())
+                .description("Richieste di hashing in attesa")
+                .register(meterRegistry);
+        log.info("Hashing delle password su {} thread, coda di {} richieste", numeroThread, coda);
+    }
+
+    public Verifica verifica(String password, String hashSalvato) {
+        return esegui(() -> {
+            if (!passwordEncoder.matches(password, hashSalvato)) {
+                return new Verifica(false, null);
+            }
+            // Stessa attività: il ricalcolo non torna in coda
+            String nuovoHash = passwordEncoder.upgradeEncoding(hashSalvato) ? passwordEncoder.encode(password) : null;
+            return new Verifica(true, nuovoHash);
+        });
+    }
+
+    public String codifica(String password) {
+        return esegui(() -> passwordEncoder.encode(password));
+    }
+
+    private <T> T esegui(Callable<T> calcolo) {
+        long accodataAlle = System.nanoTime();
+        Future<T> risultato;
+        try {
+            risultato = esecutore.submit(() -> {
+                long inizio = System.nanoTime();
+                attesa.record(inizio - accodataAlle, TimeUnit.NANOSECONDS);
+                try {
+                    return calcolo.call();
+                } finally {
+                    hashing.record(System.nanoTime() - inizio, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rifiutate.increment();
+            throw new ServizioSovraccaricoException("Troppi accessi in corso, riprova tra poco");
+        }
+        try {
+            return risultato.get();
+        } catch (InterruptedException e) {
+            risultato.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Hashing della password interrotto", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new IllegalStateException("Errore nell'hashing della password", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        esecutore.shutdownNow();
+    }
+}
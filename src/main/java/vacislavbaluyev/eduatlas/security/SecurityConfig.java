@@ -1,6 +1,7 @@
 package vacislavbaluyev.eduatlas.security;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -10,7 +11,10 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
@@ -18,6 +22,7 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebSecurity
@@ -38,6 +43,10 @@ public class SecurityConfig {
 
         httpSecurity.authorizeHttpRequests(auth -> auth
                 .requestMatchers("/auth/**").permitAll()
+                .requestMatchers(org.springframework.http.HttpMethod.GET, "/voti/equivalenza/**").permitAll()
+                .requestMatchers(org.springframework.http.HttpMethod.POST, "/voti/converti").permitAll()
+                .requestMatchers("/actuator/health/**").permitAll()
+                .requestMatchers("/actuator/**").hasAnyRole("ADMIN", "ROOT_ADMIN")
                 .requestMatchers(org.springframework.http.HttpMethod.GET, "/paesi/**").permitAll()
                 .requestMatchers(org.springframework.http.HttpMethod.POST, "/paesi/**").hasAnyRole("ADMIN", "ROOT_ADMIN")
                 .requestMatchers(org.springframework.http.HttpMethod.DELETE, "/paesi/**").hasAnyRole("ADMIN", "ROOT_ADMIN")
@@ -48,9 +57,26 @@ public class SecurityConfig {
     }
 
 
+    /**
+     * Gli hash vengono salvati con il prefisso dell'algoritmo ({bcrypt}, {argon2}, {pbkdf2}); quelli senza prefisso,
+     * salvati prima dell'introduzione della codifica delegata, sono BCrypt. Un hash con un algoritmo diverso da
+     * eduatlas.password.algoritmo o con un costo BCrypt inferiore viene ricalcolato al login successivo.
+     */
     @Bean
-    public PasswordEncoder getBCrypt() {
-        return new BCryptPasswordEncoder(12);
+    public PasswordEncoder getBCrypt(@Value("${eduatlas.password.algoritmo:bcrypt}") String algoritmo,
+                                     @Value("${eduatlas.password.bcrypt-costo:12}") int costoBcrypt) {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder(costoBcrypt);
+        Map<String, PasswordEncoder> codificatori = Map.of(
+                "bcrypt", bcrypt,
+                "argon2", Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8(),
+                "pbkdf2", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        if (!codificatori.containsKey(algoritmo)) {
+            throw new IllegalStateException("Algoritmo per le password non supportato: " + algoritmo
+                    + " (valori ammessi: " + codificatori.keySet() + ")");
+        }
+        DelegatingPasswordEncoder encoder = new DelegatingPasswordEncoder(algoritmo, codificatori);
+        encoder.setDefaultPasswordEncoderForMatches(bcrypt);
+        return encoder;
     }
 
     @Bean
@@ -72,7 +98,7 @@ public class SecurityConfig {
         ));
 
         // Headers esposti
-        configuration.setExposedHeaders(List.of("Authorization"));
+        configuration.setExposedHeaders(List.of("Authorization", "X-Next-Cursor"));
 
         // Permetti le credenziali
         configuration.setAllowCredentials(true);
@@ -0,0 +1,114 @@
+package vacislavbaluyev.eduatlas.security;
+
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import vacislavbaluyev.eduatlas.entities.Ruolo;
+import vacislavbaluyev.eduatlas.exception.UnauthorizedOperationException;
+import vacislavbaluyev.eduatlas.tools.JWTTools;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token già verificati (utente, ruolo e versione), indicizzati per impronta SHA-256 (il token in chiaro non viene conservato).
+ * Una richiesta con un token visto di recente salta analisi JSON e verifica HMAC; la voce vale fino
+ * alla scadenza del token. Quando la cache è piena vengono rimosse le voci scadute e, se non basta,
+ * viene svuotata: il costo è al più una nuova verifica per ogni token in uso.
+ */
+@Component
+@Slf4j
+public class TokenVerificatiCache {
+
+    public record TokenVerificato(String username, Ruolo ruolo, int versione, long scadenzaMillis) {
+        boolean scaduto(long adesso) {
+            return adesso >= scadenzaMillis;
+        }
+    }
+
+    private record Impronta(long alta, long bassa) {
+    }
+
+    private final JWTTools jwtTools;
+    private final int vociMassime;
+    private final Map<Impronta, TokenVerificato> verificati = new ConcurrentHashMap<>();
+
+    public TokenVerificatiCache(JWTTools jwtTools, @Value("${jwt.cache.voci-massime:10000}") int vociMassime) {
+        this.jwtTools = jwtTools;
+        this.vociMassime = vociMassime;
+    }
+
+    /**
+     * Restituisce il token verificato, dalla cache se possibile
+     *
+     * @throws UnauthorizedOperationException se il token non è valido o è scaduto
+     */
+    public TokenVerificato verifica(String token) {
+        Impronta impronta = impronta(token);
+        long adesso = System.currentTimeMillis();
+        TokenVerificato verificato = verificati.get(impronta);
+        if (verificato != null && !verificato.scaduto(adesso)) {
+            return verificato;
+        }
+
+        Claims claims = jwtTools.verifyToken(token);
+        long scadenza = claims.getExpiration() == null ? Long.MAX_VALUE : claims.getExpiration().getTime();
+        verificato = new TokenVerificato(claims.getSubject(), ruolo(claims), versione(claims), scadenza);
+        if (verificati.size() >= vociMassime) {
+            libera(adesso);
+        }
+        verificati.put(impronta, verificato);
+        return verificato;
+    }
+
+    public int dimensione() {
+        return verificati.size();
+    }
+
+    private void libera(long adesso) {
+        verificati.values().removeIf(voce -> voce.scaduto(adesso));
+        if (verificati.size() >= vociMassime) {
+            log.debug("Cache dei token piena ({} voci): svuotata", verificati.size());
+            verificati.clear();
+        }
+    }
+
+    // I token emessi prima dell'introduzione di ruolo e versione non sono più accettati: serve un nuovo login
+    private static Ruolo ruolo(Claims claims) {
+        String ruolo = claims.get(JWTTools.CLAIM_RUOLO, String.class);
+        if (ruolo == null) {
+            throw new UnauthorizedOperationException("Token non valido o scaduto");
+        }
+        try {
+            return Ruolo.valueOf(ruolo);
+        } catch (IllegalArgumentException e) {
+            throw new UnauthorizedOperationException("Token non valido o scaduto");
+        }
+    }
+
+    private static int versione(Claims claims) {
+        Integer versione = claims.get(JWTTools.CLAIM_VERSIONE, Integer.class);
+        if (versione == null) {
+            throw new UnauthorizedOperationException("Token non valido o scaduto");
+        }
+        return versione;
+    }
+
+    private static Impronta impronta(String token) {
+        ByteBuffer digest = ByteBuffer.wrap(sha256().digest(token.getBytes(StandardCharsets.UTF_8)));
+        return new Impronta(digest.getLong(), digest.getLong());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+    }
+}
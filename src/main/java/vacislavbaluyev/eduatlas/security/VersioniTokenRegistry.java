@@ -0,0 +1,59 @@
+package vacislavbaluyev.eduatlas.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import vacislavbaluyev.eduatlas.repository.UtenteRepository;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Versione corrente dei token di ogni utente, tenuta in memoria: il filtro confronta la versione scritta nel token
+ * senza interrogare il database. Una voce viene letta dal database alla prima richiesta e riletta dopo
+ * jwt.versioni.aggiornamento (così le modifiche fatte da altre istanze arrivano entro quel tempo);
+ * UtenteService la invalida subito dopo aver cambiato password o ruolo o eliminato l'utente.
+ * Arrivano qui solo token con firma valida, quindi le voci sono al più una per utente esistito.
+ */
+@Component
+@Slf4j
+public class VersioniTokenRegistry {
+
+    // Utente eliminato (o mai esistito): nessun token è valido
+    private static final int REVOCATO = -1;
+
+    private record Voce(int versione, long lettaAlle) {
+    }
+
+    private final UtenteRepository utenteRepository;
+    private final long aggiornamentoNanos;
+    private final Map<String, Voce> versioni = new ConcurrentHashMap<>();
+
+    public VersioniTokenRegistry(UtenteRepository utenteRepository,
+                                 @Value("${jwt.versioni.aggiornamento:60s}") Duration aggiornamento) {
+        this.utenteRepository = utenteRepository;
+        this.aggiornamentoNanos = aggiornamento.toNanos();
+    }
+
+    /**
+     * Vero se un token dell'utente con questa versione è ancora valido
+     */
+    public boolean valida(String username, int versione) {
+        long adesso = System.nanoTime();
+        Voce voce = versioni.get(username);
+        if (voce == null || adesso - voce.lettaAlle() >= aggiornamentoNanos) {
+            voce = new Voce(utenteRepository.findVersioneTokenByUsername(username).orElse(REVOCATO), adesso);
+            versioni.put(username, voce);
+        }
+        return voce.versione() != REVOCATO && voce.versione() == versione;
+    }
+
+    /**
+     * Da chiamare dopo il commit di una modifica all'utente: la prossima richiesta rilegge la versione
+     */
+    public void invalida(String username) {
+        versioni.remove(username);
+        log.debug("Versione dei token di {} invalidata", username);
+    }
+}
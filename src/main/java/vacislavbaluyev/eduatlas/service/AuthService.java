@@ -3,7 +3,6 @@ package vacislavbaluyev.eduatlas.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import vacislavbaluyev.eduatlas.entities.Ruolo;
 import vacislavbaluyev.eduatlas.entities.Utente;
@@ -14,6 +13,8 @@ import vacislavbaluyev.eduatlas.payload.AdminCreationDTO;
 import vacislavbaluyev.eduatlas.payload.LoginDTO;
 import vacislavbaluyev.eduatlas.payload.LoginResponseDTO;
 import vacislavbaluyev.eduatlas.repository.UtenteRepository;
+import vacislavbaluyev.eduatlas.security.PasswordHasher;
+import vacislavbaluyev.eduatlas.security.VersioniTokenRegistry;
 import vacislavbaluyev.eduatlas.tools.JWTTools;
 
 
@@ -21,18 +22,21 @@ import vacislavbaluyev.eduatlas.tools.JWTTools;
 @Slf4j
 public class AuthService {
     private final UtenteRepository utenteRepository;
-    private final PasswordEncoder passwordEncoder;
     private final AuthenticationManager authenticationManager;
     private final JWTTools jwtTools;
+    private final VersioniTokenRegistry versioniTokenRegistry;
+    private final PasswordHasher passwordHasher;
 
     public AuthService(UtenteRepository utenteRepository,
-                       PasswordEncoder passwordEncoder,
                        AuthenticationManager authenticationManager,
-                       JWTTools jwtTools) {
+                       JWTTools jwtTools,
+                       VersioniTokenRegistry versioniTokenRegistry,
+                       PasswordHasher passwordHasher) {
         this.utenteRepository = utenteRepository;
-        this.passwordEncoder = passwordEncoder;
         this.authenticationManager = authenticationManager;
         this.jwtTools = jwtTools;
+        this.versioniTokenRegistry = versioniTokenRegistry;
+        this.passwordHasher = passwordHasher;
     }
 
     public LoginResponseDTO login(LoginDTO loginDto) {
@@ -40,10 +44,18 @@ public class AuthService {
         Utente utente = utenteRepository.findByUsername(loginDto.username())
                 .orElseThrow(() -> new ResourceNotFoundException("Utente non trovato"));
 
-        // Verifica la password senza usare AuthenticationManager (non abbiamo un UserDetailsService configurato)
-        if (!passwordEncoder.matches(loginDto.password(), utente.getPassword())) {
+        // Verifica la password senza usare AuthenticationManager (non abbiamo un UserDetailsService configurato),
+        // sul pool dedicato all'hashing
+        PasswordHasher.Verifica verifica = passwordHasher.verifica(loginDto.password(), utente.getPassword());
+        if (!verifica.corrisponde()) {
             throw new UnauthorizedOperationException("Credenziali non valide");
         }
+        // Hash con algoritmo o costo superati: si salva quello ricalcolato (la versione dei token non cambia)
+        if (verifica.nuovoHash() != null) {
+            utente.setPassword(verifica.nuovoHash());
+            utenteRepository.save(utente);
+            log.info("Hash della password di {} aggiornato alla configurazione corrente", utente.getUsername());
+        }
 
         // Genera il token JWT
         String token = jwtTools.generateToken(utente);
@@ -67,6 +79,8 @@ public class AuthService {
 
         Utente admin = buildUser(adminDto, Ruolo.ADMIN);
         utenteRepository.save(admin);
+        // Lo username potrebbe appartenere a un admin eliminato di recente, registrato come revocato
+        versioniTokenRegistry.invalida(admin.getUsername());
         log.info("Nuovo admin creato da {}: {}", requestingUsername, admin.getUsername());
     }
 
@@ -83,7 +97,7 @@ public class AuthService {
         return Utente.builder()
                 .username(dto.username())
                 .email(dto.email())
-                .password(passwordEncoder.encode(dto.password()))
+                .password(passwordHasher.codifica(dto.password()))
                 .nome(dto.nome())
                 .cognome(dto.cognome())
                 .ruolo(ruolo)
@@ -0,0 +1,24 @@
+package vacislavbaluyev.eduatlas.service;
+
+/**
+ * Riceve l'avanzamento di un'importazione della matrice.
+ * Le righe analizzate vengono segnalate dai thread di analisi, quelle scritte dal thread della transazione:
+ * le implementazioni devono essere thread-safe.
+ */
+public interface AvanzamentoImport {
+
+    AvanzamentoImport NESSUNO = new AvanzamentoImport() {
+    };
+
+    default void righeAnalizzate(int righe) {
+    }
+
+    default void righeScritte(int righe) {
+    }
+
+    /**
+     * Il caricamento è terminato e inizia l'unione con le tabelle definitive
+     */
+    default void inUnione() {
+    }
+}
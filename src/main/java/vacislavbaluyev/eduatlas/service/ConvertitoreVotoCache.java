@@ -0,0 +1,115 @@
+package vacislavbaluyev.eduatlas.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
+import vacislavbaluyev.eduatlas.exception.ResourceNotFoundException;
+import vacislavbaluyev.eduatlas.repository.SistemaValutazioneRepository;
+import vacislavbaluyev.eduatlas.tools.ConvertitoreVoto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Convertitori di voto compilati, uno per paese. Un sistema di valutazione viene letto e analizzato
+ * solo alla prima richiesta; le modifiche ai paesi invalidano la voce dopo il commit.
+ */
+@Component
+@Slf4j
+public class ConvertitoreVotoCache {
+
+    private final SistemaValutazioneRepository sistemaValutazioneRepository;
+    private final Map<Long, ConvertitoreVoto> convertitori = new ConcurrentHashMap<>();
+    // Incrementata a ogni invalidazione: un convertitore compilato prima non entra in cache
+    private final AtomicLong generazione = new AtomicLong();
+
+    public ConvertitoreVotoCache(SistemaValutazioneRepository sistemaValutazioneRepository) {
+        this.sistemaValutazioneRepository = sistemaValutazioneRepository;
+    }
+
+    /**
+     * La query e la compilazione avvengono fuori dalla mappa (computeIfAbsent terrebbe il lock del bucket
+     * durante la lettura dal database); in caso di corsa vince il primo convertitore inserito.
+     */
+    public ConvertitoreVoto get(Long paeseId) {
+        ConvertitoreVoto convertitore = convertitori.get(paeseId);
+        if (convertitore != null) return convertitore;
+
+        long generazioneLetta = generazione.get();
+        convertitore = compila(paeseId);
+        return memorizza(paeseId, convertitore, generazioneLetta);
+    }
+
+    /**
+     * Convertitori per più paesi: quelli non ancora in cache vengono caricati con un'unica query.
+     */
+    public Map<Long, ConvertitoreVoto> getAll(Collection<Long> paeseIds) {
+        Map<Long, ConvertitoreVoto> risultato = new HashMap<>();
+        List<Long> mancanti = new ArrayList<>();
+        for (Long paeseId : paeseIds) {
+            ConvertitoreVoto convertitore = convertitori.get(paeseId);
+            if (convertitore != null) {
+                risultato.put(paeseId, convertitore);
+            } else {
+                mancanti.add(paeseId);
+            }
+        }
+        if (mancanti.isEmpty()) return risultato;
+
+        long generazioneLetta = generazione.get();
+        for (SistemaValutazione sistema : sistemaValutazioneRepository.findByPaeseIdIn(mancanti)) {
+            Long paeseId = sistema.getPaese().getId();
+            risultato.put(paeseId, memorizza(paeseId, ConvertitoreVoto.compila(sistema), generazioneLetta));
+        }
+        for (Long paeseId : mancanti) {
+            if (!risultato.containsKey(paeseId)) {
+                throw new ResourceNotFoundException("Sistema Valutazione", "paese", paeseId);
+            }
+        }
+        log.debug("Compilati {} sistemi di valutazione", mancanti.size());
+        return risultato;
+    }
+
+    public void invalida(Long paeseId) {
+        generazione.incrementAndGet();
+        convertitori.remove(paeseId);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPaeseChanged(PaeseChangedEvent event) {
+        if (event.isTutti()) {
+            generazione.incrementAndGet();
+            convertitori.clear();
+        } else {
+            invalida(event.paeseId());
+        }
+    }
+
+    private ConvertitoreVoto memorizza(Long paeseId, ConvertitoreVoto convertitore, long generazioneLetta) {
+        if (generazione.get() != generazioneLetta) {
+            // Invalidato durante la lettura: il risultato vale per questa richiesta ma potrebbe essere superato
+            return convertitore;
+        }
+        ConvertitoreVoto esistente = convertitori.putIfAbsent(paeseId, convertitore);
+        if (esistente != null) return esistente;
+        if (generazione.get() != generazioneLetta) {
+            // Un'invalidazione è arrivata tra il controllo e l'inserimento
+            convertitori.remove(paeseId, convertitore);
+        }
+        return convertitore;
+    }
+
+    private ConvertitoreVoto compila(Long paeseId) {
+        ConvertitoreVoto convertitore = sistemaValutazioneRepository.findByPaeseId(paeseId)
+                .map(ConvertitoreVoto::compila)
+                .orElseThrow(() -> new ResourceNotFoundException("Sistema Valutazione", "paese", paeseId));
+        log.debug("Sistema di valutazione compilato per il paese {}", paeseId);
+        return convertitore;
+    }
+}
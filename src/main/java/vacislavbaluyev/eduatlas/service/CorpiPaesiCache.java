@@ -0,0 +1,135 @@
+package vacislavbaluyev.eduatlas.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import vacislavbaluyev.eduatlas.payload.DettaglioPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaRichiestaDTO;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Corpi JSON già serializzati (e compressi con gzip) delle letture pubbliche più frequenti: la prima pagina
+ * di GET /paesi (dimensione predefinita) e GET /paesi/{id}. Vengono costruiti una volta per snapshot del catalogo: finché il dataset non cambia una
+ * richiesta scrive direttamente i byte, senza Jackson né compressione.
+ */
+@Component
+@Slf4j
+public class CorpiPaesiCache {
+
+    /**
+     * Lo stesso contenuto in JSON e in JSON compresso con gzip (livello massimo: si paga una volta sola)
+     */
+    public record Corpo(byte[] json, byte[] gzip) {
+        public byte[] per(boolean gzip) {
+            return gzip ? this.gzip : json;
+        }
+    }
+
+    /**
+     * La prima pagina serializzata e il cursore della successiva (null se i paesi stanno tutti in una pagina)
+     */
+    public record PrimaPagina(Corpo corpo, String cursoreSuccessivo) {
+    }
+
+    private record Corpi(CountryCatalogue.Snapshot snapshot, PrimaPagina primaPagina, Map<Long, Corpo> perId) {
+    }
+
+    private final CountryCatalogue countryCatalogue;
+    private final ObjectMapper objectMapper;
+    private volatile Corpi corpi;
+
+    public CorpiPaesiCache(CountryCatalogue countryCatalogue, ObjectMapper objectMapper) {
+        this.countryCatalogue = countryCatalogue;
+        this.objectMapper = objectMapper;
+    }
+
+    public PrimaPagina primaPagina() {
+        return correnti().primaPagina();
+    }
+
+    public Optional<Corpo> paese(Long id) {
+        Corpi correnti = correnti();
+        return correnti.snapshot().byId(id)
+                .map(paese -> correnti.perId().computeIfAbsent(id, k -> corpo(paese)));
+    }
+
+    /**
+     * Vero se l'intestazione Accept-Encoding ammette gzip (esplicitamente o con *) con q maggiore di zero
+     */
+    public static boolean accettaGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String codifica : acceptEncoding.split(",")) {
+            String[] parti = codifica.split(";");
+            String nome = parti[0].trim();
+            if (!nome.equalsIgnoreCase("gzip") && !nome.equals("*")) continue;
+            boolean escluso = false;
+            for (int i = 1; i < parti.length; i++) {
+                String parametro = parti[i].trim();
+                if (parametro.startsWith("q=")) {
+                    try {
+                        escluso = Double.parseDouble(parametro.substring(2)) <= 0;
+                    } catch (NumberFormatException e) {
+                        escluso = true;
+                    }
+                }
+            }
+            if (!escluso) return true;
+        }
+        return false;
+    }
+
+    // Le voci per id di uno snapshot superato vengono scartate insieme a lui
+    private Corpi correnti() {
+        CountryCatalogue.Snapshot snapshot = countryCatalogue.snapshot();
+        Corpi correnti = corpi;
+        if (correnti == null || correnti.snapshot() != snapshot) {
+            synchronized (this) {
+                correnti = corpi;
+                if (correnti == null || correnti.snapshot() != snapshot) {
+                    PaginaDTO<DettaglioPaeseDTO> prima = snapshot.pagina(snapshot.ids(),
+                            PaginaRichiestaDTO.prima(PaginaRichiestaDTO.DIMENSIONE_PREDEFINITA));
+                    correnti = new Corpi(snapshot, new PrimaPagina(corpo(prima.contenuto()), prima.cursoreSuccessivo()),
+                            new ConcurrentHashMap<>());
+                    corpi = correnti;
+                    Corpo corpoPrima = correnti.primaPagina().corpo();
+                    log.debug("Corpi JSON dei paesi ricostruiti per la versione {} (prima pagina {} byte, {} compressi)",
+                            snapshot.versione(), corpoPrima.json().length, corpoPrima.gzip().length);
+                }
+            }
+        }
+        return correnti;
+    }
+
+    private Corpo corpo(Object valore) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(valore);
+            return new Corpo(json, gzip(json));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Serializzazione dei paesi non riuscita", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] dati) {
+        ByteArrayOutputStream compressi = new ByteArrayOutputStream(dati.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressi) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(dati);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressi.toByteArray();
+    }
+}
@@ -0,0 +1,338 @@
+package vacislavbaluyev.eduatlas.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vacislavbaluyev.eduatlas.entities.VersioneCatalogo;
+import vacislavbaluyev.eduatlas.payload.DettaglioPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.FiltroPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaRichiestaDTO;
+import vacislavbaluyev.eduatlas.repository.PaeseRepository;
+import vacislavbaluyev.eduatlas.repository.VersioneCatalogoRepository;
+import vacislavbaluyev.eduatlas.tools.CursoreKeyset;
+import vacislavbaluyev.eduatlas.tools.IntIdIndex;
+import vacislavbaluyev.eduatlas.tools.NomePaeseResolver;
+import vacislavbaluyev.eduatlas.tools.NomeSearchIndex;
+import vacislavbaluyev.eduatlas.tools.SortedIds;
+import vacislavbaluyev.eduatlas.tools.StringIdIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Copia in memoria, immutabile, di tutti i DettaglioPaeseDTO.
+ * Le letture usano lo snapshot corrente senza toccare il database; dopo ogni commit
+ * che modifica un paese viene creato un nuovo snapshot (copy-on-write) e sostituito atomicamente.
+ * Gli indici secondari sono array di id ordinati, aggiornati solo per le chiavi del paese modificato.
+ * La versione di ogni snapshot è quella persistita in VersioneCatalogo, non un contatore locale: un aggiornamento
+ * incrementale porta la versione prodotta dalla propria scrittura, un caricamento completo quella letta prima dei dati.
+ */
+@Component
+@Slf4j
+public class CountryCatalogue {
+
+    private static final String ALIAS_FILE_PATH = "paesi-alias.csv";
+
+    private final PaeseRepository paeseRepository;
+    private final VersioneCatalogoRepository versioneCatalogoRepository;
+    private final Map<String, List<String>> alias;
+
+    private volatile Snapshot snapshot;
+    // Serializza caricamenti e aggiornamenti, che leggono dal database: un ReentrantLock e non synchronized,
+    // perché un thread virtuale in attesa di JDBC dentro un monitor bloccherebbe il suo carrier
+    private final ReentrantLock aggiornamento = new ReentrantLock();
+
+    public CountryCatalogue(PaeseRepository paeseRepository, VersioneCatalogoRepository versioneCatalogoRepository) {
+        this.paeseRepository = paeseRepository;
+        this.versioneCatalogoRepository = versioneCatalogoRepository;
+        this.alias = caricaAlias();
+    }
+
+    public Snapshot snapshot() {
+        Snapshot corrente = snapshot;
+        if (corrente == null) {
+            aggiornamento.lock();
+            try {
+                corrente = snapshot;
+                if (corrente == null) {
+                    corrente = caricaTutto();
+                }
+            } finally {
+                aggiornamento.unlock();
+            }
+        }
+        return corrente;
+    }
+
+    public void ricarica() {
+        aggiornamento.lock();
+        try {
+            caricaTutto();
+        } finally {
+            aggiornamento.unlock();
+        }
+    }
+
+    /**
+     * Versione del dataset per la cache HTTP: ETag e Last-Modified derivano dalla versione persistita,
+     * quindi sono gli stessi su ogni replica che ha caricato gli stessi dati e sopravvivono ai riavvii.
+     * ultimaModificaMillis vale -1 (nessun Last-Modified) se il catalogo non è mai stato modificato.
+     */
+    public VersioneDataset versioneDataset() {
+        Snapshot corrente = snapshot();
+        return new VersioneDataset("\"" + corrente.versione() + "\"", corrente.ultimaModificaMillis());
+    }
+
+    public record VersioneDataset(String etag, long ultimaModificaMillis) {
+    }
+
+    /**
+     * Eseguito solo dopo il commit della transazione che ha pubblicato l'evento:
+     * le letture continuano a vedere il vecchio snapshot finché la scrittura non è confermata.
+     * L'aggiornamento è incrementale solo se la scrittura segue immediatamente lo snapshot corrente e nessun'altra
+     * è stata confermata nel frattempo; altrimenti (scritture concorrenti, eventi arrivati fuori ordine, scritture di
+     * altre repliche) il catalogo viene ricaricato, così un'etichetta corrisponde sempre a un solo contenuto.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onPaeseChanged(PaeseChangedEvent event) {
+        aggiornamento.lock();
+        try {
+            Snapshot corrente = snapshot;
+            if (corrente != null && event.versione() <= corrente.versione()) {
+                // Già incluso da un caricamento completo successivo al commit della scrittura
+                return;
+            }
+            if (event.isTutti() || corrente == null || event.versione() != corrente.versione() + 1
+                    || versionePersistita().getVersione() != event.versione()) {
+                caricaTutto();
+                return;
+            }
+
+            Long id = event.paeseId();
+            snapshot = paeseRepository.findDettaglioById(id)
+                    .map(paese -> corrente.with(event.versione(), event.ultimaModificaMillis(), paese))
+                    .orElseGet(() -> corrente.without(event.versione(), event.ultimaModificaMillis(), id));
+            log.debug("Catalogo aggiornato per il paese {} (versione {})", id, event.versione());
+        } finally {
+            aggiornamento.unlock();
+        }
+    }
+
+    private Snapshot caricaTutto() {
+        // Prima la versione, poi i dati: se una scrittura si inserisce in mezzo, i dati sono più recenti
+        // dell'etichetta (e il suo evento ricaricherà il catalogo), mai il contrario
+        VersioneCatalogo versione = versionePersistita();
+        List<DettaglioPaeseDTO> paesi = paeseRepository.findAllDettagli();
+        log.info("Catalogo paesi caricato: {} paesi (versione {})", paesi.size(), versione.getVersione());
+        Snapshot nuovo = Snapshot.of(versione.getVersione(), versione.getUltimaModificaMillis(), paesi, alias);
+        snapshot = nuovo;
+        return nuovo;
+    }
+
+    private VersioneCatalogo versionePersistita() {
+        return versioneCatalogoRepository.findById(VersioneCatalogo.ID)
+                .orElseGet(() -> new VersioneCatalogo(VersioneCatalogo.ID, 0, -1));
+    }
+
+    private Map<String, List<String>> caricaAlias() {
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(ALIAS_FILE_PATH)) {
+            if (inputStream == null) {
+                log.warn("File alias non trovato: {}", ALIAS_FILE_PATH);
+                return Map.of();
+            }
+            return NomePaeseResolver.caricaAlias(inputStream);
+        } catch (IOException e) {
+            log.error("Errore nella lettura degli alias dei paesi: {}", e.getMessage());
+            return Map.of();
+        }
+    }
+
+    public static String normalizzaNome(String nome) {
+        return NomeSearchIndex.normalizza(nome);
+    }
+
+    /**
+     * ultimaModificaMillis accompagna la versione nello stesso oggetto, così ETag e Last-Modified letti
+     * da versioneDataset appartengono sempre alla stessa versione; -1 se il catalogo non è mai stato modificato.
+     */
+    public record Snapshot(long versione,
+                           long ultimaModificaMillis,
+                           long[] ids,
+                           List<DettaglioPaeseDTO> paesi,
+                           Map<Long, DettaglioPaeseDTO> perId,
+                           Map<String, DettaglioPaeseDTO> perNome,
+                           IntIdIndex perAnniScuola,
+                           IntIdIndex perDurataBase,
+                           IntIdIndex perCrediti,
+                           StringIdIndex perLivelloEQF,
+                           PaeseFacetIndex facet,
+                           NomeSearchIndex ricerca,
+                           NomePaeseResolver risolutore) {
+
+        static Snapshot of(long versione, long ultimaModificaMillis, List<DettaglioPaeseDTO> paesi, Map<String, List<String>> alias) {
+            List<DettaglioPaeseDTO> ordinati = new ArrayList<>(paesi);
+            ordinati.sort(Comparator.comparing(DettaglioPaeseDTO::id));
+
+            long[] ids = new long[ordinati.size()];
+            Map<Long, DettaglioPaeseDTO> perId = new HashMap<>();
+            Map<String, DettaglioPaeseDTO> perNome = new HashMap<>();
+            Map<Integer, List<Long>> anniScuola = new HashMap<>();
+            Map<Integer, List<Long>> durataBase = new HashMap<>();
+            Map<Integer, List<Long>> crediti = new HashMap<>();
+            Map<String, List<Long>> livelloEQF = new HashMap<>();
+            Map<Long, String> nomi = new HashMap<>();
+
+            // Indici costruiti in blocco: con migliaia di paesi una sequenza di with sarebbe quadratica
+            for (int i = 0; i < ordinati.size(); i++) {
+                DettaglioPaeseDTO paese = ordinati.get(i);
+                ids[i] = paese.id();
+                perId.put(paese.id(), paese);
+                perNome.putIfAbsent(normalizzaNome(paese.nome()), paese);
+                raggruppa(anniScuola, paese.anniScuolaObbligatoria(), paese.id());
+                raggruppa(durataBase, paese.durataBaseanni(), paese.id());
+                raggruppa(crediti, paese.creditiPerAnno(), paese.id());
+                raggruppa(livelloEQF, paese.livelloEQF(), paese.id());
+                nomi.put(paese.id(), paese.nome());
+            }
+
+            List<DettaglioPaeseDTO> paesiOrdinati = List.copyOf(ordinati);
+            return new Snapshot(versione, ultimaModificaMillis, ids, paesiOrdinati, Map.copyOf(perId), Map.copyOf(perNome),
+                    IntIdIndex.of(anniScuola), IntIdIndex.of(durataBase), IntIdIndex.of(crediti),
+                    StringIdIndex.of(livelloEQF), PaeseFacetIndex.of(paesiOrdinati), NomeSearchIndex.of(nomi),
+                    NomePaeseResolver.of(nomi, alias));
+        }
+
+        private static <K> void raggruppa(Map<K, List<Long>> gruppi, K chiave, long id) {
+            if (chiave != null) {
+                gruppi.computeIfAbsent(chiave, k -> new ArrayList<>()).add(id);
+            }
+        }
+
+        /**
+         * Nuovo snapshot con il paese inserito o sostituito; gli indici vengono aggiornati solo per le sue chiavi.
+         */
+        Snapshot with(long nuovaVersione, long ultimaModificaMillis, DettaglioPaeseDTO paese) {
+            Snapshot base = perId.containsKey(paese.id()) ? without(nuovaVersione, ultimaModificaMillis, paese.id()) : this;
+
+            List<DettaglioPaeseDTO> nuoviPaesi = new ArrayList<>(base.paesi);
+            int pos = Collections.binarySearch(nuoviPaesi, paese, Comparator.comparing(DettaglioPaeseDTO::id));
+            nuoviPaesi.add(-pos - 1, paese);
+
+            Map<Long, DettaglioPaeseDTO> nuoviPerId = new HashMap<>(base.perId);
+            nuoviPerId.put(paese.id(), paese);
+            Map<String, DettaglioPaeseDTO> nuoviPerNome = new HashMap<>(base.perNome);
+            nuoviPerNome.putIfAbsent(normalizzaNome(paese.nome()), paese);
+
+            return new Snapshot(nuovaVersione, ultimaModificaMillis,
+                    SortedIds.insert(base.ids, paese.id()),
+                    Collections.unmodifiableList(nuoviPaesi),
+                    Collections.unmodifiableMap(nuoviPerId),
+                    Collections.unmodifiableMap(nuoviPerNome),
+                    indicizza(base.perAnniScuola, paese.anniScuolaObbligatoria(), paese.id()),
+                    indicizza(base.perDurataBase, paese.durataBaseanni(), paese.id()),
+                    indicizza(base.perCrediti, paese.creditiPerAnno(), paese.id()),
+                    paese.livelloEQF() == null ? base.perLivelloEQF : base.perLivelloEQF.with(paese.livelloEQF(), paese.id()),
+                    PaeseFacetIndex.of(nuoviPaesi),
+                    base.ricerca.with(paese.id(), paese.nome()),
+                    base.risolutore.with(paese.id(), paese.nome()));
+        }
+
+        Snapshot without(long nuovaVersione, long ultimaModificaMillis, Long id) {
+            DettaglioPaeseDTO paese = perId.get(id);
+            if (paese == null) {
+                return new Snapshot(nuovaVersione, ultimaModificaMillis, ids, paesi, perId, perNome,
+                        perAnniScuola, perDurataBase, perCrediti, perLivelloEQF, facet, ricerca, risolutore);
+            }
+
+            List<DettaglioPaeseDTO> nuoviPaesi = new ArrayList<>(paesi);
+            nuoviPaesi.remove(paese);
+            Map<Long, DettaglioPaeseDTO> nuoviPerId = new HashMap<>(perId);
+            nuoviPerId.remove(id);
+            Map<String, DettaglioPaeseDTO> nuoviPerNome = new HashMap<>(perNome);
+            nuoviPerNome.remove(normalizzaNome(paese.nome()), paese);
+
+            return new Snapshot(nuovaVersione, ultimaModificaMillis,
+                    SortedIds.remove(ids, id),
+                    Collections.unmodifiableList(nuoviPaesi),
+                    Collections.unmodifiableMap(nuoviPerId),
+                    Collections.unmodifiableMap(nuoviPerNome),
+                    rimuovi(perAnniScuola, paese.anniScuolaObbligatoria(), id),
+                    rimuovi(perDurataBase, paese.durataBaseanni(), id),
+                    rimuovi(perCrediti, paese.creditiPerAnno(), id),
+                    paese.livelloEQF() == null ? perLivelloEQF : perLivelloEQF.without(paese.livelloEQF(), id),
+                    PaeseFacetIndex.of(nuoviPaesi),
+                    ricerca.without(id),
+                    risolutore.without(id));
+        }
+
+        private static IntIdIndex indicizza(IntIdIndex indice, Integer chiave, long id) {
+            return chiave == null ? indice : indice.with(chiave, id);
+        }
+
+        private static IntIdIndex rimuovi(IntIdIndex indice, Integer chiave, long id) {
+            return chiave == null ? indice : indice.without(chiave, id);
+        }
+
+        public Optional<DettaglioPaeseDTO> byId(Long id) {
+            return Optional.ofNullable(perId.get(id));
+        }
+
+        /**
+         * Nome esatto, alias (italiano, inglese, lingua locale) o nome con piccoli errori di battitura.
+         */
+        public Optional<DettaglioPaeseDTO> byNome(String nome) {
+            DettaglioPaeseDTO esatto = perNome.get(normalizzaNome(nome));
+            if (esatto != null) return Optional.of(esatto);
+            OptionalLong id = risolutore.risolvi(nome);
+            return id.isPresent() ? byId(id.getAsLong()) : Optional.empty();
+        }
+
+        /**
+         * Intersezione dei criteri presenti nel filtro; i criteri nulli non restringono il risultato.
+         */
+        public long[] filtra(FiltroPaeseDTO filtro) {
+            long[] risultato = ids;
+            if (filtro.anniScuolaMin() != null || filtro.anniScuolaMax() != null) {
+                risultato = SortedIds.intersect(risultato, intervallo(perAnniScuola, filtro.anniScuolaMin(), filtro.anniScuolaMax()));
+            }
+            if (filtro.durataBaseMin() != null || filtro.durataBaseMax() != null) {
+                risultato = SortedIds.intersect(risultato, intervallo(perDurataBase, filtro.durataBaseMin(), filtro.durataBaseMax()));
+            }
+            if (filtro.creditiMin() != null || filtro.creditiMax() != null) {
+                risultato = SortedIds.intersect(risultato, intervallo(perCrediti, filtro.creditiMin(), filtro.creditiMax()));
+            }
+            if (filtro.livelloEQF() != null) {
+                risultato = SortedIds.intersect(risultato, perLivelloEQF.get(filtro.livelloEQF()));
+            }
+            return risultato;
+        }
+
+        public static long[] intervallo(IntIdIndex indice, Integer min, Integer max) {
+            return indice.range(min == null ? Integer.MIN_VALUE : min, max == null ? Integer.MAX_VALUE : max);
+        }
+
+        /**
+         * Pagina keyset di un insieme di id ordinati: vengono risolti solo i paesi della pagina
+         */
+        public PaginaDTO<DettaglioPaeseDTO> pagina(long[] idPaesi, PaginaRichiestaDTO richiesta) {
+            int inizio = SortedIds.primoDopo(idPaesi, richiesta.dopoId());
+            int fine = Math.min(idPaesi.length, inizio + richiesta.dimensioneOrDefault());
+            String successivo = fine < idPaesi.length ? CursoreKeyset.codifica(idPaesi[fine - 1]) : null;
+            return new PaginaDTO<>(risolvi(Arrays.copyOfRange(idPaesi, inizio, fine)), successivo);
+        }
+
+        public List<DettaglioPaeseDTO> risolvi(long[] idPaesi) {
+            List<DettaglioPaeseDTO> risultato = new ArrayList<>(idPaesi.length);
+            for (long id : idPaesi) {
+                risultato.add(perId.get(id));
+            }
+            return risultato;
+        }
+    }
+}
@@ -3,222 +3,317 @@ package vacislavbaluyev.eduatlas.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import vacislavbaluyev.eduatlas.entities.*;
+import vacislavbaluyev.eduatlas.entities.TipoScala;
 import vacislavbaluyev.eduatlas.exception.CsvImportException;
-import vacislavbaluyev.eduatlas.repository.PaeseRepository;
-import vacislavbaluyev.eduatlas.repository.SistemaUniversitarioRepository;
-import vacislavbaluyev.eduatlas.repository.SistemaValutazioneRepository;
-import vacislavbaluyev.eduatlas.repository.TitoloStudioRepository;
+import vacislavbaluyev.eduatlas.payload.RigaMatriceDTO;
+import vacislavbaluyev.eduatlas.payload.RisultatoImportDTO;
+import vacislavbaluyev.eduatlas.repository.MatriceImportRepository;
+import vacislavbaluyev.eduatlas.tools.CsvTokenizer;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 public class CsvImportService {
     private static final int EXPECTED_COLUMNS = 19;  // Corretto a 19 colonne
+    static final int RIGHE_PER_BLOCCO = 256;
+    private static final int BLOCCHI_IN_VOLO = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+    private static final Future<BloccoAnalizzato> FINE_FILE = CompletableFuture.completedFuture(null);
     
-    private final PaeseRepository paeseRepository;
-    private final SistemaUniversitarioRepository sistemaUniversitarioRepository;
-    private final SistemaValutazioneRepository sistemaValutazioneRepository;
-    private final TitoloStudioRepository titoloStudioRepository;
+    private final MatriceImportRepository matriceImportRepository;
+    private final ModifichePaesi modifichePaesi;
 
-    public CsvImportService(PaeseRepository paeseRepository,
-                            SistemaUniversitarioRepository sistemaUniversitarioRepository,
-                            SistemaValutazioneRepository sistemaValutazioneRepository, TitoloStudioRepository titoloStudioRepository) {
-        this.paeseRepository = paeseRepository;
-        this.sistemaUniversitarioRepository = sistemaUniversitarioRepository;
-        this.sistemaValutazioneRepository = sistemaValutazioneRepository;
-        this.titoloStudioRepository = titoloStudioRepository;
+    public CsvImportService(MatriceImportRepository matriceImportRepository,
+                            ModifichePaesi modifichePaesi) {
+        this.matriceImportRepository = matriceImportRepository;
+        this.modifichePaesi = modifichePaesi;
     }
 
+    /**
+     * Importa la matrice: le righe vengono analizzate in parallelo (vedi leggiRighe) e scritte dal thread
+     * chiamante con insert JDBC a blocchi di DIMENSIONE_BATCH, mentre il resto del file è ancora in analisi.
+     * Un errore su una riga annulla l'intera importazione.
+     */
     @Transactional
-    public void importCsvData(InputStream inputStream) throws IOException {
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-
-            // Salta le prime due righe (header)
-            br.readLine(); // Salta la prima riga di intestazione
-            br.readLine(); // Salta la seconda riga di intestazione
-
-            String line;
-            int lineNumber = 3; // Iniziamo da 3 perché abbiamo saltato due righe
-
-            while ((line = br.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    try {
-                        String[] values = parseCsvLine(line);
-                        validateLine(values, lineNumber);
-                        processCSVLine(values);
-                        log.debug("Riga {} processata con successo", lineNumber);
-                    } catch (Exception e) {
-                        log.error("Errore alla riga {}: {}", lineNumber, e.getMessage());
-                        throw new CsvImportException("Errore alla riga " + lineNumber + ": " + e.getMessage());
-                    }
-                }
-                lineNumber++;
+    public RisultatoImportDTO importCsvData(InputStream inputStream) throws IOException {
+        long inizio = System.nanoTime();
+        List<RigaMatriceDTO> blocco = new ArrayList<>(MatriceImportRepository.DIMENSIONE_BATCH);
+        int righe = leggiRighe(inputStream, riga -> {
+            blocco.add(riga);
+            if (blocco.size() == MatriceImportRepository.DIMENSIONE_BATCH) {
+                matriceImportRepository.inserisci(blocco);
+                blocco.clear();
             }
+        });
+        matriceImportRepository.inserisci(blocco);
+
+        modifichePaesi.registraTutti();
+        RisultatoImportDTO risultato = RisultatoImportDTO.di(righe, inizio);
+        log.info("Importazione completata con successo: {} righe in {} ms ({} righe/s)",
+                risultato.righe(), risultato.millisecondi(), Math.round(risultato.righePerSecondo()));
+        return risultato;
+    }
 
-            log.info("Importazione completata con successo");
-        }
+    /**
+     * Analizza e valida tutte le righe del file, segnalando il numero di riga del primo errore
+     */
+    public List<RigaMatriceDTO> leggiRighe(InputStream inputStream) throws IOException {
+        List<RigaMatriceDTO> righe = new ArrayList<>();
+        leggiRighe(inputStream, righe::add);
+        return righe;
     }
 
+    /**
+     * Come leggiRighe, ma consegna ogni riga appena validata senza tenere in memoria l'intero file.
+     * Lettura, analisi e consegna lavorano in pipeline: un thread legge il file a blocchi di RIGHE_PER_BLOCCO,
+     * i blocchi vengono analizzati in parallelo su thread virtuali e il thread chiamante li consuma nell'ordine
+     * del file. La coda limitata a BLOCCHI_IN_VOLO frena il lettore quando la scrittura è più lenta.
+     * La destinazione viene invocata solo dal thread chiamante (quindi dentro la sua transazione) e l'errore
+     * segnalato è sempre quello con il numero di riga più basso. Restituisce il numero di righe lette.
+     */
+    public int leggiRighe(InputStream inputStream, Consumer<RigaMatriceDTO> destinazione) throws IOException {
+        return leggiRighe(inputStream, destinazione, AvanzamentoImport.NESSUNO);
+    }
 
-    private void validateLine(String[] values, int lineNumber) {
-        if (values.length != EXPECTED_COLUMNS) {
-            throw new CsvImportException(String.format(
-                "Riga %d: numero di colonne errato. Attese %d colonne, trovate %d",
-                lineNumber, EXPECTED_COLUMNS, values.length));
+    /**
+     * Come leggiRighe, segnalando all'avanzamento le righe man mano che i blocchi vengono analizzati
+     */
+    public int leggiRighe(InputStream inputStream, Consumer<RigaMatriceDTO> destinazione,
+                          AvanzamentoImport avanzamento) throws IOException {
+        BlockingQueue<Future<BloccoAnalizzato>> coda = new ArrayBlockingQueue<>(BLOCCHI_IN_VOLO);
+        try (ExecutorService analizzatori = Executors.newVirtualThreadPerTaskExecutor()) {
+            Thread lettore = Thread.ofVirtual().name("csv-lettore")
+                    .start(() -> leggiBlocchi(inputStream, coda, analizzatori, avanzamento));
+            try {
+                return consegna(coda, destinazione);
+            } finally {
+                // In caso di errore il lettore viene fermato e i blocchi ancora in coda scartati
+                lettore.interrupt();
+                attendiTermine(lettore);
+                coda.forEach(blocco -> blocco.cancel(true));
+                analizzatori.shutdownNow();
+            }
         }
+    }
 
-        // Validazione dei valori obbligatori
-        if (values[0].trim().isEmpty()) {
-            throw new CsvImportException(String.format(
-                "Riga %d: Nome paese mancante", lineNumber));
+    private void leggiBlocchi(InputStream inputStream, BlockingQueue<Future<BloccoAnalizzato>> coda,
+                              ExecutorService analizzatori, AvanzamentoImport avanzamento) {
+        try {
+            try (BufferedReader br = new BufferedReader(
+                    new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+
+                // Salta le prime due righe (header)
+                br.readLine(); // Salta la prima riga di intestazione
+                br.readLine(); // Salta la seconda riga di intestazione
+
+                List<LineaCsv> blocco = new ArrayList<>(RIGHE_PER_BLOCCO);
+                String line;
+                int lineNumber = 3; // Iniziamo da 3 perché abbiamo saltato due righe
+
+                while ((line = br.readLine()) != null && !Thread.currentThread().isInterrupted()) {
+                    if (!line.isBlank()) {
+                        int primaRiga = lineNumber;
+                        boolean aperte = CsvTokenizer.virgoletteAperte(line);
+                        if (aperte) {
+                            // Campo tra virgolette con a capo: il record prosegue sulle linee successive
+                            StringBuilder record = new StringBuilder(line);
+                            String seguito;
+                            while (aperte && (seguito = br.readLine()) != null) {
+                                record.append('\n').append(seguito);
+                                aperte ^= CsvTokenizer.virgoletteAperte(seguito);
+                                lineNumber++;
+                            }
+                            line = record.toString();
+                        }
+                        blocco.add(new LineaCsv(primaRiga, line));
+                        if (blocco.size() == RIGHE_PER_BLOCCO) {
+                            inviaBlocco(blocco, coda, analizzatori, avanzamento);
+                            blocco = new ArrayList<>(RIGHE_PER_BLOCCO);
+                        }
+                    }
+                    lineNumber++;
+                }
+                if (!blocco.isEmpty()) {
+                    inviaBlocco(blocco, coda, analizzatori, avanzamento);
+                }
+            } catch (IOException e) {
+                coda.put(CompletableFuture.failedFuture(e));
+                return;
+            }
+            coda.put(FINE_FILE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private String[] parseCsvLine(String line) {
-        String[] allValues = line.split(";(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)", -1);
-        // Prendiamo solo le prime 19 colonne
-        String[] values = Arrays.copyOf(allValues, EXPECTED_COLUMNS);
-        return Arrays.stream(values)
-                .map(this::cleanValue)
-                .toArray(String[]::new);
+    private void inviaBlocco(List<LineaCsv> blocco, BlockingQueue<Future<BloccoAnalizzato>> coda,
+                             ExecutorService analizzatori, AvanzamentoImport avanzamento) throws InterruptedException {
+        coda.put(analizzatori.submit(() -> {
+            BloccoAnalizzato analizzato = analizzaBlocco(blocco);
+            avanzamento.righeAnalizzate(analizzato.righe().size());
+            return analizzato;
+        }));
     }
 
-
-    private void processCSVLine(String[] values) {
-        try {
-            Paese paese = creaPaese(values);
-            creaSistemaValutazione(values, paese);
-            creaSistemaUniversitario(values, paese);
-            creaTitoloStudio(values,paese);
-            log.debug("Importati dati completi per il paese: {}", paese.getNome());
-        } catch (Exception e) {
-            throw new CsvImportException("Errore nell'elaborazione dei dati per il paese " + 
-                    values[0] + ": " + e.getMessage());
+    /**
+     * Analizza e valida un blocco di linee; si ferma alla prima riga errata conservando quelle precedenti
+     */
+    private BloccoAnalizzato analizzaBlocco(List<LineaCsv> linee) {
+        List<RigaMatriceDTO> righe = new ArrayList<>(linee.size());
+        CsvTokenizer campi = new CsvTokenizer(EXPECTED_COLUMNS);
+        for (LineaCsv linea : linee) {
+            try {
+                campi.tokenizza(linea.testo());
+                validateLine(campi, linea.numero());
+                righe.add(creaRiga(campi, linea.numero()));
+            } catch (Exception e) {
+                return new BloccoAnalizzato(righe, linea.numero(), e.getMessage());
+            }
         }
+        return new BloccoAnalizzato(righe, 0, null);
     }
 
-    private void creaTitoloStudio(String[] values, Paese paese){
-
-        String denominazione = values[18].trim();
-
-        if (!denominazione.isEmpty()){
-            TitoloStudio titoloStudio = TitoloStudio.builder()
-                    .paese(paese)
-                    .denominazione(denominazione)
-                    .build();
-
-            titoloStudioRepository.save(titoloStudio);
-            log.debug("Creato titolo di studio: {} per il paese: {}",
-                    denominazione, paese.getNome());
+    private int consegna(BlockingQueue<Future<BloccoAnalizzato>> coda,
+                         Consumer<RigaMatriceDTO> destinazione) throws IOException {
+        Set<String> nomi = new HashSet<>();
+        int righe = 0;
+        while (true) {
+            Future<BloccoAnalizzato> prossimo = prendi(coda);
+            if (prossimo == FINE_FILE) {
+                return righe;
+            }
+            BloccoAnalizzato blocco = attendi(prossimo);
+            for (RigaMatriceDTO riga : blocco.righe()) {
+                // Il controllo dei duplicati resta sequenziale per rispettare l'ordine del file
+                if (!nomi.add(riga.nome())) {
+                    throw erroreRiga(riga.numeroRiga(), "Paese duplicato: " + riga.nome());
+                }
+                destinazione.accept(riga);
+                righe++;
+            }
+            if (blocco.rigaErrore() > 0) {
+                throw erroreRiga(blocco.rigaErrore(), blocco.messaggioErrore());
+            }
+        }
+    }
 
+    private Future<BloccoAnalizzato> prendi(BlockingQueue<Future<BloccoAnalizzato>> coda) {
+        try {
+            return coda.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CsvImportException("Importazione interrotta");
         }
     }
 
-    private Paese creaPaese(String[] values) {
-        String nomePaese = values[0].trim();
-        if (nomePaese.isEmpty()) {
-            throw new CsvImportException("Nome paese non può essere vuoto");
+    private BloccoAnalizzato attendi(Future<BloccoAnalizzato> blocco) throws IOException {
+        try {
+            return blocco.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CsvImportException("Importazione interrotta");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new CsvImportException("Errore durante l'analisi del file: " + e.getCause().getMessage());
         }
+    }
 
-        Integer anniScuola = paeseAnniScuola(values[1]);
-
-        return paeseRepository.save(Paese.builder()
-                .nome(nomePaese)
-                .anniSculaObbligaroia(anniScuola)
-                .build());
-    }
-
-    private void creaSistemaValutazione(String[] values, Paese paese) {
-        String votoA = values[12].trim();
-        String votoB = values[13].trim();
-        String votoC = values[14].trim();
-        String votoDE = values[15].trim();
-        String votoF = values[16].trim();
-
-        if (!votoA.isEmpty() || !votoB.isEmpty() || !votoC.isEmpty() || 
-            !votoDE.isEmpty() || !votoF.isEmpty()) {
-            
-            SistemaValutazione sistema = SistemaValutazione.builder()
-                    .paese(paese)
-                    .votoA(votoA.isEmpty() ? null : votoA)
-                    .votoB(votoB.isEmpty() ? null : votoB)
-                    .votoC(votoC.isEmpty() ? null : votoC)
-                    .votoDE(votoDE.isEmpty() ? null : votoDE)
-                    .votoF(votoF.isEmpty() ? null : votoF)
-                    .scalaTipo(determinaTipoScala(votoA))
-                    .build();
-            
-            sistemaValutazioneRepository.save(sistema);
+    private void attendiTermine(Thread lettore) {
+        try {
+            lettore.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
     }
 
-    private void creaSistemaUniversitario(String[] values, Paese paese) {
-        Integer durataBase = calcolaDurataBase(values);
-        Integer creditiPerAnno = calcolaCrediti(values);
-        String livelloEQF = values[17].trim();
-
-        if (durataBase != null || creditiPerAnno != null || !livelloEQF.isEmpty()) {
-            SistemaUniversitario sistema = SistemaUniversitario.builder()
-                    .paese(paese)
-                    .durataBaseAnni(durataBase)
-                    .creditiPerAnno(creditiPerAnno)
-                    .livelloEQF(livelloEQF.isEmpty() ? null : livelloEQF)
-                    .build();
-            
-            sistemaUniversitarioRepository.save(sistema);
+    private CsvImportException erroreRiga(int lineNumber, String messaggio) {
+        log.error("Errore alla riga {}: {}", lineNumber, messaggio);
+        return new CsvImportException("Errore alla riga " + lineNumber + ": " + messaggio);
+    }
+
+    private void validateLine(CsvTokenizer campi, int lineNumber) {
+        // Validazione dei valori obbligatori
+        if (campi.vuoto(0)) {
+            throw new CsvImportException(String.format(
+                "Riga %d: Nome paese mancante", lineNumber));
         }
     }
 
-    private Integer paeseAnniScuola(String value) {
-        if (value == null || value.trim().isEmpty()) return null;
-        String anni = value.split("\\|")[0].replaceAll("[^0-9]", "");
-        return anni.isEmpty() ? null : Integer.parseInt(anni);
+    private RigaMatriceDTO creaRiga(CsvTokenizer campi, int lineNumber) {
+        return new RigaMatriceDTO(
+                lineNumber,
+                campi.testo(0),
+                campi.intero(1, '|'),
+                campi.testoONull(12),
+                campi.testoONull(13),
+                campi.testoONull(14),
+                campi.testoONull(15),
+                campi.testoONull(16),
+                determinaTipoScala(campi, 12),
+                calcolaDurataBase(campi),
+                calcolaCrediti(campi),
+                campi.testoONull(17),
+                campi.testoONull(18));
     }
 
-    private Integer calcolaDurataBase(String[] values) {
+    private Integer calcolaDurataBase(CsvTokenizer campi) {
         try {
-            return Integer.parseInt(values[4].replaceAll("[^0-9]", ""));
+            Integer durata = campi.intero(4);
+            if (durata == null) {
+                log.warn("Errore nel parsing della durata base: {}", campi.testo(4));
+            }
+            return durata;
         } catch (NumberFormatException e) {
-            log.warn("Errore nel parsing della durata base: {}", values[4]);
+            log.warn("Errore nel parsing della durata base: {}", campi.testo(4));
             return null;
         }
     }
 
-    private Integer calcolaCrediti(String[] values) {
+    private Integer calcolaCrediti(CsvTokenizer campi) {
+        if (campi.vuoto(7)) return null;
         try {
-            if (!values[7].trim().isEmpty()) {
-                return Integer.parseInt(values[7].replaceAll("[^0-9]", ""));
+            Integer crediti = campi.intero(7);
+            if (crediti == null) {
+                log.warn("Errore nel parsing dei crediti per anno: {}", campi.testo(7));
             }
+            return crediti;
         } catch (NumberFormatException e) {
-            log.warn("Errore nel parsing dei crediti per anno: {}", values[7]);
+            log.warn("Errore nel parsing dei crediti per anno: {}", campi.testo(7));
+            return null;
         }
-        return null;
     }
 
-    private TipoScala determinaTipoScala(String voto) {
-        if (voto == null || voto.trim().isEmpty()) return TipoScala.NUMERICO;
-        
-        String votoNorm = voto.trim().replaceAll("[^A-Za-z0-9.]", "");
-        
-        if (votoNorm.matches("[A-Za-z]+")) return TipoScala.LETTERE;
-        if (votoNorm.matches("[0-9.]+")) return TipoScala.NUMERICO;
+    /**
+     * Considera solo lettere ASCII, cifre e punti: solo lettere è LETTERE, solo cifre e punti è NUMERICO,
+     * un misto (o nessuno dei due) è PERCENTUALE. Un voto mancante vale NUMERICO.
+     */
+    private TipoScala determinaTipoScala(CsvTokenizer campi, int campo) {
+        if (campi.vuoto(campo)) return TipoScala.NUMERICO;
+
+        boolean lettere = false;
+        boolean numeri = false;
+        for (int i = 0, n = campi.lunghezza(campo); i < n; i++) {
+            char c = campi.carattere(campo, i);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')) lettere = true;
+            else if ((c >= '0' && c <= '9') || c == '.') numeri = true;
+        }
+
+        if (lettere && !numeri) return TipoScala.LETTERE;
+        if (numeri && !lettere) return TipoScala.NUMERICO;
         return TipoScala.PERCENTUALE;
     }
 
-    private String cleanValue(String value) {
-        if (value == null) return "";
-        value = value.trim();
-        if (value.startsWith("\"") && value.endsWith("\"")) {
-            value = value.substring(1, value.length() - 1);
-        }
-        return value.replace("\"\"", "\"");
+    private record LineaCsv(int numero, String testo) {
+    }
+
+    private record BloccoAnalizzato(List<RigaMatriceDTO> righe, int rigaErrore, String messaggioErrore) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,156 @@
+package vacislavbaluyev.eduatlas.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
+import vacislavbaluyev.eduatlas.exception.ConversioneVotoException;
+import vacislavbaluyev.eduatlas.exception.ResourceNotFoundException;
+import vacislavbaluyev.eduatlas.payload.EquivalenzaVotoDTO;
+import vacislavbaluyev.eduatlas.payload.TabellaEquivalenzaDTO;
+import vacislavbaluyev.eduatlas.repository.SistemaValutazioneRepository;
+import vacislavbaluyev.eduatlas.tools.ConvertitoreVoto;
+import vacislavbaluyev.eduatlas.tools.MatriceEquivalenze;
+import vacislavbaluyev.eduatlas.tools.ScalaVoto;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Equivalenze tra le scale di voto di tutti i paesi, servite dalla memoria.
+ * La matrice viene costruita alla prima richiesta e, dopo ogni commit che modifica un paese,
+ * sostituita da una copia in cui sono ricalcolate solo le corrispondenze di quel paese.
+ */
+@Service
+@Slf4j
+public class EquivalenzaVotiService {
+
+    private final SistemaValutazioneRepository sistemaValutazioneRepository;
+    private volatile MatriceEquivalenze matrice;
+    // Non synchronized: il caricamento legge dal database e un thread virtuale non deve attenderlo dentro un monitor
+    private final ReentrantLock aggiornamento = new ReentrantLock();
+
+    public EquivalenzaVotiService(SistemaValutazioneRepository sistemaValutazioneRepository) {
+        this.sistemaValutazioneRepository = sistemaValutazioneRepository;
+    }
+
+    /**
+     * Converte un voto dalla scala del paese di origine a quella del paese di destinazione
+     */
+    public EquivalenzaVotoDTO convertiVoto(Long origineId, Long destinazioneId, String voto) {
+        MatriceEquivalenze corrente = matrice();
+        ScalaVoto origine = scalaNumerica(corrente, origineId);
+        scalaNumerica(corrente, destinazioneId);
+
+        double posizione = origine.posizione(voto.trim());
+        if (Double.isNaN(posizione)) {
+            throw new ConversioneVotoException("Voto non riconosciuto nel sistema del paese " + origineId + ": " + voto);
+        }
+        double equivalente = equivalente(corrente, origineId, destinazioneId, voto);
+
+        return new EquivalenzaVotoDTO(origineId, destinazioneId, voto, origine.tipoVoto(posizione), arrotonda(equivalente));
+    }
+
+    /**
+     * Tabella completa della corrispondenza tra due paesi
+     */
+    public TabellaEquivalenzaDTO getTabella(Long origineId, Long destinazioneId) {
+        MatriceEquivalenze corrente = matrice();
+        scalaNumerica(corrente, origineId);
+        scalaNumerica(corrente, destinazioneId);
+
+        MatriceEquivalenze.Mappatura mappatura = corrente.mappatura(origineId, destinazioneId);
+        return new TabellaEquivalenzaDTO(origineId, destinazioneId,
+                Arrays.stream(mappatura.da()).map(EquivalenzaVotiService::arrotonda).boxed().toList(),
+                Arrays.stream(mappatura.a()).map(EquivalenzaVotiService::arrotonda).boxed().toList());
+    }
+
+    /**
+     * Voto equivalente nella scala di destinazione, NaN se una delle due scale non è numerica
+     * o il voto non è riconosciuto. I voti numerici passano dalla corrispondenza precalcolata,
+     * le etichette dal centro della fascia.
+     */
+    static double equivalente(MatriceEquivalenze matrice, long origineId, long destinazioneId, String voto) {
+        ScalaVoto origine = matrice.scala(origineId);
+        ScalaVoto destinazione = matrice.scala(destinazioneId);
+        if (origine == null || destinazione == null) return Double.NaN;
+
+        String testo = voto.trim();
+        double posizione = origine.posizione(testo);
+        if (Double.isNaN(posizione)) return Double.NaN;
+        double numero = ConvertitoreVoto.parseNumero(testo, 0, testo.length());
+        return Double.isNaN(numero)
+                ? destinazione.voto(posizione)
+                : matrice.mappatura(origineId, destinazioneId).converti(numero);
+    }
+
+    MatriceEquivalenze matrice() {
+        MatriceEquivalenze corrente = matrice;
+        if (corrente == null) {
+            aggiornamento.lock();
+            try {
+                if (matrice == null) {
+                    matrice = caricaTutto();
+                }
+                corrente = matrice;
+            } finally {
+                aggiornamento.unlock();
+            }
+        }
+        return corrente;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onPaeseChanged(PaeseChangedEvent event) {
+        aggiornamento.lock();
+        try {
+            if (matrice == null) return;
+            if (event.isTutti()) {
+                matrice = caricaTutto();
+                return;
+            }
+
+            Long id = event.paeseId();
+            matrice = sistemaValutazioneRepository.findByPaeseId(id)
+                    .map(sistema -> matrice.with(id, compila(sistema)))
+                    .orElseGet(() -> matrice.without(id));
+            log.debug("Equivalenze ricalcolate per il paese {}", id);
+        } finally {
+            aggiornamento.unlock();
+        }
+    }
+
+    private MatriceEquivalenze caricaTutto() {
+        Map<Long, ScalaVoto> scale = new HashMap<>();
+        for (SistemaValutazione sistema : sistemaValutazioneRepository.findAllConPaese()) {
+            scale.put(sistema.getPaese().getId(), compila(sistema));
+        }
+        MatriceEquivalenze nuova = MatriceEquivalenze.of(scale);
+        log.info("Matrice delle equivalenze caricata: {} sistemi di valutazione", nuova.dimensione());
+        return nuova;
+    }
+
+    private static ScalaVoto compila(SistemaValutazione sistema) {
+        return ScalaVoto.of(ConvertitoreVoto.compila(sistema));
+    }
+
+    private static ScalaVoto scalaNumerica(MatriceEquivalenze matrice, Long paeseId) {
+        if (!matrice.contiene(paeseId)) {
+            throw new ResourceNotFoundException("Sistema Valutazione", "paese", paeseId);
+        }
+        ScalaVoto scala = matrice.scala(paeseId);
+        if (scala == null) {
+            throw new ConversioneVotoException("Il sistema di valutazione del paese " + paeseId + " non ha una scala numerica");
+        }
+        return scala;
+    }
+
+    static double arrotonda(double voto) {
+        return Math.round(voto * 100) / 100.0;
+    }
+}
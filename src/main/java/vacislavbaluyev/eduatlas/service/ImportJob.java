@@ -0,0 +1,119 @@
+package vacislavbaluyev.eduatlas.service;
+
+import lombok.Getter;
+import vacislavbaluyev.eduatlas.payload.RisultatoImportDTO;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stato in memoria di un'importazione della matrice caricata via HTTP ed eseguita in background.
+ * I contatori vengono aggiornati dai thread dell'importazione e letti dalle richieste di polling.
+ */
+public class ImportJob implements AvanzamentoImport {
+
+    public enum Stato {
+        IN_CODA, CARICAMENTO, UNIONE, COMPLETATO, FALLITO;
+
+        public boolean terminato() {
+            return this == COMPLETATO || this == FALLITO;
+        }
+    }
+
+    @Getter
+    private final UUID id;
+    @Getter
+    private final String nomeFile;
+    @Getter
+    private final long dimensioneByte;
+    @Getter
+    private final LocalDateTime creato = LocalDateTime.now();
+    @Getter
+    private volatile Stato stato = Stato.IN_CODA;
+    @Getter
+    private volatile LocalDateTime terminato;
+    @Getter
+    private volatile String errore;
+    @Getter
+    private volatile RisultatoImportDTO risultato;
+    private volatile long inizioNanos;
+    private volatile long fineNanos;
+    private final AtomicLong byteLetti = new AtomicLong();
+    private final LongAdder righeAnalizzate = new LongAdder();
+    private final LongAdder righeScritte = new LongAdder();
+
+    public ImportJob(UUID id, String nomeFile, long dimensioneByte) {
+        this.id = id;
+        this.nomeFile = nomeFile;
+        this.dimensioneByte = dimensioneByte;
+    }
+
+    void avviato() {
+        inizioNanos = System.nanoTime();
+        stato = Stato.CARICAMENTO;
+    }
+
+    void completato(RisultatoImportDTO risultato) {
+        this.risultato = risultato;
+        termina(Stato.COMPLETATO);
+    }
+
+    void fallito(String errore) {
+        this.errore = errore;
+        termina(Stato.FALLITO);
+    }
+
+    private void termina(Stato finale) {
+        fineNanos = System.nanoTime();
+        terminato = LocalDateTime.now();
+        stato = finale;
+    }
+
+    void byteLetti(long letti) {
+        byteLetti.addAndGet(letti);
+    }
+
+    @Override
+    public void righeAnalizzate(int righe) {
+        righeAnalizzate.add(righe);
+    }
+
+    @Override
+    public void righeScritte(int righe) {
+        righeScritte.add(righe);
+    }
+
+    @Override
+    public void inUnione() {
+        stato = Stato.UNIONE;
+    }
+
+    public long getByteLetti() {
+        return byteLetti.get();
+    }
+
+    public long getRigheAnalizzate() {
+        return righeAnalizzate.sum();
+    }
+
+    public long getRigheScritte() {
+        return righeScritte.sum();
+    }
+
+    /**
+     * Millisecondi trascorsi dall'avvio (fino al termine se l'importazione è conclusa)
+     */
+    public long millisecondi() {
+        long inizio = inizioNanos;
+        if (inizio == 0) return 0;
+        long fine = stato.terminato() ? fineNanos : System.nanoTime();
+        return (fine - inizio) / 1_000_000;
+    }
+
+    public double righePerSecondo() {
+        long millisecondi = millisecondi();
+        return millisecondi == 0 ? 0 : righeScritte.sum() * 1000.0 / millisecondi;
+    }
+}
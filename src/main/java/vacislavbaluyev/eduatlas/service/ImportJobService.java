@@ -0,0 +1,205 @@
+package vacislavbaluyev.eduatlas.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import vacislavbaluyev.eduatlas.exception.CsvImportException;
+import vacislavbaluyev.eduatlas.exception.ImportazioneInCorsoException;
+import vacislavbaluyev.eduatlas.exception.ResourceNotFoundException;
+import vacislavbaluyev.eduatlas.payload.RisultatoImportDTO;
+import vacislavbaluyev.eduatlas.payload.StatoImportDTO;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Importazioni della matrice caricate via HTTP: il file viene salvato su disco e importato in background
+ * con MatriceCopyImportService, un'importazione alla volta perché ognuna può riallineare l'intera matrice:
+ * finché una è in coda o in corso le altre vengono rifiutate (409) invece di accumularsi su disco.
+ * Fino al commit le letture continuano a vedere i dati precedenti: il catalogo viene ricostruito solo dopo.
+ */
+@Slf4j
+@Service
+public class ImportJobService {
+
+    private static final int IMPORTAZIONI_CONSERVATE = 50;
+
+    private final MatriceCopyImportService matriceCopyImportService;
+    private final Map<UUID, ImportJob> importazioni = new ConcurrentHashMap<>();
+    // Importazione accettata e non ancora terminata; la coda dell'esecutore non contiene mai più di questa
+    private final AtomicReference<ImportJob> attiva = new AtomicReference<>();
+    private final ThreadPoolExecutor esecutore = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1), r -> {
+        Thread thread = new Thread(r, "import-matrice");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ImportJobService(MatriceCopyImportService matriceCopyImportService) {
+        this.matriceCopyImportService = matriceCopyImportService;
+    }
+
+    /**
+     * Salva il file caricato su disco e accoda l'importazione; restituisce subito lo stato iniziale.
+     * Con rimuoviScomparsi il file è trattato come la nuova versione completa della matrice.
+     * Se un'altra importazione è ancora in coda o in corso lancia ImportazioneInCorsoException.
+     */
+    public StatoImportDTO avvia(MultipartFile file, boolean rimuoviScomparsi) throws IOException {
+        if (file.isEmpty()) {
+            throw new CsvImportException("Il file caricato è vuoto");
+        }
+        ImportJob job = new ImportJob(UUID.randomUUID(), file.getOriginalFilename(), file.getSize());
+        // Il posto viene prenotato prima di copiare il file, così una richiesta rifiutata non scrive nulla
+        ImportJob precedente = attiva.compareAndExchange(null, job);
+        if (precedente != null) {
+            throw new ImportazioneInCorsoException("Importazione " + precedente.getId() + " ancora in corso: riprovare al termine");
+        }
+
+        Path percorso;
+        try {
+            percorso = Files.createTempFile("matrice-", ".csv");
+            try {
+                // transferTo sposta la parte già scritta su disco dal container, senza copiarla in memoria
+                file.transferTo(percorso);
+            } catch (IOException e) {
+                Files.deleteIfExists(percorso);
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            attiva.set(null);
+            throw e;
+        }
+
+        importazioni.put(job.getId(), job);
+        rimuoviTerminate();
+        try {
+            esecutore.execute(new Importazione(job, percorso, rimuoviScomparsi));
+        } catch (RejectedExecutionException e) {
+            // Solo dopo chiudi(): l'applicazione si sta arrestando
+            importazioni.remove(job.getId());
+            attiva.set(null);
+            elimina(percorso);
+            throw new ImportazioneInCorsoException("Importazioni sospese: l'applicazione si sta arrestando");
+        }
+        log.info("Importazione {} accodata: {} ({} byte)", job.getId(), job.getNomeFile(), job.getDimensioneByte());
+        return StatoImportDTO.fromJob(job);
+    }
+
+    public StatoImportDTO getStato(UUID id) {
+        ImportJob job = importazioni.get(id);
+        if (job == null) {
+            throw new ResourceNotFoundException("Importazione", "id", id.toString());
+        }
+        return StatoImportDTO.fromJob(job);
+    }
+
+    private void esegui(ImportJob job, Path percorso, boolean rimuoviScomparsi) {
+        job.avviato();
+        RisultatoImportDTO risultato = null;
+        String errore = null;
+        try (InputStream inputStream = new InputStreamConteggiato(Files.newInputStream(percorso), job)) {
+            risultato = matriceCopyImportService.importa(inputStream, rimuoviScomparsi, job);
+        } catch (Exception e) {
+            errore = e.getMessage();
+        } finally {
+            elimina(percorso);
+            // Il posto si libera prima che lo stato diventi terminale: chi vede l'importazione conclusa
+            // interrogando lo stato può avviarne subito un'altra
+            attiva.compareAndSet(job, null);
+        }
+
+        if (risultato != null) {
+            job.completato(risultato);
+            log.info("Importazione {} completata: {} righe in {} ms", job.getId(), risultato.righe(), risultato.millisecondi());
+        } else {
+            log.error("Importazione {} fallita: {}", job.getId(), errore);
+            job.fallito(errore);
+        }
+    }
+
+    private static void elimina(Path percorso) {
+        try {
+            Files.deleteIfExists(percorso);
+        } catch (IOException e) {
+            log.warn("Impossibile eliminare il file temporaneo {}: {}", percorso, e.getMessage());
+        }
+    }
+
+    // Mantiene solo le importazioni più recenti tra quelle già terminate
+    private void rimuoviTerminate() {
+        int inEccesso = importazioni.size() - IMPORTAZIONI_CONSERVATE;
+        if (inEccesso <= 0) return;
+        importazioni.values().stream()
+                .filter(job -> job.getStato().terminato())
+                .sorted(Comparator.comparing(ImportJob::getCreato))
+                .limit(inEccesso)
+                .toList()
+                .forEach(job -> importazioni.remove(job.getId()));
+    }
+
+    @PreDestroy
+    public void chiudi() {
+        // L'importazione in corso viene interrotta e la sua transazione annullata (il suo file viene eliminato
+        // da esegui); quella eventualmente ancora in coda non partirà più e il suo file va eliminato qui
+        for (Runnable nonAvviata : esecutore.shutdownNow()) {
+            if (nonAvviata instanceof Importazione importazione) {
+                importazione.job.fallito("Applicazione arrestata prima dell'avvio dell'importazione");
+                elimina(importazione.percorso);
+            }
+        }
+    }
+
+    // Il file da importare resta raggiungibile anche se l'esecutore restituisce il compito senza eseguirlo
+    private final class Importazione implements Runnable {
+        private final ImportJob job;
+        private final Path percorso;
+        private final boolean rimuoviScomparsi;
+
+        Importazione(ImportJob job, Path percorso, boolean rimuoviScomparsi) {
+            this.job = job;
+            this.percorso = percorso;
+            this.rimuoviScomparsi = rimuoviScomparsi;
+        }
+
+        @Override
+        public void run() {
+            esegui(job, percorso, rimuoviScomparsi);
+        }
+    }
+
+    private static final class InputStreamConteggiato extends FilterInputStream {
+        private final ImportJob job;
+
+        InputStreamConteggiato(InputStream in, ImportJob job) {
+            super(in);
+            this.job = job;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int letto = super.read();
+            if (letto >= 0) job.byteLetti(1);
+            return letto;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int letti = super.read(b, off, len);
+            if (letti > 0) job.byteLetti(letti);
+            return letti;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package vacislavbaluyev.eduatlas.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vacislavbaluyev.eduatlas.payload.RisultatoImportDTO;
+import vacislavbaluyev.eduatlas.repository.MatriceStagingRepository;
+import vacislavbaluyev.eduatlas.tools.SnapshotMatrice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Importazione per file molto grandi: le righe vengono analizzate in streaming e caricate in una
+ * tabella di appoggio (COPY su PostgreSQL), poi unite nelle tabelle definitive con poche istruzioni
+ * set-based. Caricamento e unione avvengono nella stessa transazione.
+ */
+@Slf4j
+@Service
+public class MatriceCopyImportService {
+
+    private final CsvImportService csvImportService;
+    private final MatriceStagingRepository matriceStagingRepository;
+    private final ModifichePaesi modifichePaesi;
+
+    public MatriceCopyImportService(CsvImportService csvImportService,
+                                    MatriceStagingRepository matriceStagingRepository,
+                                    ModifichePaesi modifichePaesi) {
+        this.csvImportService = csvImportService;
+        this.matriceStagingRepository = matriceStagingRepository;
+        this.modifichePaesi = modifichePaesi;
+    }
+
+    /**
+     * Unisce il file ai dati esistenti: inserisce i paesi nuovi e aggiorna solo quelli la cui riga è cambiata
+     */
+    @Transactional
+    public RisultatoImportDTO importa(InputStream inputStream) throws IOException {
+        return carica(inputStream, false, AvanzamentoImport.NESSUNO);
+    }
+
+    /**
+     * Allinea il database a una nuova versione della matrice: come importa, ma rimuove anche i paesi
+     * importati in precedenza che non compaiono più nel file. Riapplicare lo stesso file non scrive nulla.
+     */
+    @Transactional
+    public RisultatoImportDTO sincronizza(InputStream inputStream) throws IOException {
+        return carica(inputStream, true, AvanzamentoImport.NESSUNO);
+    }
+
+    /**
+     * Importa (o sincronizza, se rimuoviScomparsi) segnalando l'avanzamento di analisi e caricamento
+     */
+    @Transactional
+    public RisultatoImportDTO importa(InputStream inputStream, boolean rimuoviScomparsi,
+                                      AvanzamentoImport avanzamento) throws IOException {
+        return carica(inputStream, rimuoviScomparsi, avanzamento);
+    }
+
+    /**
+     * Carica un'istantanea binaria della matrice con la stessa unione del CSV: su un database vuoto lo popola,
+     * su uno già allineato non scrive nulla
+     */
+    @Transactional
+    public RisultatoImportDTO importaSnapshot(SnapshotMatrice snapshot, boolean rimuoviScomparsi) throws IOException {
+        try {
+            return carica(snapshot::leggi, rimuoviScomparsi, AvanzamentoImport.NESSUNO);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private RisultatoImportDTO carica(InputStream inputStream, boolean rimuoviScomparsi,
+                                     AvanzamentoImport avanzamento) throws IOException {
+        try {
+            return carica(destinazione -> csvImportService.leggiRighe(
+                    inputStream,
+                    riga -> {
+                        destinazione.accept(riga);
+                        avanzamento.righeScritte(1);
+                    },
+                    avanzamento), rimuoviScomparsi, avanzamento);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private RisultatoImportDTO carica(MatriceStagingRepository.SorgenteRighe sorgente, boolean rimuoviScomparsi,
+                                     AvanzamentoImport avanzamento) {
+        long inizio = System.nanoTime();
+        int righe = matriceStagingRepository.caricaStaging(sorgente);
+        avanzamento.inUnione();
+        MatriceStagingRepository.EsitoUnione esito = rimuoviScomparsi
+                ? matriceStagingRepository.sincronizza()
+                : matriceStagingRepository.unisci();
+
+        if (esito.haModifiche()) {
+            modifichePaesi.registraTutti();
+        }
+        RisultatoImportDTO risultato = RisultatoImportDTO.di(righe, inizio);
+        log.info("Importazione tramite tabella di appoggio completata: {} righe ({} nuovi paesi, {} aggiornati, " +
+                        "{} rimossi, {} invariati) in {} ms ({} righe/s)",
+                righe, esito.paesiNuovi(), esito.paesiAggiornati(), esito.paesiRimossi(),
+                righe - esito.paesiNuovi() - esito.paesiAggiornati(), risultato.millisecondi(),
+                Math.round(risultato.righePerSecondo()));
+        return risultato;
+    }
+}
@@ -0,0 +1,68 @@
+package vacislavbaluyev.eduatlas.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import vacislavbaluyev.eduatlas.entities.VersioneCatalogo;
+import vacislavbaluyev.eduatlas.repository.VersioneCatalogoRepository;
+
+/**
+ * Usato dai servizi che scrivono sui dati dei paesi per annunciare la modifica: la versione persistita
+ * avanza nella transazione della scrittura (e, se questa viene annullata, viene annullata con lei) e
+ * l'evento pubblicato porta la versione prodotta, con cui il catalogo etichetta il nuovo snapshot.
+ */
+@Component
+@Slf4j
+public class ModifichePaesi {
+
+    private final VersioneCatalogoRepository versioneCatalogoRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ModifichePaesi(VersioneCatalogoRepository versioneCatalogoRepository,
+                          ApplicationEventPublisher eventPublisher) {
+        this.versioneCatalogoRepository = versioneCatalogoRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Crea la riga della versione (versione 0, mai modificata) se manca, fuori da ogni scrittura sui paesi
+     */
+    @PostConstruct
+    void creaVersione() {
+        try {
+            versioneCatalogoRepository.crea();
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Riga della versione del catalogo creata da un'altra replica");
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registra(Long paeseId) {
+        VersioneCatalogo versione = incrementa();
+        eventPublisher.publishEvent(new PaeseChangedEvent(paeseId, versione.getVersione(),
+                versione.getUltimaModificaMillis()));
+    }
+
+    /**
+     * L'intero dataset è cambiato (es. importazione CSV)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void registraTutti() {
+        registra(null);
+    }
+
+    private VersioneCatalogo incrementa() {
+        long adesso = System.currentTimeMillis() / 1000 * 1000;
+        if (versioneCatalogoRepository.incrementa(adesso) == 0) {
+            // Riga rimossa dopo l'avvio
+            versioneCatalogoRepository.crea();
+            versioneCatalogoRepository.incrementa(adesso);
+        }
+        // La riga resta bloccata dall'UPDATE fino al commit: quella letta è la versione prodotta da questa scrittura
+        return versioneCatalogoRepository.leggi();
+    }
+}
@@ -0,0 +1,13 @@
+package vacislavbaluyev.eduatlas.service;
+
+/**
+ * Pubblicato da ModifichePaesi per ogni scrittura sui dati dei paesi.
+ * paeseId nullo indica che l'intero dataset è cambiato (es. importazione CSV);
+ * versione e ultimaModificaMillis sono i valori di VersioneCatalogo prodotti dalla scrittura.
+ */
+public record PaeseChangedEvent(Long paeseId, long versione, long ultimaModificaMillis) {
+
+    public boolean isTutti() {
+        return paeseId == null;
+    }
+}
@@ -20,6 +20,7 @@ public class PaeseCompletoService {
     private final PaeseRepository paeseRepository;
     private final SistemaUniversitarioRepository sistemaUniversitarioRepository;
     private final SistemaValutazioneRepository sistemaValutazioneRepository;
+    private final ModifichePaesi modifichePaesi;
 
     @Transactional
     public Paese createPaeseCompleto(PaeseCompletoCreateDTO dto) {
@@ -32,6 +33,7 @@ public class PaeseCompletoService {
         Paese paese = paeseRepository.save(Paese.builder()
                 .nome(dto.nome())
                 .anniSculaObbligaroia(dto.anniScuolaObbligatoria())
+                .modificatoLocalmente(true)
                 .build());
 
         // 2. Crea il sistema di valutazione
@@ -57,6 +59,7 @@ public class PaeseCompletoService {
             sistemaUniversitarioRepository.save(sistema);
         }
 
+        modifichePaesi.registra(paese.getId());
         return paese;
     }
 
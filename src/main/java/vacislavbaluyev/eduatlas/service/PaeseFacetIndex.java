@@ -0,0 +1,124 @@
+package vacislavbaluyev.eduatlas.service;
+
+import vacislavbaluyev.eduatlas.payload.DettaglioPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.QueryPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.RisultatoQueryPaeseDTO;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Un BitSet per ogni valore di ogni facet, con bit = posizione del paese nello snapshot.
+ * Una query è l'AND dei bitset dei criteri richiesti; i conteggi di ogni facet sono calcolati
+ * escludendo il criterio della facet stessa, così il client sa quanti risultati otterrebbe cambiandolo.
+ */
+public final class PaeseFacetIndex {
+
+    static final String ANNI_SCUOLA = "anniScuolaObbligatoria";
+    static final String DURATA_BASE = "durataBaseAnni";
+    static final String CREDITI = "creditiPerAnno";
+    static final String LIVELLO_EQF = "livelloEQF";
+    static final String SCALA_TIPO = "scalaTipo";
+
+    private static final Map<String, Function<DettaglioPaeseDTO, Object>> FACET = new LinkedHashMap<>();
+
+    static {
+        FACET.put(ANNI_SCUOLA, DettaglioPaeseDTO::anniScuolaObbligatoria);
+        FACET.put(DURATA_BASE, DettaglioPaeseDTO::durataBaseanni);
+        FACET.put(CREDITI, DettaglioPaeseDTO::creditiPerAnno);
+        FACET.put(LIVELLO_EQF, DettaglioPaeseDTO::livelloEQF);
+        FACET.put(SCALA_TIPO, DettaglioPaeseDTO::scalaTipo);
+    }
+
+    // I valori numerici (anni, crediti, livelli) in ordine numerico, quindi "9" prima di "10"; gli altri in ordine alfabetico
+    private static final Comparator<String> ORDINE_VALORI = Comparator
+            .comparing((String valore) -> intero(valore), Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(Comparator.naturalOrder());
+
+    private final List<DettaglioPaeseDTO> paesi;
+    private final Map<String, Map<String, BitSet>> bitset;
+
+    private PaeseFacetIndex(List<DettaglioPaeseDTO> paesi, Map<String, Map<String, BitSet>> bitset) {
+        this.paesi = paesi;
+        this.bitset = bitset;
+    }
+
+    static PaeseFacetIndex of(List<DettaglioPaeseDTO> paesi) {
+        Map<String, Map<String, BitSet>> bitset = new LinkedHashMap<>();
+        FACET.forEach((nome, estrattore) -> {
+            Map<String, BitSet> valori = new TreeMap<>(ORDINE_VALORI);
+            for (int i = 0; i < paesi.size(); i++) {
+                Object valore = estrattore.apply(paesi.get(i));
+                if (valore != null) {
+                    valori.computeIfAbsent(valore.toString(), k -> new BitSet(paesi.size())).set(i);
+                }
+            }
+            bitset.put(nome, valori);
+        });
+        return new PaeseFacetIndex(paesi, bitset);
+    }
+
+    public RisultatoQueryPaeseDTO query(QueryPaeseDTO query) {
+        Map<String, String> criteri = criteri(query);
+
+        BitSet risultato = tutti();
+        criteri.forEach((facet, valore) -> risultato.and(bitsetDi(facet, valore)));
+
+        Map<String, Map<String, Integer>> conteggi = new LinkedHashMap<>();
+        bitset.forEach((facet, valori) -> {
+            BitSet base = tutti();
+            criteri.forEach((altraFacet, valore) -> {
+                if (!altraFacet.equals(facet)) base.and(bitsetDi(altraFacet, valore));
+            });
+
+            Map<String, Integer> perValore = new LinkedHashMap<>();
+            valori.forEach((valore, bits) -> {
+                BitSet intersezione = (BitSet) bits.clone();
+                intersezione.and(base);
+                int conteggio = intersezione.cardinality();
+                if (conteggio > 0) perValore.put(valore, conteggio);
+            });
+            conteggi.put(facet, perValore);
+        });
+
+        int pagina = query.paginaOrDefault();
+        int dimensione = query.dimensioneOrDefault();
+        long salto = (long) pagina * dimensione;
+        List<DettaglioPaeseDTO> contenuto = new ArrayList<>(dimensione);
+        int posizione = 0;
+        for (int i = risultato.nextSetBit(0); i >= 0 && contenuto.size() < dimensione; i = risultato.nextSetBit(i + 1)) {
+            if (posizione++ >= salto) contenuto.add(paesi.get(i));
+        }
+
+        return new RisultatoQueryPaeseDTO(contenuto, pagina, dimensione, risultato.cardinality(), conteggi);
+    }
+
+    private static Map<String, String> criteri(QueryPaeseDTO query) {
+        Map<String, String> criteri = new LinkedHashMap<>();
+        if (query.anniScuolaObbligatoria() != null) criteri.put(ANNI_SCUOLA, query.anniScuolaObbligatoria().toString());
+        if (query.durataBaseAnni() != null) criteri.put(DURATA_BASE, query.durataBaseAnni().toString());
+        if (query.creditiPerAnno() != null) criteri.put(CREDITI, query.creditiPerAnno().toString());
+        if (query.livelloEQF() != null) criteri.put(LIVELLO_EQF, query.livelloEQF());
+        if (query.scalaTipo() != null) criteri.put(SCALA_TIPO, query.scalaTipo().name());
+        return criteri;
+    }
+
+    private BitSet bitsetDi(String facet, String valore) {
+        BitSet bits = bitset.get(facet).get(valore);
+        return bits == null ? new BitSet() : bits;
+    }
+
+    private static Integer intero(String valore) {
+        try {
+            return Integer.valueOf(valore);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private BitSet tutti() {
+        BitSet bits = new BitSet(paesi.size());
+        bits.set(0, paesi.size());
+        return bits;
+    }
+}
@@ -7,10 +7,16 @@ import vacislavbaluyev.eduatlas.entities.Paese;
 import vacislavbaluyev.eduatlas.entities.SistemaUniversitario;
 import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
 import vacislavbaluyev.eduatlas.exception.ResourceNotFoundException;
+import vacislavbaluyev.eduatlas.payload.ConfrontoPaesiDTO;
 import vacislavbaluyev.eduatlas.payload.DettaglioPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.FiltroPaeseDTO;
 import vacislavbaluyev.eduatlas.payload.PaeseCompletoCreateDTO;
 import vacislavbaluyev.eduatlas.payload.PaeseCreateDTO;
 import vacislavbaluyev.eduatlas.payload.PaeseDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaRichiestaDTO;
+import vacislavbaluyev.eduatlas.payload.QueryPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.RisultatoQueryPaeseDTO;
 import vacislavbaluyev.eduatlas.repository.PaeseRepository;
 import vacislavbaluyev.eduatlas.repository.SistemaUniversitarioRepository;
 import vacislavbaluyev.eduatlas.repository.SistemaValutazioneRepository;
@@ -20,118 +26,104 @@ import java.util.stream.Collectors;
 
 @Service
 @Slf4j
-@Transactional
 public class PaeseService {
+    private static final int MAX_RISULTATI_RICERCA = 50;
+
 
     private final PaeseRepository paeseRepository;
     private final SistemaValutazioneRepository sistemaValutazioneRepository;
     private final SistemaUniversitarioRepository sistemaUniversitarioRepository;
     private final PaeseCompletoService paeseCompletoService;
+    private final CountryCatalogue countryCatalogue;
+    private final ModifichePaesi modifichePaesi;
 
     public PaeseService(
             PaeseRepository paeseRepository,
             SistemaValutazioneRepository sistemaValutazioneRepository,
-            SistemaUniversitarioRepository sistemaUniversitarioRepository, PaeseCompletoService paeseCompletoService) {
+            SistemaUniversitarioRepository sistemaUniversitarioRepository, PaeseCompletoService paeseCompletoService,
+            CountryCatalogue countryCatalogue,
+            ModifichePaesi modifichePaesi) {
         this.paeseRepository = paeseRepository;
         this.sistemaValutazioneRepository = sistemaValutazioneRepository;
         this.sistemaUniversitarioRepository = sistemaUniversitarioRepository;
         this.paeseCompletoService = paeseCompletoService;
+        this.countryCatalogue = countryCatalogue;
+        this.modifichePaesi = modifichePaesi;
     }
 
+    // Le letture sono servite dal catalogo in memoria: nessuna query verso il database
+
     public List<DettaglioPaeseDTO> getAllPaesi() {
-        return paeseRepository.findAll().stream()
-                .map(paese -> {
-                    try {
-                        return getPaeseById(paese.getId());
-                    } catch (Exception e) {
-                        log.error("Errore nel recupero dei dati per il paese {}: {}", paese.getNome(), e.getMessage());
-                        return null;
-                    }
-                })
-                .filter(dto -> dto != null)
-                .collect(Collectors.toList());
+        return countryCatalogue.snapshot().paesi();
+    }
+
+    /**
+     * Pagina keyset di tutti i paesi, ordinati per id
+     */
+    public PaginaDTO<DettaglioPaeseDTO> getPaesi(PaginaRichiestaDTO pagina) {
+        CountryCatalogue.Snapshot catalogo = countryCatalogue.snapshot();
+        return catalogo.pagina(catalogo.ids(), pagina);
     }
 
     public DettaglioPaeseDTO getPaeseById(Long id) {
-        Paese paese = paeseRepository.findById(id)
+        return countryCatalogue.snapshot().byId(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Paese", "id", id));
+    }
 
-        SistemaValutazione sistemaVal = sistemaValutazioneRepository.findByPaese(paese)
-                .orElseThrow(() -> new ResourceNotFoundException("Sistema Valutazione", "paese", paese.getNome()));
 
-        SistemaUniversitario sistemaUni = sistemaUniversitarioRepository.findByPaeseId(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Sistema Universitario", "paese", paese.getNome()));
+    public DettaglioPaeseDTO getPaeseByNome(String nome) {
+        return countryCatalogue.snapshot().byNome(nome)
+                .orElseThrow(() -> new ResourceNotFoundException("Paese", "nome", nome));
+    }
 
-        return DettaglioPaeseDTO.fromEntities(paese, sistemaVal, sistemaUni);
+    public PaginaDTO<DettaglioPaeseDTO> getPaesiByAnniScuolaObbligatoria(Integer anni, PaginaRichiestaDTO pagina) {
+        CountryCatalogue.Snapshot catalogo = countryCatalogue.snapshot();
+        return catalogo.pagina(catalogo.perAnniScuola().get(anni), pagina);
     }
 
+    public PaginaDTO<DettaglioPaeseDTO> getPaesiByAnniScuolaObbligatoria(Integer min, Integer max, PaginaRichiestaDTO pagina) {
+        CountryCatalogue.Snapshot catalogo = countryCatalogue.snapshot();
+        return catalogo.pagina(CountryCatalogue.Snapshot.intervallo(catalogo.perAnniScuola(), min, max), pagina);
+    }
 
-    public DettaglioPaeseDTO getPaeseByNome(String nome) {
-        Paese paese = paeseRepository.findByNome(nome)
-                .orElseThrow(() -> new ResourceNotFoundException("Paese", "nome", nome));
+    public PaginaDTO<DettaglioPaeseDTO> getPaesiByDurataBaseAnni(Integer durataAnni, PaginaRichiestaDTO pagina) {
+        CountryCatalogue.Snapshot catalogo = countryCatalogue.snapshot();
+        return catalogo.pagina(catalogo.perDurataBase().get(durataAnni), pagina);
+    }
 
-        return getPaeseById(paese.getId());
+    public PaginaDTO<DettaglioPaeseDTO> getPaesiByDurataBaseAnni(Integer min, Integer max, PaginaRichiestaDTO pagina) {
+        CountryCatalogue.Snapshot catalogo = countryCatalogue.snapshot();
+        return catalogo.pagina(CountryCatalogue.Snapshot.intervallo(catalogo.perDurataBase(), min, max), pagina);
     }
 
-    public List<DettaglioPaeseDTO> getPaesiByAnniScuolaObbligatoria(Integer anni) {
-        return paeseRepository.findByAnniScuolaObbligatoria(anni).stream()
-                .map(paese -> {
-                    try {
-                        return getPaeseById(paese.getId());
-                    } catch (Exception e) {
-                        log.error("Errore nel recupero dei dati per il paese {}: {}", paese.getNome(), e.getMessage());
-                        return null;
-                    }
-                })
-                .filter(dto -> dto != null)
-                .collect(Collectors.toList());
+    public PaginaDTO<DettaglioPaeseDTO> getPaesiByCreditiPerAnno(Integer crediti, PaginaRichiestaDTO pagina) {
+        CountryCatalogue.Snapshot catalogo = countryCatalogue.snapshot();
+        return catalogo.pagina(catalogo.perCrediti().get(crediti), pagina);
     }
 
-    public List<DettaglioPaeseDTO> getPaesiByDurataBaseAnni(Integer durataAnni) {
-        return sistemaUniversitarioRepository.findByDurataBaseAnni(durataAnni).stream()
-                .map(sistema -> {
-                    try {
-                        return getPaeseById(sistema.getPaese().getId());
-                    } catch (Exception e) {
-                        log.error("Errore nel recupero dei dati per il sistema universitario: {}", e.getMessage());
-                        return null;
-                    }
-                })
-                .filter(dto -> dto != null)
-                .collect(Collectors.toList());
+    public PaginaDTO<DettaglioPaeseDTO> getPaesiByCreditiPerAnno(Integer min, Integer max, PaginaRichiestaDTO pagina) {
+        CountryCatalogue.Snapshot catalogo = countryCatalogue.snapshot();
+        return catalogo.pagina(CountryCatalogue.Snapshot.intervallo(catalogo.perCrediti(), min, max), pagina);
     }
 
-    public List<DettaglioPaeseDTO> getPaesiByCreditiPerAnno(Integer crediti) {
-        return sistemaUniversitarioRepository.findByCreditiPerAnno(crediti).stream()
-                .map(sistema -> {
-                    try {
-                        return getPaeseById(sistema.getPaese().getId());
-                    } catch (Exception e) {
-                        log.error("Errore nel recupero dei dati per il sistema universitario: {}", e.getMessage());
-                        return null;
-                    }
-                })
-                .filter(dto -> dto != null)
-                .collect(Collectors.toList());
+    public PaginaDTO<DettaglioPaeseDTO> getPaesiByLivelloEQF(String livello, PaginaRichiestaDTO pagina) {
+        CountryCatalogue.Snapshot catalogo = countryCatalogue.snapshot();
+        return catalogo.pagina(catalogo.perLivelloEQF().get(livello), pagina);
     }
 
-    public List<DettaglioPaeseDTO> getPaesiByLivelloEQF(String livello) {
-        return sistemaUniversitarioRepository.findByLivelloEQF(livello).stream()
-                .map(sistema -> {
-                    try {
-                        return getPaeseById(sistema.getPaese().getId());
-                    } catch (Exception e) {
-                        log.error("Errore nel recupero dei dati per il sistema universitario: {}", e.getMessage());
-                        return null;
-                    }
-                })
-                .filter(dto -> dto != null)
-                .collect(Collectors.toList());
+    public PaginaDTO<DettaglioPaeseDTO> filtraPaesi(FiltroPaeseDTO filtro, PaginaRichiestaDTO pagina) {
+        CountryCatalogue.Snapshot catalogo = countryCatalogue.snapshot();
+        return catalogo.pagina(catalogo.filtra(filtro), pagina);
+    }
+
+    public RisultatoQueryPaeseDTO queryPaesi(QueryPaeseDTO query) {
+        return countryCatalogue.snapshot().facet().query(query);
     }
 
-    public List<PaeseDTO> searchPaesiByNome(String query) {
-        return paeseRepository.findByNomeContainingIgnoreCase(query).stream()
-                .map(p -> new PaeseDTO(p.getId(), p.getNome(), p.getAnniSculaObbligaroia()))
+    public List<PaeseDTO> searchPaesiByNome(String query, int limite) {
+        CountryCatalogue.Snapshot catalogo = countryCatalogue.snapshot();
+        return catalogo.risolvi(catalogo.ricerca().cerca(query, Math.min(limite, MAX_RISULTATI_RICERCA))).stream()
+                .map(p -> new PaeseDTO(p.id(), p.nome(), p.anniScuolaObbligatoria()))
                 .collect(Collectors.toList());
     }
 
@@ -140,6 +132,18 @@ public class PaeseService {
         DettaglioPaeseDTO p2 = getPaeseByNome(nome2);
         return List.of(p1, p2);
     }
+
+    /**
+     * Confronto tra più paesi: tutti i nomi vengono risolti sullo stesso snapshot del catalogo.
+     */
+    public ConfrontoPaesiDTO confrontaPaesiByNome(List<String> nomi) {
+        CountryCatalogue.Snapshot catalogo = countryCatalogue.snapshot();
+        List<DettaglioPaeseDTO> paesi = nomi.stream()
+                .map(nome -> catalogo.byNome(nome)
+                        .orElseThrow(() -> new ResourceNotFoundException("Paese", "nome", nome)))
+                .toList();
+        return ConfrontoPaesiDTO.fromDettagli(paesi);
+    }
     @Transactional
     public DettaglioPaeseDTO createPaese(PaeseCreateDTO createDTO) {
         // Verifica se esiste già un paese con lo stesso nome
@@ -151,6 +155,7 @@ public class PaeseService {
         Paese paese = paeseRepository.save(Paese.builder()
                 .nome(createDTO.nome())
                 .anniSculaObbligaroia(createDTO.anniScuolaObbligatoria())
+                .modificatoLocalmente(true)
                 .build());
 
         // 2. Crea il sistema di valutazione
@@ -173,6 +178,7 @@ public class PaeseService {
                 .livelloEQF(createDTO.livelloEQF())
                 .build();
         sistemaUniversitarioRepository.save(sistemaUniversitario);
+        modifichePaesi.registra(paese.getId());
 
         // Restituisce il DTO completo
         return DettaglioPaeseDTO.fromEntities(
@@ -187,6 +193,7 @@ public class PaeseService {
             throw new ResourceNotFoundException("Paese", "id", id);
         }
         paeseRepository.deleteById(id);
+        modifichePaesi.registra(id);
     }
 }
 
@@ -1,19 +1,28 @@
 package vacislavbaluyev.eduatlas.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import vacislavbaluyev.eduatlas.entities.Paese;
 import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
 import vacislavbaluyev.eduatlas.entities.TipoVoto;
 import vacislavbaluyev.eduatlas.exception.ResourceNotFoundException;
+import vacislavbaluyev.eduatlas.payload.ConversioneVotiDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaRichiestaDTO;
+import vacislavbaluyev.eduatlas.payload.RisultatoConversioneVotiDTO;
 import vacislavbaluyev.eduatlas.payload.SistemaValutazioneCreateDTO;
 import vacislavbaluyev.eduatlas.payload.SistemaValutazioneDTO;
+import vacislavbaluyev.eduatlas.payload.VotoConvertitoDTO;
+import vacislavbaluyev.eduatlas.payload.VotoDaConvertireDTO;
 import vacislavbaluyev.eduatlas.repository.PaeseRepository;
 import vacislavbaluyev.eduatlas.repository.SistemaValutazioneRepository;
+import vacislavbaluyev.eduatlas.tools.ConvertitoreVoto;
+import vacislavbaluyev.eduatlas.tools.MatriceEquivalenze;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.*;
 
 @Service
 @Slf4j
@@ -22,21 +31,31 @@ public class SistemaValutazioneService {
 
     private final SistemaValutazioneRepository sistemaValutazioneRepository;
     private final PaeseRepository paeseRepository;
+    private final ModifichePaesi modifichePaesi;
+    private final ConvertitoreVotoCache convertitori;
+    private final EquivalenzaVotiService equivalenzaVotiService;
 
     public SistemaValutazioneService(SistemaValutazioneRepository sistemaValutazioneRepository,
-                                     PaeseRepository paeseRepository) {
+                                     PaeseRepository paeseRepository,
+                                     ModifichePaesi modifichePaesi,
+                                     ConvertitoreVotoCache convertitori,
+                                     EquivalenzaVotiService equivalenzaVotiService) {
         this.sistemaValutazioneRepository = sistemaValutazioneRepository;
         this.paeseRepository = paeseRepository;
+        this.modifichePaesi = modifichePaesi;
+        this.convertitori = convertitori;
+        this.equivalenzaVotiService = equivalenzaVotiService;
     }
 
     /**
-     * Recupera tutti i sistemi di valutazione
+     * Recupera una pagina di sistemi di valutazione ordinati per id, insieme al loro paese
      */
-    public List<SistemaValutazioneDTO> getAllSistemiValutazione() {
-        return sistemaValutazioneRepository.findAll()
-                .stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public PaginaDTO<SistemaValutazioneDTO> getAllSistemiValutazione(PaginaRichiestaDTO pagina) {
+        int dimensione = pagina.dimensioneOrDefault();
+        return PaginaDTO.daRighe(
+                sistemaValutazioneRepository.findPaginaConPaese(pagina.dopoId(), Limit.of(dimensione + 1)),
+                dimensione, SistemaValutazione::getId, this::convertToDTO);
     }
 
     /**
@@ -70,7 +89,11 @@ public class SistemaValutazioneService {
         sistema.setVotoF(updateDTO.votoMinimo());
         sistema.setScalaTipo(updateDTO.scalaTipo());
 
-        return convertToDTO(sistemaValutazioneRepository.save(sistema));
+        SistemaValutazione salvato = sistemaValutazioneRepository.save(sistema);
+        paeseRepository.segnaModificatoLocalmente(salvato.getPaese().getId());
+        convertitori.invalida(salvato.getPaese().getId());
+        modifichePaesi.registra(salvato.getPaese().getId());
+        return convertToDTO(salvato);
     }
 
     /**
@@ -80,32 +103,61 @@ public class SistemaValutazioneService {
         SistemaValutazione sistema = sistemaValutazioneRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Sistema Valutazione", "id", id));
         sistemaValutazioneRepository.delete(sistema);
+        paeseRepository.segnaModificatoLocalmente(sistema.getPaese().getId());
+        convertitori.invalida(sistema.getPaese().getId());
+        modifichePaesi.registra(sistema.getPaese().getId());
     }
 
     /**
-     * Determina il tipo di voto basato sul voto fornito
+     * Determina il tipo di voto basato sul voto fornito, usando il convertitore compilato del paese
      */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public TipoVoto determinaTipoVoto(String voto, Long paeseId) {
-        Paese paese = paeseRepository.findById(paeseId)
-                .orElseThrow(() -> new ResourceNotFoundException("Paese", "id", paeseId));
-
-        SistemaValutazione sistema = getSistemaValutazionePerPaese(paese);
+        ConvertitoreVoto convertitore = convertitori.get(paeseId);
+        return convertitore.classifica(voto);
+    }
 
-        if (voto == null || voto.trim().isEmpty()) {
-            return null;
+    /**
+     * Converte un intero libretto: i voti vengono raggruppati per paese di origine, ogni sistema di
+     * valutazione viene risolto una sola volta e i voti del gruppo classificati in un unico passaggio.
+     * Con un paese di destinazione il voto equivalente viene dalla matrice delle equivalenze, la stessa
+     * di /voti/equivalenza. I risultati mantengono l'ordine della richiesta.
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public RisultatoConversioneVotiDTO convertiVoti(ConversioneVotiDTO richiesta) {
+        List<VotoDaConvertireDTO> voti = richiesta.voti();
+        Long destinazioneId = richiesta.paeseDestinazioneId();
+
+        Map<Long, List<Integer>> perPaese = new LinkedHashMap<>();
+        for (int i = 0; i < voti.size(); i++) {
+            perPaese.computeIfAbsent(voti.get(i).paeseId(), id -> new ArrayList<>()).add(i);
         }
 
-        String votoNormalizzato = normalizzaVoto(voto);
-
-        // Confronto diretto
-        if (confrontaVoti(votoNormalizzato, sistema.getVotoA())) return TipoVoto.A;
-        if (confrontaVoti(votoNormalizzato, sistema.getVotoB())) return TipoVoto.B;
-        if (confrontaVoti(votoNormalizzato, sistema.getVotoC())) return TipoVoto.C;
-        if (confrontaVoti(votoNormalizzato, sistema.getVotoDE())) return TipoVoto.DE;
-        if (confrontaVoti(votoNormalizzato, sistema.getVotoF())) return TipoVoto.F;
+        Set<Long> paesi = new HashSet<>(perPaese.keySet());
+        if (destinazioneId != null) paesi.add(destinazioneId);
+        Map<Long, ConvertitoreVoto> sistemi = convertitori.getAll(paesi);
+        ConvertitoreVoto destinazione = destinazioneId == null ? null : sistemi.get(destinazioneId);
+        MatriceEquivalenze matrice = destinazioneId == null ? null : equivalenzaVotiService.matrice();
+
+        VotoConvertitoDTO[] risultati = new VotoConvertitoDTO[voti.size()];
+        perPaese.forEach((paeseId, indici) -> {
+            ConvertitoreVoto origine = sistemi.get(paeseId);
+            for (int i : indici) {
+                String voto = voti.get(i).voto();
+                TipoVoto tipo = origine.classifica(voto);
+                if (destinazione == null) {
+                    risultati[i] = new VotoConvertitoDTO(paeseId, voto, tipo, null, null);
+                    continue;
+                }
+                double equivalente = EquivalenzaVotiService.equivalente(matrice, paeseId, destinazioneId, voto);
+                risultati[i] = new VotoConvertitoDTO(paeseId, voto, tipo,
+                        Double.isNaN(equivalente) ? null : EquivalenzaVotiService.arrotonda(equivalente),
+                        destinazione.fascia(tipo));
+            }
+        });
 
-        // Prova conversione numerica
-        return determinaTipoVotoNumerico(votoNormalizzato, sistema);
+        log.debug("Convertiti {} voti da {} paesi", voti.size(), perPaese.size());
+        return new RisultatoConversioneVotiDTO(destinazioneId, List.of(risultati));
     }
 
     // Metodi di utilità privati
@@ -134,42 +186,6 @@ public class SistemaValutazioneService {
         }
     }
 
-    private String normalizzaVoto(String voto) {
-        return voto.trim().toUpperCase();
-    }
-
-    private boolean confrontaVoti(String voto1, String voto2) {
-        if (voto1 == null || voto2 == null) return false;
-        return voto1.equals(voto2) ||
-                voto1.contains(voto2) ||
-                voto2.contains(voto1);
-    }
-
-    private TipoVoto determinaTipoVotoNumerico(String voto, SistemaValutazione sistema) {
-        try {
-            double votoNumerico = estraiNumero(voto);
-            double votoMax = estraiNumero(sistema.getVotoA());
-            double votoMin = estraiNumero(sistema.getVotoF());
-
-            if (Double.isNaN(votoNumerico) || Double.isNaN(votoMax) || Double.isNaN(votoMin)) {
-                return null;
-            }
-
-            double range = votoMax - votoMin;
-            double step = range / 5.0;
-
-            if (votoNumerico >= votoMax - step) return TipoVoto.A;
-            if (votoNumerico >= votoMax - (2 * step)) return TipoVoto.B;
-            if (votoNumerico >= votoMax - (3 * step)) return TipoVoto.C;
-            if (votoNumerico >= votoMax - (4 * step)) return TipoVoto.DE;
-            return TipoVoto.F;
-
-        } catch (Exception e) {
-            log.warn("Errore nella conversione numerica del voto: {}", voto);
-            return null;
-        }
-    }
-
     private double estraiNumero(String voto) {
         try {
             String numerico = voto.replaceAll("[^0-9.]", "");
@@ -0,0 +1,63 @@
+package vacislavbaluyev.eduatlas.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import vacislavbaluyev.eduatlas.payload.RigaMatriceDTO;
+import vacislavbaluyev.eduatlas.payload.RisultatoImportDTO;
+import vacislavbaluyev.eduatlas.repository.MatriceImportRepository;
+import vacislavbaluyev.eduatlas.tools.SnapshotMatrice;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Esportazione della matrice in un'istantanea binaria (vedi SnapshotMatrice) e popolamento del database a partire
+ * da un'istantanea, molto più rapido del CSV perché non richiede analisi del testo
+ */
+@Slf4j
+@Service
+public class SnapshotMatriceService {
+
+    private final MatriceImportRepository matriceImportRepository;
+    private final MatriceCopyImportService matriceCopyImportService;
+
+    public SnapshotMatriceService(MatriceImportRepository matriceImportRepository,
+                                  MatriceCopyImportService matriceCopyImportService) {
+        this.matriceImportRepository = matriceImportRepository;
+        this.matriceCopyImportService = matriceCopyImportService;
+    }
+
+    @Transactional(readOnly = true)
+    public byte[] esporta() {
+        List<RigaMatriceDTO> righe = matriceImportRepository.esporta();
+        ByteBuffer snapshot = SnapshotMatrice.scrivi(righe);
+        log.info("Esportata un'istantanea della matrice: {} paesi, {} byte", righe.size(), snapshot.limit());
+        return snapshot.array();
+    }
+
+    /**
+     * Importa l'istantanea; una risorsa che non è un file (ad esempio dentro il jar) viene prima copiata
+     * in un file temporaneo, perché solo un file può essere mappato in memoria
+     */
+    public RisultatoImportDTO importa(Resource risorsa, boolean rimuoviScomparsi) throws IOException {
+        if (risorsa.isFile()) {
+            return matriceCopyImportService.importaSnapshot(SnapshotMatrice.apri(risorsa.getFile().toPath()), rimuoviScomparsi);
+        }
+        Path copia = Files.createTempFile("matrice-", ".snapshot");
+        try {
+            try (InputStream in = risorsa.getInputStream()) {
+                Files.copy(in, copia, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return matriceCopyImportService.importaSnapshot(SnapshotMatrice.apri(copia), rimuoviScomparsi);
+        } finally {
+            Files.deleteIfExists(copia);
+        }
+    }
+}
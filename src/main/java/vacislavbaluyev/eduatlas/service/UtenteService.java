@@ -2,6 +2,7 @@ package vacislavbaluyev.eduatlas.service;
 
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import vacislavbaluyev.eduatlas.entities.Ruolo;
@@ -11,25 +12,31 @@ import vacislavbaluyev.eduatlas.exception.UnauthorizedOperationException;
 import vacislavbaluyev.eduatlas.exception.UserAlreadyExistsException;
 import vacislavbaluyev.eduatlas.payload.*;
 import vacislavbaluyev.eduatlas.repository.UtenteRepository;
+import vacislavbaluyev.eduatlas.security.VersioniTokenRegistry;
 
-import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class UtenteService {
     private final UtenteRepository utenteRepository;
     private final PasswordEncoder passwordEncoder;
+    private final VersioniTokenRegistry versioniTokenRegistry;
 
-    public UtenteService(UtenteRepository utenteRepository, PasswordEncoder passwordEncoder) {
+    public UtenteService(UtenteRepository utenteRepository, PasswordEncoder passwordEncoder,
+                         VersioniTokenRegistry versioniTokenRegistry) {
         this.utenteRepository = utenteRepository;
         this.passwordEncoder = passwordEncoder;
+        this.versioniTokenRegistry = versioniTokenRegistry;
     }
 
-    public List<UtenteDTO> getAllUsers() {
-        return utenteRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    /**
+     * Pagina di utenti ordinati per id
+     */
+    public PaginaDTO<UtenteDTO> getAllUsers(PaginaRichiestaDTO pagina) {
+        int dimensione = pagina.dimensioneOrDefault();
+        return PaginaDTO.daRighe(
+                utenteRepository.findByIdGreaterThanOrderByIdAsc(pagina.dopoId(), Limit.of(dimensione + 1)),
+                dimensione, Utente::getId, this::convertToDTO);
     }
 
     public UtenteDTO getUserById(Long id) {
@@ -103,6 +110,7 @@ public class UtenteService {
 
         updateUserFields(targetUser, utenteUpdateDto);
         utenteRepository.save(targetUser);
+        versioniTokenRegistry.invalida(targetUser.getUsername());
         log.info("Utente aggiornato da {}: {}", requestingUsername, targetUser.getUsername());
     }
 
@@ -118,6 +126,8 @@ public class UtenteService {
         }
         if (updateDto.password() != null) {
             utente.setPassword(passwordEncoder.encode(updateDto.password()));
+            // I token emessi con la vecchia password smettono di valere
+            utente.setVersioneToken(utente.getVersioneToken() + 1);
         }
 
         // Aggiorna l'avatar URL se nome o cognome sono cambiati
@@ -169,6 +179,7 @@ public class UtenteService {
 
         // Procedi con l'eliminazione
         utenteRepository.delete(targetUser);
+        versioniTokenRegistry.invalida(targetUsername);
         log.info("Admin {} eliminato da {}", targetUsername, requestingUsername);
     }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * BK-tree sulla distanza di Levenshtein: trova le parole entro una distanza massima
+ * visitando solo i rami compatibili con la disuguaglianza triangolare.
+ */
+public final class BkTree {
+
+    private Nodo radice;
+
+    public void add(String parola, long id) {
+        if (radice == null) {
+            radice = new Nodo(parola, id);
+            return;
+        }
+        Nodo nodo = radice;
+        while (true) {
+            int distanza = levenshtein(parola, nodo.parola, Integer.MAX_VALUE);
+            if (distanza == 0) return;
+            Nodo figlio = nodo.figlio(distanza);
+            if (figlio == null) {
+                nodo.aggiungi(distanza, new Nodo(parola, id));
+                return;
+            }
+            nodo = figlio;
+        }
+    }
+
+    /**
+     * Id della parola più vicina entro distanzaMassima, oppure -1 se non ce ne sono
+     * o se più paesi diversi sono alla stessa distanza minima.
+     */
+    public long nearest(String parola, int distanzaMassima) {
+        if (radice == null) return -1;
+        int migliore = distanzaMassima + 1;
+        long idMigliore = -1;
+        boolean ambiguo = false;
+
+        List<Nodo> daVisitare = new ArrayList<>();
+        daVisitare.add(radice);
+        while (!daVisitare.isEmpty()) {
+            Nodo nodo = daVisitare.remove(daVisitare.size() - 1);
+            // Serve la distanza esatta: è quella che decide quali rami possono contenere risultati
+            int distanza = levenshtein(parola, nodo.parola, Integer.MAX_VALUE);
+            if (distanza < migliore) {
+                migliore = distanza;
+                idMigliore = nodo.id;
+                ambiguo = false;
+            } else if (distanza == migliore && nodo.id != idMigliore) {
+                ambiguo = true;
+            }
+            for (int i = 0; i < nodo.numeroFigli; i++) {
+                int d = nodo.distanze[i];
+                if (d >= distanza - distanzaMassima && d <= distanza + distanzaMassima) {
+                    daVisitare.add(nodo.figli[i]);
+                }
+            }
+        }
+        return ambiguo ? -1 : idMigliore;
+    }
+
+    /**
+     * Distanza di Levenshtein; si ferma appena supera limite restituendo limite.
+     */
+    static int levenshtein(String a, String b, int limite) {
+        if (Math.abs(a.length() - b.length()) >= limite) return limite;
+        int[] precedente = new int[b.length() + 1];
+        int[] corrente = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) precedente[j] = j;
+
+        for (int i = 1; i <= a.length(); i++) {
+            corrente[0] = i;
+            int minimoRiga = corrente[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int costo = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                corrente[j] = Math.min(Math.min(corrente[j - 1] + 1, precedente[j] + 1), precedente[j - 1] + costo);
+                minimoRiga = Math.min(minimoRiga, corrente[j]);
+            }
+            if (minimoRiga >= limite) return limite;
+            int[] tmp = precedente;
+            precedente = corrente;
+            corrente = tmp;
+        }
+        return Math.min(precedente[b.length()], limite);
+    }
+
+    private static final class Nodo {
+        private final String parola;
+        private final long id;
+        private int[] distanze = new int[2];
+        private Nodo[] figli = new Nodo[2];
+        private int numeroFigli;
+
+        private Nodo(String parola, long id) {
+            this.parola = parola;
+            this.id = id;
+        }
+
+        private Nodo figlio(int distanza) {
+            for (int i = 0; i < numeroFigli; i++) {
+                if (distanze[i] == distanza) return figli[i];
+            }
+            return null;
+        }
+
+        private void aggiungi(int distanza, Nodo figlio) {
+            if (numeroFigli == figli.length) {
+                distanze = Arrays.copyOf(distanze, numeroFigli * 2);
+                figli = Arrays.copyOf(figli, numeroFigli * 2);
+            }
+            distanze[numeroFigli] = distanza;
+            figli[numeroFigli++] = figlio;
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
+import vacislavbaluyev.eduatlas.entities.TipoVoto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sistema di valutazione di un paese "compilato": le fasce votoA..votoF vengono analizzate una sola volta
+ * in soglie numeriche ed etichette, così classificare un voto è solo un confronto tra primitivi.
+ * <p>
+ * Formati gestiti nelle fasce: intervalli ("17-20", "1.0-1.5", "70-100%"), alternative ("9|10", "C|D"),
+ * soglie aperte (">10" nella fascia F indica i voti peggiori di 10), etichette con intervallo
+ * ("A (70-100%)") ed etichette descrittive ("VG (Väl godkänd)").
+ */
+public final class ConvertitoreVoto {
+
+    private static final TipoVoto[] FASCE = TipoVoto.values();
+
+    // Indicizzati per TipoVoto.ordinal(); NaN quando la fascia non ha valori numerici
+    private final double[] minimi;
+    private final double[] massimi;
+    // Confine di ogni fascia verso i voti peggiori: un voto "migliore o uguale" appartiene alla fascia
+    private final double[] soglie;
+    // true se un numero più alto è un voto migliore (es. 30 in Italia), false per scale come quella tedesca
+    private final boolean crescente;
+
+    private final String[] etichette;
+    private final TipoVoto[] tipiEtichette;
+    // Testo originale delle fasce, restituito come voto equivalente
+    private final String[] fasce;
+
+    private ConvertitoreVoto(double[] minimi, double[] massimi, double[] soglie, boolean crescente,
+                             String[] etichette, TipoVoto[] tipiEtichette, String[] fasce) {
+        this.minimi = minimi;
+        this.massimi = massimi;
+        this.soglie = soglie;
+        this.crescente = crescente;
+        this.etichette = etichette;
+        this.tipiEtichette = tipiEtichette;
+        this.fasce = fasce;
+    }
+
+    public static ConvertitoreVoto compila(SistemaValutazione sistema) {
+        String[] fasce = {sistema.getVotoA(), sistema.getVotoB(), sistema.getVotoC(), sistema.getVotoDE(), sistema.getVotoF()};
+
+        double[] minimi = new double[FASCE.length];
+        double[] massimi = new double[FASCE.length];
+        boolean[] aperte = new boolean[FASCE.length];
+        List<String> etichette = new ArrayList<>();
+        List<TipoVoto> tipiEtichette = new ArrayList<>();
+
+        for (TipoVoto tipo : FASCE) {
+            int i = tipo.ordinal();
+            minimi[i] = Double.NaN;
+            massimi[i] = Double.NaN;
+            String fascia = fasce[i];
+            if (fascia == null || fascia.isBlank()) continue;
+
+            // Il testo completo resta confrontabile com'era prima ("17-20" → A)
+            aggiungiEtichetta(etichette, tipiEtichette, fascia.trim(), tipo);
+            for (String etichetta : etichetteDi(fascia)) {
+                aggiungiEtichetta(etichette, tipiEtichette, etichetta, tipo);
+            }
+
+            String numerico = parteNumerica(fascia);
+            aperte[i] = numerico.startsWith(">");
+            double[] valori = numeri(aperte[i] ? numerico.substring(1) : numerico);
+            if (valori.length > 0) {
+                double min = valori[0], max = valori[0];
+                for (double v : valori) {
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                minimi[i] = min;
+                massimi[i] = max;
+            }
+        }
+
+        boolean crescente = direzione(minimi, massimi);
+        scartaValoriFuoriScala(minimi, massimi, crescente);
+        apriFasce(minimi, massimi, aperte, crescente);
+
+        return new ConvertitoreVoto(minimi, massimi, calcolaSoglie(minimi, massimi, crescente), crescente,
+                etichette.toArray(String[]::new), tipiEtichette.toArray(TipoVoto[]::new), fasce);
+    }
+
+    /**
+     * Classifica un voto espresso come testo: prima per etichetta, poi come numero.
+     * Restituisce null se il voto non è riconoscibile in questo sistema.
+     */
+    public TipoVoto classifica(String voto) {
+        if (voto == null) return null;
+        int inizio = 0, fine = voto.length();
+        while (inizio < fine && Character.isWhitespace(voto.charAt(inizio))) inizio++;
+        while (fine > inizio && Character.isWhitespace(voto.charAt(fine - 1))) fine--;
+        if (inizio == fine) return null;
+
+        int lunghezza = fine - inizio;
+        for (int i = 0; i < etichette.length; i++) {
+            String etichetta = etichette[i];
+            if (etichetta.length() == lunghezza && etichetta.regionMatches(true, 0, voto, inizio, lunghezza)) {
+                return tipiEtichette[i];
+            }
+        }
+
+        double numero = parseNumero(voto, inizio, fine);
+        return Double.isNaN(numero) ? null : classifica(numero);
+    }
+
+    public TipoVoto classifica(double voto) {
+        for (int i = 0; i < FASCE.length; i++) {
+            if (voto >= minimi[i] && voto <= massimi[i]) return FASCE[i];
+        }
+        for (int i = 0; i < FASCE.length; i++) {
+            double soglia = soglie[i];
+            if (Double.isNaN(soglia)) continue;
+            if (crescente ? voto >= soglia : voto <= soglia) return FASCE[i];
+        }
+        return haValoriNumerici() ? TipoVoto.F : null;
+    }
+
+    public boolean haValoriNumerici() {
+        for (double soglia : soglie) {
+            if (!Double.isNaN(soglia)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Testo della fascia così come è scritto nel sistema di valutazione (es. "27-28" per B in Italia)
+     */
+    public String fascia(TipoVoto tipo) {
+        return tipo == null ? null : fasce[tipo.ordinal()];
+    }
+
+    public boolean isCrescente() {
+        return crescente;
+    }
+
+    public double minimo(TipoVoto tipo) {
+        return minimi[tipo.ordinal()];
+    }
+
+    public double massimo(TipoVoto tipo) {
+        return massimi[tipo.ordinal()];
+    }
+
+    // --- compilazione ---
+
+    private static void aggiungiEtichetta(List<String> etichette, List<TipoVoto> tipi, String etichetta, TipoVoto tipo) {
+        for (String esistente : etichette) {
+            if (esistente.equalsIgnoreCase(etichetta)) return;
+        }
+        etichette.add(etichetta);
+        tipi.add(tipo);
+    }
+
+    // Etichette alfabetiche della fascia: "C|D" → C, D; "VG (Väl godkänd)" → VG; "A (70-100%)" → A
+    private static List<String> etichetteDi(String fascia) {
+        List<String> risultato = new ArrayList<>();
+        String testa = fascia.contains("(") ? fascia.substring(0, fascia.indexOf('(')) : fascia;
+        for (String parte : testa.split("\\|")) {
+            String etichetta = parte.trim();
+            if (!etichetta.isEmpty() && etichetta.chars().allMatch(Character::isLetter)) {
+                risultato.add(etichetta);
+            }
+        }
+        return risultato;
+    }
+
+    private static String parteNumerica(String fascia) {
+        String testo = fascia;
+        int aperta = testo.indexOf('(');
+        int chiusa = testo.indexOf(')');
+        if (aperta >= 0 && chiusa > aperta) {
+            testo = testo.substring(aperta + 1, chiusa);
+        }
+        // "ott" è il 10 trasformato in data ("ottobre") dal foglio di calcolo: "09-ott", "ott-13"
+        return testo.toLowerCase()
+                .replace("ott", "10")
+                .replaceAll("[%+\\s]", "");
+    }
+
+    private static double[] numeri(String testo) {
+        if (testo.isEmpty()) return new double[0];
+        String[] parti = testo.split("[|\\-]");
+        // "15.16.9" è un intervallo scritto con il punto al posto del trattino: 15-16.9
+        if (parti.length == 1 && testo.chars().filter(c -> c == '.').count() == 2) {
+            int punto = testo.indexOf('.');
+            parti = new String[]{testo.substring(0, punto), testo.substring(punto + 1)};
+        }
+        double[] valori = new double[parti.length];
+        for (int i = 0; i < parti.length; i++) {
+            valori[i] = parseNumero(parti[i], 0, parti[i].length());
+            if (Double.isNaN(valori[i])) return new double[0];
+        }
+        return valori;
+    }
+
+    private static boolean direzione(double[] minimi, double[] massimi) {
+        double a = centro(minimi, massimi, 0);
+        double f = centro(minimi, massimi, FASCE.length - 1);
+        if (Double.isNaN(a) || Double.isNaN(f)) {
+            // Senza A o F si confrontano le prime due fasce numeriche disponibili
+            double precedente = Double.NaN;
+            for (int i = 0; i < FASCE.length; i++) {
+                double c = centro(minimi, massimi, i);
+                if (Double.isNaN(c)) continue;
+                if (!Double.isNaN(precedente)) return precedente > c;
+                precedente = c;
+            }
+            return true;
+        }
+        return a >= f;
+    }
+
+    // Valori palesemente fuori scala (es. "88.9" in una scala 5-10) vengono ignorati
+    private static void scartaValoriFuoriScala(double[] minimi, double[] massimi, boolean crescente) {
+        double limiteA = crescente ? massimi[0] : minimi[0];
+        double limiteF = crescente ? minimi[FASCE.length - 1] : massimi[FASCE.length - 1];
+        if (Double.isNaN(limiteA) || Double.isNaN(limiteF)) return;
+        double basso = Math.min(limiteA, limiteF);
+        double alto = Math.max(limiteA, limiteF);
+        for (int i = 1; i < FASCE.length - 1; i++) {
+            if (minimi[i] < basso || massimi[i] > alto) {
+                minimi[i] = Double.NaN;
+                massimi[i] = Double.NaN;
+            }
+        }
+    }
+
+    // ">10" nella fascia F: tutti i voti peggiori della soglia appartengono alla fascia
+    private static void apriFasce(double[] minimi, double[] massimi, boolean[] aperte, boolean crescente) {
+        for (int i = 0; i < FASCE.length; i++) {
+            if (!aperte[i] || Double.isNaN(minimi[i])) continue;
+            if (crescente) {
+                minimi[i] = Double.NEGATIVE_INFINITY;
+            } else {
+                massimi[i] = Double.POSITIVE_INFINITY;
+            }
+        }
+    }
+
+    /**
+     * Soglia di ciascuna fascia verso i voti peggiori. Una fascia senza valori numerici eredita il limite
+     * superiore della fascia successiva, così i voti che cadono "in mezzo" vengono comunque assegnati.
+     */
+    private static double[] calcolaSoglie(double[] minimi, double[] massimi, boolean crescente) {
+        double[] soglie = new double[FASCE.length];
+        for (int i = 0; i < FASCE.length; i++) {
+            soglie[i] = crescente ? minimi[i] : massimi[i];
+        }
+        for (int i = FASCE.length - 2; i >= 0; i--) {
+            if (!Double.isNaN(soglie[i])) continue;
+            for (int j = i + 1; j < FASCE.length; j++) {
+                double confine = crescente ? massimi[j] : minimi[j];
+                if (!Double.isNaN(confine) && !Double.isInfinite(confine)) {
+                    soglie[i] = confine;
+                    break;
+                }
+            }
+        }
+        return soglie;
+    }
+
+    private static double centro(double[] minimi, double[] massimi, int i) {
+        return (minimi[i] + massimi[i]) / 2;
+    }
+
+    /**
+     * Parsing di un numero decimale (punto o virgola) senza espressioni regolari né allocazioni.
+     */
+    public static double parseNumero(CharSequence testo, int inizio, int fine) {
+        long intero = 0;
+        long decimali = 0;
+        long divisore = 1;
+        boolean cifre = false;
+        boolean virgola = false;
+        for (int i = inizio; i < fine; i++) {
+            char c = testo.charAt(i);
+            if (c >= '0' && c <= '9') {
+                cifre = true;
+                if (virgola) {
+                    if (divisore < 1_000_000_000L) {
+                        decimali = decimali * 10 + (c - '0');
+                        divisore *= 10;
+                    }
+                } else {
+                    intero = intero * 10 + (c - '0');
+                }
+            } else if ((c == '.' || c == ',') && !virgola) {
+                virgola = true;
+            } else {
+                return Double.NaN;
+            }
+        }
+        return cifre ? intero + (double) decimali / divisore : Double.NaN;
+    }
+}
@@ -0,0 +1,156 @@
+package vacislavbaluyev.eduatlas.tools;
+
+/**
+ * Tokenizzatore a singola passata per i record della matrice (separatore ';').
+ * I campi vengono copiati, già ripuliti, in un buffer di caratteri riutilizzato da un record all'altro:
+ * l'unica allocazione per campo avviene quando se ne chiede il testo.
+ * <p>
+ * Un ';' tra virgolette non separa i campi e un record può contenere a capo dentro le virgolette.
+ * Un campo racchiuso tra virgolette perde le virgolette esterne e ogni {@code ""} diventa {@code "}.
+ * Gli spazi iniziali e finali vengono sempre rimossi.
+ * I campi oltre il numero previsto vengono ignorati e quelli mancanti risultano vuoti.
+ * Un'istanza non è thread-safe: va usata da un solo thread alla volta.
+ */
+public final class CsvTokenizer {
+
+    private static final char SEPARATORE = ';';
+    private static final char VIRGOLETTE = '"';
+
+    private final int numeroCampi;
+    private final int[] inizi;
+    private final int[] fini;
+    private char[] buffer = new char[512];
+    private int usati;
+
+    public CsvTokenizer(int numeroCampi) {
+        this.numeroCampi = numeroCampi;
+        this.inizi = new int[numeroCampi];
+        this.fini = new int[numeroCampi];
+    }
+
+    /**
+     * Vero se il record termina dentro una coppia di virgolette aperta, cioè continua sulla linea successiva
+     */
+    public static boolean virgoletteAperte(CharSequence record) {
+        boolean aperte = false;
+        for (int i = 0, n = record.length(); i < n; i++) {
+            if (record.charAt(i) == VIRGOLETTE) aperte = !aperte;
+        }
+        return aperte;
+    }
+
+    /**
+     * Suddivide il record nei campi; i risultati restano validi fino alla chiamata successiva
+     */
+    public void tokenizza(CharSequence record) {
+        int lunghezza = record.length();
+        if (buffer.length < lunghezza) {
+            buffer = new char[Math.max(lunghezza, buffer.length * 2)];
+        }
+        usati = 0;
+        int campo = 0;
+        int inizio = 0;
+        boolean traVirgolette = false;
+        for (int i = 0; i < lunghezza && campo < numeroCampi; i++) {
+            char c = record.charAt(i);
+            if (c == VIRGOLETTE) {
+                traVirgolette = !traVirgolette;
+            } else if (c == SEPARATORE && !traVirgolette) {
+                copiaCampo(record, campo++, inizio, i);
+                inizio = i + 1;
+            }
+        }
+        if (campo < numeroCampi) {
+            copiaCampo(record, campo++, inizio, lunghezza);
+        }
+        for (; campo < numeroCampi; campo++) {
+            inizi[campo] = usati;
+            fini[campo] = usati;
+        }
+    }
+
+    private void copiaCampo(CharSequence record, int campo, int da, int a) {
+        while (da < a && record.charAt(da) <= ' ') da++;
+        while (a > da && record.charAt(a - 1) <= ' ') a--;
+        if (a - da >= 2 && record.charAt(da) == VIRGOLETTE && record.charAt(a - 1) == VIRGOLETTE) {
+            da++;
+            a--;
+        }
+        int scrittura = usati;
+        for (int i = da; i < a; i++) {
+            char c = record.charAt(i);
+            buffer[scrittura++] = c;
+            if (c == VIRGOLETTE && i + 1 < a && record.charAt(i + 1) == VIRGOLETTE) {
+                i++;
+            }
+        }
+        int inizio = usati;
+        while (inizio < scrittura && buffer[inizio] <= ' ') inizio++;
+        while (scrittura > inizio && buffer[scrittura - 1] <= ' ') scrittura--;
+        inizi[campo] = inizio;
+        fini[campo] = scrittura;
+        usati = scrittura;
+    }
+
+    public boolean vuoto(int campo) {
+        return inizi[campo] == fini[campo];
+    }
+
+    public int lunghezza(int campo) {
+        return fini[campo] - inizi[campo];
+    }
+
+    public char carattere(int campo, int indice) {
+        return buffer[inizi[campo] + indice];
+    }
+
+    /**
+     * Testo del campo, stringa vuota se il campo è vuoto
+     */
+    public String testo(int campo) {
+        return vuoto(campo) ? "" : new String(buffer, inizi[campo], lunghezza(campo));
+    }
+
+    /**
+     * Testo del campo, null se il campo è vuoto
+     */
+    public String testoONull(int campo) {
+        return vuoto(campo) ? null : testo(campo);
+    }
+
+    /**
+     * Intero formato da tutte le cifre del campo, ignorando gli altri caratteri ("13*" vale 13).
+     * Restituisce null se il campo non contiene cifre.
+     *
+     * @throws NumberFormatException se il valore non sta in un int
+     */
+    public Integer intero(int campo) {
+        return interoFinoA(campo, fini[campo]);
+    }
+
+    /**
+     * Come intero(campo), ma considera solo i caratteri prima della prima occorrenza del separatore
+     * ("12|13*" con separatore '|' vale 12)
+     */
+    public Integer intero(int campo, char separatore) {
+        int fine = inizi[campo];
+        while (fine < fini[campo] && buffer[fine] != separatore) fine++;
+        return interoFinoA(campo, fine);
+    }
+
+    private Integer interoFinoA(int campo, int fine) {
+        long valore = 0;
+        boolean cifre = false;
+        for (int i = inizi[campo]; i < fine; i++) {
+            char c = buffer[i];
+            if (c >= '0' && c <= '9') {
+                valore = valore * 10 + (c - '0');
+                cifre = true;
+                if (valore > Integer.MAX_VALUE) {
+                    throw new NumberFormatException("Valore fuori intervallo: " + new String(buffer, inizi[campo], fine - inizi[campo]));
+                }
+            }
+        }
+        return cifre ? (int) valore : null;
+    }
+}
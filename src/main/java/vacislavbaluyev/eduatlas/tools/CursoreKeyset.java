@@ -0,0 +1,41 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import vacislavbaluyev.eduatlas.exception.CursoreNonValidoException;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Cursore opaco per la paginazione keyset: codifica l'id dell'ultimo elemento restituito (la chiave di
+ * ordinamento, unica e stabile) preceduto da un byte di versione, in Base64 URL-safe. La pagina successiva
+ * parte dal primo id maggiore, quindi resta corretta anche se nel frattempo righe vengono inserite o eliminate.
+ */
+public final class CursoreKeyset {
+
+    private static final byte VERSIONE = 1;
+    private static final int LUNGHEZZA = 1 + Long.BYTES;
+
+    private CursoreKeyset() {
+    }
+
+    public static String codifica(long ultimoId) {
+        ByteBuffer buffer = ByteBuffer.allocate(LUNGHEZZA).put(VERSIONE).putLong(ultimoId);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * @throws CursoreNonValidoException se il cursore non è stato prodotto da codifica
+     */
+    public static long decodifica(String cursore) {
+        byte[] dati;
+        try {
+            dati = Base64.getUrlDecoder().decode(cursore);
+        } catch (IllegalArgumentException e) {
+            throw new CursoreNonValidoException("Cursore non valido");
+        }
+        if (dati.length != LUNGHEZZA || dati[0] != VERSIONE) {
+            throw new CursoreNonValidoException("Cursore non valido");
+        }
+        return ByteBuffer.wrap(dati, 1, Long.BYTES).getLong();
+    }
+}
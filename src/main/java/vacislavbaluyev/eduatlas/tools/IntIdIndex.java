@@ -0,0 +1,108 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Indice immutabile chiave intera → id ordinati.
+ * Le chiavi sono tenute in un int[] ordinato, così le ricerche puntuali e per intervallo
+ * sono ricerche binarie; with/without copiano solo la lista di id della chiave toccata.
+ */
+public final class IntIdIndex {
+
+    public static final IntIdIndex EMPTY = new IntIdIndex(new int[0], new long[0][]);
+
+    private final int[] chiavi;
+    private final long[][] ids;
+
+    private IntIdIndex(int[] chiavi, long[][] ids) {
+        this.chiavi = chiavi;
+        this.ids = ids;
+    }
+
+    /**
+     * Costruisce l'indice in un solo passaggio, per i caricamenti completi:
+     * evita di copiare gli array a ogni inserimento come farebbe una sequenza di with.
+     */
+    public static IntIdIndex of(Map<Integer, ? extends Collection<Long>> idPerChiave) {
+        int[] chiavi = idPerChiave.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        long[][] ids = new long[chiavi.length][];
+        for (int i = 0; i < chiavi.length; i++) {
+            ids[i] = SortedIds.of(idPerChiave.get(chiavi[i]));
+        }
+        return new IntIdIndex(chiavi, ids);
+    }
+
+    public long[] get(int chiave) {
+        int pos = Arrays.binarySearch(chiavi, chiave);
+        return pos >= 0 ? ids[pos] : SortedIds.EMPTY;
+    }
+
+    /**
+     * Id di tutte le chiavi comprese in [min, max], estremi inclusi.
+     */
+    public long[] range(int min, int max) {
+        if (min > max) return SortedIds.EMPTY;
+        int da = primaPosizione(min);
+        int a = max == Integer.MAX_VALUE ? chiavi.length : primaPosizione(max + 1);
+        long[] risultato = SortedIds.EMPTY;
+        for (int i = da; i < a; i++) {
+            risultato = SortedIds.union(risultato, ids[i]);
+        }
+        return risultato;
+    }
+
+    public IntIdIndex with(int chiave, long id) {
+        int pos = Arrays.binarySearch(chiavi, chiave);
+        if (pos >= 0) {
+            long[] aggiornati = SortedIds.insert(ids[pos], id);
+            if (aggiornati == ids[pos]) return this;
+            long[][] nuoviIds = ids.clone();
+            nuoviIds[pos] = aggiornati;
+            return new IntIdIndex(chiavi, nuoviIds);
+        }
+
+        pos = -pos - 1;
+        int[] nuoveChiavi = new int[chiavi.length + 1];
+        long[][] nuoviIds = new long[ids.length + 1][];
+        System.arraycopy(chiavi, 0, nuoveChiavi, 0, pos);
+        System.arraycopy(ids, 0, nuoviIds, 0, pos);
+        nuoveChiavi[pos] = chiave;
+        nuoviIds[pos] = new long[]{id};
+        System.arraycopy(chiavi, pos, nuoveChiavi, pos + 1, chiavi.length - pos);
+        System.arraycopy(ids, pos, nuoviIds, pos + 1, ids.length - pos);
+        return new IntIdIndex(nuoveChiavi, nuoviIds);
+    }
+
+    public IntIdIndex without(int chiave, long id) {
+        int pos = Arrays.binarySearch(chiavi, chiave);
+        if (pos < 0) return this;
+        long[] aggiornati = SortedIds.remove(ids[pos], id);
+        if (aggiornati == ids[pos]) return this;
+
+        if (aggiornati.length > 0) {
+            long[][] nuoviIds = ids.clone();
+            nuoviIds[pos] = aggiornati;
+            return new IntIdIndex(chiavi, nuoviIds);
+        }
+
+        int[] nuoveChiavi = new int[chiavi.length - 1];
+        long[][] nuoviIds = new long[ids.length - 1][];
+        System.arraycopy(chiavi, 0, nuoveChiavi, 0, pos);
+        System.arraycopy(ids, 0, nuoviIds, 0, pos);
+        System.arraycopy(chiavi, pos + 1, nuoveChiavi, pos, chiavi.length - pos - 1);
+        System.arraycopy(ids, pos + 1, nuoviIds, pos, ids.length - pos - 1);
+        return new IntIdIndex(nuoveChiavi, nuoviIds);
+    }
+
+    public int[] chiavi() {
+        return chiavi.clone();
+    }
+
+    // Indice della prima chiave >= chiave
+    private int primaPosizione(int chiave) {
+        int pos = Arrays.binarySearch(chiavi, chiave);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+}
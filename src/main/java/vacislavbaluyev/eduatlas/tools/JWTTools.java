@@ -1,6 +1,8 @@
 package vacislavbaluyev.eduatlas.tools;
 
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import lombok.extern.slf4j.Slf4j;
@@ -9,30 +11,43 @@ import org.springframework.stereotype.Component;
 import vacislavbaluyev.eduatlas.entities.Utente;
 import vacislavbaluyev.eduatlas.exception.UnauthorizedOperationException;
 
+import javax.crypto.SecretKey;
 import java.util.Date;
 
 @Component
 @Slf4j
 public class JWTTools {
 
-    @Value("${jwt.secret}")
-    private String secret;
+    public static final String CLAIM_RUOLO = "ruolo";
+    public static final String CLAIM_VERSIONE = "ver";
+
+    // Chiave e parser sono immutabili e thread-safe: vengono creati una volta sola invece che a ogni token
+    private final SecretKey chiave;
+    private final JwtParser parser;
+
+    public JWTTools(@Value("${jwt.secret}") String secret) {
+        this.chiave = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parser().verifyWith(chiave).build();
+    }
 
     public String generateToken(Utente utente) {
         return Jwts.builder()
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 24 * 7)) // 7 giorni
                 .subject(utente.getUsername())
-                .signWith(Keys.hmacShaKeyFor(secret.getBytes()))
+                // Ruolo e versione permettono al filtro di autorizzare la richiesta senza leggere l'utente dal database
+                .claim(CLAIM_RUOLO, utente.getRuolo() == null ? null : utente.getRuolo().name())
+                .claim(CLAIM_VERSIONE, utente.getVersioneToken())
+                .signWith(chiave)
                 .compact();
     }
 
-    public void verifyToken(String token) {
+    /**
+     * Verifica firma e scadenza con un'unica analisi del token e ne restituisce i claims
+     */
+    public Claims verifyToken(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(Keys.hmacShaKeyFor(secret.getBytes()))
-                    .build()
-                    .parseSignedClaims(token);
+            return parser.parseSignedClaims(token).getPayload();
         } catch (Exception ex) {
             log.error("Errore nella verifica del token: {}", ex.getMessage());
             throw new UnauthorizedOperationException("Token non valido o scaduto");
@@ -40,16 +55,6 @@ public class JWTTools {
     }
 
     public String extractSubject(String token) {
-        try {
-            return Jwts.parser()
-                    .verifyWith(Keys.hmacShaKeyFor(secret.getBytes()))
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload()
-                    .getSubject();
-        } catch (Exception ex) {
-            log.error("Errore nell'estrazione del subject: {}", ex.getMessage());
-            throw new UnauthorizedOperationException("Errore nell'elaborazione del token");
-        }
+        return verifyToken(token).getSubject();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,180 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Corrispondenze precalcolate tra le scale di voto di tutte le coppie di paesi.
+ * Ogni coppia è una funzione lineare a tratti (nodi in due array di double), ottenuta componendo la scala
+ * di origine con l'inversa di quella di destinazione; la conversione di un voto è una ricerca binaria.
+ * <p>
+ * Immutabile: with/without producono una nuova matrice ricalcolando solo la riga e la colonna del paese
+ * modificato e riutilizzando tutte le altre corrispondenze.
+ */
+public final class MatriceEquivalenze {
+
+    public static final MatriceEquivalenze EMPTY = new MatriceEquivalenze(new long[0], new ScalaVoto[0], new Mappatura[0]);
+
+    private final long[] ids;
+    private final ScalaVoto[] scale;
+    // coppie[i * n + j]: da ids[i] a ids[j]; null se una delle due scale non è numerica
+    private final Mappatura[] coppie;
+
+    private MatriceEquivalenze(long[] ids, ScalaVoto[] scale, Mappatura[] coppie) {
+        this.ids = ids;
+        this.scale = scale;
+        this.coppie = coppie;
+    }
+
+    public static MatriceEquivalenze of(Map<Long, ScalaVoto> scalePerPaese) {
+        long[] ids = scalePerPaese.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+        int n = ids.length;
+        ScalaVoto[] scale = new ScalaVoto[n];
+        for (int i = 0; i < n; i++) {
+            scale[i] = scalePerPaese.get(ids[i]);
+        }
+        Mappatura[] coppie = new Mappatura[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                coppie[i * n + j] = Mappatura.tra(scale[i], scale[j]);
+            }
+        }
+        return new MatriceEquivalenze(ids, scale, coppie);
+    }
+
+    public MatriceEquivalenze with(long paeseId, ScalaVoto scala) {
+        int pos = Arrays.binarySearch(ids, paeseId);
+        if (pos >= 0) {
+            ScalaVoto[] nuoveScale = scale.clone();
+            nuoveScale[pos] = scala;
+            return ricalcola(ids, nuoveScale, coppie, ids.length, pos, -1);
+        }
+
+        int inserimento = -pos - 1;
+        int n = ids.length + 1;
+        long[] nuoviIds = new long[n];
+        ScalaVoto[] nuoveScale = new ScalaVoto[n];
+        for (int i = 0, vecchio = 0; i < n; i++) {
+            if (i == inserimento) {
+                nuoviIds[i] = paeseId;
+                nuoveScale[i] = scala;
+            } else {
+                nuoviIds[i] = ids[vecchio];
+                nuoveScale[i] = scale[vecchio++];
+            }
+        }
+        return ricalcola(nuoviIds, nuoveScale, coppie, ids.length, inserimento, inserimento);
+    }
+
+    public MatriceEquivalenze without(long paeseId) {
+        int pos = Arrays.binarySearch(ids, paeseId);
+        if (pos < 0) return this;
+
+        int n = ids.length - 1;
+        long[] nuoviIds = new long[n];
+        ScalaVoto[] nuoveScale = new ScalaVoto[n];
+        Mappatura[] nuoveCoppie = new Mappatura[n * n];
+        for (int i = 0; i < n; i++) {
+            int vi = i < pos ? i : i + 1;
+            nuoviIds[i] = ids[vi];
+            nuoveScale[i] = scale[vi];
+            for (int j = 0; j < n; j++) {
+                int vj = j < pos ? j : j + 1;
+                nuoveCoppie[i * n + j] = coppie[vi * ids.length + vj];
+            }
+        }
+        return new MatriceEquivalenze(nuoviIds, nuoveScale, nuoveCoppie);
+    }
+
+    /**
+     * Copia le corrispondenze esistenti e ricalcola riga e colonna dell'indice modificato.
+     * inserito è l'indice appena aggiunto (le vecchie righe dopo di lui slittano di uno), -1 per una sostituzione.
+     */
+    private static MatriceEquivalenze ricalcola(long[] ids, ScalaVoto[] scale, Mappatura[] vecchieCoppie,
+                                                int vecchiaDimensione, int modificato, int inserito) {
+        int n = ids.length;
+        Mappatura[] coppie = new Mappatura[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i == modificato || j == modificato) {
+                    coppie[i * n + j] = Mappatura.tra(scale[i], scale[j]);
+                } else {
+                    int vi = inserito >= 0 && i > inserito ? i - 1 : i;
+                    int vj = inserito >= 0 && j > inserito ? j - 1 : j;
+                    coppie[i * n + j] = vecchieCoppie[vi * vecchiaDimensione + vj];
+                }
+            }
+        }
+        return new MatriceEquivalenze(ids, scale, coppie);
+    }
+
+    public boolean contiene(long paeseId) {
+        return Arrays.binarySearch(ids, paeseId) >= 0;
+    }
+
+    /**
+     * Scala del paese, null se il paese non c'è o il suo sistema non è numerico
+     */
+    public ScalaVoto scala(long paeseId) {
+        int pos = Arrays.binarySearch(ids, paeseId);
+        return pos < 0 ? null : scale[pos];
+    }
+
+    public Mappatura mappatura(long origine, long destinazione) {
+        int i = Arrays.binarySearch(ids, origine);
+        int j = Arrays.binarySearch(ids, destinazione);
+        if (i < 0 || j < 0) return null;
+        return coppie[i * ids.length + j];
+    }
+
+    public int dimensione() {
+        return ids.length;
+    }
+
+    /**
+     * Corrispondenza tra due scale: da[] è crescente, a[] è il voto equivalente in ciascun nodo
+     */
+    public record Mappatura(double[] da, double[] a) {
+
+        static Mappatura tra(ScalaVoto origine, ScalaVoto destinazione) {
+            if (origine == null || destinazione == null) return null;
+
+            // Nodi nella posizione comune: quelli di entrambe le scale
+            double[] posizioni = unisci(origine.posizioni(), destinazione.posizioni());
+            int n = posizioni.length;
+            double[] da = new double[n];
+            double[] a = new double[n];
+            for (int k = 0; k < n; k++) {
+                da[k] = origine.voto(posizioni[k]);
+                a[k] = destinazione.voto(posizioni[k]);
+            }
+            if (!origine.isCrescente()) {
+                inverti(da);
+                inverti(a);
+            }
+            return new Mappatura(da, a);
+        }
+
+        public double converti(double voto) {
+            return ScalaVoto.interpola(da, a, voto);
+        }
+
+        private static double[] unisci(double[] x, double[] y) {
+            double[] risultato = new double[x.length + y.length];
+            int i = 0, j = 0, n = 0;
+            while (i < x.length || j < y.length) {
+                double valore = j >= y.length || (i < x.length && x[i] <= y[j]) ? x[i++] : y[j++];
+                if (n == 0 || valore > risultato[n - 1]) risultato[n++] = valore;
+            }
+            return Arrays.copyOf(risultato, n);
+        }
+
+        private static void inverti(double[] valori) {
+            for (int i = 0, j = valori.length - 1; i < j; i++, j--) {
+                double tmp = valori[i];
+                valori[i] = valori[j];
+                valori[j] = tmp;
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Risolve il nome di un paese scritto dall'utente (nome ufficiale, alias in italiano,
+ * inglese o lingua locale, con piccoli errori di battitura) nell'id del paese.
+ * Immutabile: viene ricostruito insieme allo snapshot del catalogo.
+ */
+public final class NomePaeseResolver {
+
+    private final Map<Long, String> nomi;
+    private final Map<String, List<String>> alias;
+    private final Map<String, Long> esatti;
+    private final BkTree albero;
+
+    private NomePaeseResolver(Map<Long, String> nomi, Map<String, List<String>> alias) {
+        this.nomi = nomi;
+        this.alias = alias;
+        this.esatti = new HashMap<>();
+        this.albero = new BkTree();
+
+        nomi.forEach((id, nome) -> registra(NomeSearchIndex.normalizza(nome), id));
+        nomi.forEach((id, nome) -> alias.getOrDefault(NomeSearchIndex.normalizza(nome), List.of())
+                .forEach(a -> registra(a, id)));
+    }
+
+    public static NomePaeseResolver of(Map<Long, String> nomi, Map<String, List<String>> alias) {
+        return new NomePaeseResolver(Map.copyOf(nomi), alias);
+    }
+
+    /**
+     * Legge la tabella degli alias: una riga per paese, nome ufficiale seguito dagli alias separati da ';'.
+     */
+    public static Map<String, List<String>> caricaAlias(InputStream inputStream) throws IOException {
+        Map<String, List<String>> alias = new HashMap<>();
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] valori = line.split(";");
+                if (valori.length < 2) continue;
+                List<String> normalizzati = new ArrayList<>();
+                for (int i = 1; i < valori.length; i++) {
+                    normalizzati.add(NomeSearchIndex.normalizza(valori[i]));
+                }
+                alias.put(NomeSearchIndex.normalizza(valori[0]), List.copyOf(normalizzati));
+            }
+        }
+        return Map.copyOf(alias);
+    }
+
+    public NomePaeseResolver with(long id, String nome) {
+        Map<Long, String> nuoviNomi = new HashMap<>(nomi);
+        nuoviNomi.put(id, nome);
+        return new NomePaeseResolver(Map.copyOf(nuoviNomi), alias);
+    }
+
+    public NomePaeseResolver without(long id) {
+        if (!nomi.containsKey(id)) return this;
+        Map<Long, String> nuoviNomi = new HashMap<>(nomi);
+        nuoviNomi.remove(id);
+        return new NomePaeseResolver(Map.copyOf(nuoviNomi), alias);
+    }
+
+    public OptionalLong risolvi(String testo) {
+        String normalizzato = NomeSearchIndex.normalizza(testo);
+        if (normalizzato.isEmpty()) return OptionalLong.empty();
+
+        Long esatto = esatti.get(normalizzato);
+        if (esatto != null) return OptionalLong.of(esatto);
+
+        long vicino = albero.nearest(normalizzato, distanzaMassima(normalizzato));
+        return vicino < 0 ? OptionalLong.empty() : OptionalLong.of(vicino);
+    }
+
+    // Più il testo è corto, meno errori sono ammessi: "US" non deve diventare "USA" per caso
+    private static int distanzaMassima(String testo) {
+        if (testo.length() <= 3) return 0;
+        if (testo.length() <= 5) return 1;
+        return 2;
+    }
+
+    private void registra(String chiave, long id) {
+        if (esatti.putIfAbsent(chiave, id) == null) {
+            albero.add(chiave, id);
+        }
+    }
+}
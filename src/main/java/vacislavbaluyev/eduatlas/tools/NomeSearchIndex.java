@@ -0,0 +1,234 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Indice immutabile per l'autocompletamento dei nomi dei paesi.
+ * I nomi vengono normalizzati (minuscole, senza accenti) e indicizzati per trigrammi e per prefisso
+ * del nome e di ogni sua parola. with/without restituiscono un nuovo indice che condivide
+ * tutte le liste non toccate dal paese inserito o rimosso.
+ */
+public final class NomeSearchIndex {
+
+    public static final NomeSearchIndex EMPTY = new NomeSearchIndex(Map.of(), Map.of(), new String[0], new long[0]);
+
+    private static final int RANK_ESATTO = 0;
+    private static final int RANK_PREFISSO_NOME = 1;
+    private static final int RANK_PREFISSO_PAROLA = 2;
+    private static final int RANK_CONTENUTO = 3;
+
+    private final Map<Long, String> nomi;
+    private final Map<String, long[]> trigrammi;
+    // Parole (e nomi completi) normalizzate in ordine alfabetico, con l'id del paese a cui appartengono
+    private final String[] parole;
+    private final long[] idParole;
+
+    private NomeSearchIndex(Map<Long, String> nomi, Map<String, long[]> trigrammi, String[] parole, long[] idParole) {
+        this.nomi = nomi;
+        this.trigrammi = trigrammi;
+        this.parole = parole;
+        this.idParole = idParole;
+    }
+
+    public static String normalizza(String testo) {
+        if (testo == null) return "";
+        String decomposto = Normalizer.normalize(testo.trim(), Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(decomposto.length());
+        for (int i = 0; i < decomposto.length(); i++) {
+            char c = decomposto.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            switch (c) {
+                case 'ß' -> sb.append("ss");
+                case 'ø', 'Ø' -> sb.append('o');
+                case 'æ', 'Æ' -> sb.append("ae");
+                case 'đ', 'Đ' -> sb.append('d');
+                case 'ł', 'Ł' -> sb.append('l');
+                default -> sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Costruisce l'indice per tutti i nomi in un solo passaggio (caricamento completo del catalogo)
+     */
+    public static NomeSearchIndex of(Map<Long, String> nomiPerId) {
+        Map<Long, String> nomi = new HashMap<>(nomiPerId.size() * 2);
+        Map<String, List<Long>> perTrigramma = new HashMap<>();
+        List<String> paroleNonOrdinate = new ArrayList<>();
+        List<Long> idNonOrdinati = new ArrayList<>();
+
+        nomiPerId.forEach((id, nome) -> {
+            String normalizzato = normalizza(nome);
+            nomi.put(id, normalizzato);
+            for (String trigramma : trigrammi(normalizzato)) {
+                perTrigramma.computeIfAbsent(trigramma, t -> new ArrayList<>()).add(id);
+            }
+            for (String parola : paroleDi(normalizzato)) {
+                paroleNonOrdinate.add(parola);
+                idNonOrdinati.add(id);
+            }
+        });
+
+        Map<String, long[]> trigrammi = new HashMap<>(perTrigramma.size() * 2);
+        perTrigramma.forEach((trigramma, ids) -> trigrammi.put(trigramma, SortedIds.of(ids)));
+
+        // Stesso ordine mantenuto da with: parola, poi id
+        Integer[] ordine = new Integer[paroleNonOrdinate.size()];
+        for (int i = 0; i < ordine.length; i++) ordine[i] = i;
+        Arrays.sort(ordine, Comparator.<Integer, String>comparing(paroleNonOrdinate::get).thenComparing(idNonOrdinati::get));
+        String[] parole = new String[ordine.length];
+        long[] idParole = new long[ordine.length];
+        for (int i = 0; i < ordine.length; i++) {
+            parole[i] = paroleNonOrdinate.get(ordine[i]);
+            idParole[i] = idNonOrdinati.get(ordine[i]);
+        }
+        return new NomeSearchIndex(nomi, trigrammi, parole, idParole);
+    }
+
+    public NomeSearchIndex with(long id, String nome) {
+        NomeSearchIndex base = nomi.containsKey(id) ? without(id) : this;
+        String normalizzato = normalizza(nome);
+
+        Map<Long, String> nuoviNomi = new HashMap<>(base.nomi);
+        nuoviNomi.put(id, normalizzato);
+
+        Map<String, long[]> nuoviTrigrammi = new HashMap<>(base.trigrammi);
+        for (String trigramma : trigrammi(normalizzato)) {
+            nuoviTrigrammi.put(trigramma, SortedIds.insert(nuoviTrigrammi.getOrDefault(trigramma, SortedIds.EMPTY), id));
+        }
+
+        String[] nuoveParole = base.parole;
+        long[] nuoviIdParole = base.idParole;
+        for (String parola : paroleDi(normalizzato)) {
+            int pos = posizione(nuoveParole, nuoviIdParole, parola, id);
+            String[] p = new String[nuoveParole.length + 1];
+            long[] ids = new long[nuoviIdParole.length + 1];
+            System.arraycopy(nuoveParole, 0, p, 0, pos);
+            System.arraycopy(nuoviIdParole, 0, ids, 0, pos);
+            p[pos] = parola;
+            ids[pos] = id;
+            System.arraycopy(nuoveParole, pos, p, pos + 1, nuoveParole.length - pos);
+            System.arraycopy(nuoviIdParole, pos, ids, pos + 1, nuoviIdParole.length - pos);
+            nuoveParole = p;
+            nuoviIdParole = ids;
+        }
+
+        return new NomeSearchIndex(nuoviNomi, nuoviTrigrammi, nuoveParole, nuoviIdParole);
+    }
+
+    public NomeSearchIndex without(long id) {
+        String normalizzato = nomi.get(id);
+        if (normalizzato == null) return this;
+
+        Map<Long, String> nuoviNomi = new HashMap<>(nomi);
+        nuoviNomi.remove(id);
+
+        Map<String, long[]> nuoviTrigrammi = new HashMap<>(trigrammi);
+        for (String trigramma : trigrammi(normalizzato)) {
+            long[] rimasti = SortedIds.remove(nuoviTrigrammi.getOrDefault(trigramma, SortedIds.EMPTY), id);
+            if (rimasti.length == 0) {
+                nuoviTrigrammi.remove(trigramma);
+            } else {
+                nuoviTrigrammi.put(trigramma, rimasti);
+            }
+        }
+
+        int rimosse = 0;
+        for (long idParola : idParole) {
+            if (idParola == id) rimosse++;
+        }
+        String[] nuoveParole = new String[parole.length - rimosse];
+        long[] nuoviIdParole = new long[idParole.length - rimosse];
+        for (int i = 0, j = 0; i < parole.length; i++) {
+            if (idParole[i] != id) {
+                nuoveParole[j] = parole[i];
+                nuoviIdParole[j++] = idParole[i];
+            }
+        }
+
+        return new NomeSearchIndex(nuoviNomi, nuoviTrigrammi, nuoveParole, nuoviIdParole);
+    }
+
+    /**
+     * Id dei paesi il cui nome contiene la query, ordinati per rilevanza:
+     * nome identico, prefisso del nome, prefisso di una parola, sottostringa.
+     */
+    public long[] cerca(String query, int limite) {
+        String q = normalizza(query);
+        if (q.isEmpty() || limite <= 0) return SortedIds.EMPTY;
+
+        Map<Long, Integer> rank = new HashMap<>();
+
+        // Prefissi: ricerca binaria della prima parola >= q, poi scansione finché il prefisso corrisponde
+        for (int i = primaPosizione(q); i < parole.length && parole[i].startsWith(q); i++) {
+            long id = idParole[i];
+            String nome = nomi.get(id);
+            int r = nome.equals(q) ? RANK_ESATTO : nome.startsWith(q) ? RANK_PREFISSO_NOME : RANK_PREFISSO_PAROLA;
+            rank.merge(id, r, Math::min);
+        }
+
+        // Sottostringhe: candidati dall'intersezione dei trigrammi, verificati sul nome
+        if (q.length() >= 3) {
+            long[] candidati = null;
+            for (String trigramma : trigrammi(q)) {
+                long[] lista = trigrammi.getOrDefault(trigramma, SortedIds.EMPTY);
+                candidati = candidati == null ? lista : SortedIds.intersect(candidati, lista);
+                if (candidati.length == 0) break;
+            }
+            for (long id : candidati) {
+                if (nomi.get(id).contains(q)) rank.putIfAbsent(id, RANK_CONTENUTO);
+            }
+        } else {
+            nomi.forEach((id, nome) -> {
+                if (nome.contains(q)) rank.putIfAbsent(id, RANK_CONTENUTO);
+            });
+        }
+
+        return rank.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue()
+                        .thenComparing(e -> nomi.get(e.getKey())))
+                .limit(limite)
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+    }
+
+    private static Set<String> trigrammi(String testo) {
+        Set<String> risultato = new HashSet<>();
+        for (int i = 0; i + 3 <= testo.length(); i++) {
+            risultato.add(testo.substring(i, i + 3));
+        }
+        return risultato;
+    }
+
+    private static Set<String> paroleDi(String normalizzato) {
+        Set<String> risultato = new LinkedHashSet<>();
+        risultato.add(normalizzato);
+        for (String parola : normalizzato.split("[\\s\\-/()]+")) {
+            if (!parola.isEmpty()) risultato.add(parola);
+        }
+        return risultato;
+    }
+
+    private int primaPosizione(String q) {
+        int lo = 0, hi = parole.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (parole[mid].compareTo(q) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int posizione(String[] parole, long[] ids, String parola, long id) {
+        int lo = 0, hi = parole.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = parole[mid].compareTo(parola);
+            if (cmp < 0 || (cmp == 0 && ids[mid] < id)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,143 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import vacislavbaluyev.eduatlas.entities.TipoVoto;
+
+import java.util.Arrays;
+
+/**
+ * Scala numerica di un paese come funzione lineare a tratti verso una posizione comune 0..5:
+ * 0 è l'estremo peggiore di F, ogni fascia occupa un intervallo di ampiezza 1, 5 è l'estremo migliore di A.
+ * I nodi sono tenuti in due array paralleli ordinati, quindi entrambe le direzioni costano una ricerca binaria.
+ * <p>
+ * I valori sono espressi come "bontà" (il voto, cambiato di segno per le scale in cui un numero
+ * più basso è migliore), così le posizioni crescono sempre insieme ai valori.
+ */
+public final class ScalaVoto {
+
+    private static final int FASCE = TipoVoto.values().length;
+
+    private final double[] posizioni;
+    private final double[] bonta;
+    private final boolean crescente;
+    private final ConvertitoreVoto convertitore;
+
+    private ScalaVoto(double[] posizioni, double[] bonta, boolean crescente, ConvertitoreVoto convertitore) {
+        this.posizioni = posizioni;
+        this.bonta = bonta;
+        this.crescente = crescente;
+        this.convertitore = convertitore;
+    }
+
+    /**
+     * Costruisce la scala dalle fasce del convertitore; restituisce null se il sistema
+     * non ha abbastanza valori numerici (es. solo etichette come in Svezia).
+     */
+    public static ScalaVoto of(ConvertitoreVoto convertitore) {
+        boolean crescente = convertitore.isCrescente();
+        // rango 0 = F ... 4 = A
+        double[] peggiori = new double[FASCE];
+        double[] migliori = new double[FASCE];
+        for (TipoVoto tipo : TipoVoto.values()) {
+            int rango = FASCE - 1 - tipo.ordinal();
+            double min = bonta(convertitore.minimo(tipo), crescente);
+            double max = bonta(convertitore.massimo(tipo), crescente);
+            peggiori[rango] = crescente ? min : max;
+            migliori[rango] = crescente ? max : min;
+        }
+
+        double[] p = new double[FASCE + 1];
+        double[] b = new double[FASCE + 1];
+        int n = 0;
+        for (int confine = 1; confine < FASCE; confine++) {
+            double valore = media(migliori[confine - 1], peggiori[confine]);
+            if (Double.isNaN(valore) || (n > 0 && valore <= b[n - 1])) continue;
+            p[n] = confine;
+            b[n] = valore;
+            n++;
+        }
+        if (n < 2) return null;
+
+        // Estremi: il voto peggiore di F e il migliore di A, oppure un'estrapolazione con la pendenza media
+        double pendenza = (b[n - 1] - b[0]) / (p[n - 1] - p[0]);
+        double inizio = peggiori[0];
+        if (!finito(inizio) || inizio >= b[0]) inizio = b[0] - pendenza * p[0];
+        double fine = migliori[FASCE - 1];
+        if (!finito(fine) || fine <= b[n - 1]) fine = b[n - 1] + pendenza * (FASCE - p[n - 1]);
+
+        double[] posizioni = new double[n + 2];
+        double[] valori = new double[n + 2];
+        posizioni[0] = 0;
+        valori[0] = inizio;
+        System.arraycopy(p, 0, posizioni, 1, n);
+        System.arraycopy(b, 0, valori, 1, n);
+        posizioni[n + 1] = FASCE;
+        valori[n + 1] = fine;
+        return new ScalaVoto(posizioni, valori, crescente, convertitore);
+    }
+
+    /**
+     * Posizione comune di un voto; i voti oltre gli estremi della scala vengono limitati agli estremi
+     */
+    public double posizione(double voto) {
+        return interpola(bonta, posizioni, bonta(voto, crescente));
+    }
+
+    public double voto(double posizione) {
+        return bonta(interpola(posizioni, bonta, posizione), crescente);
+    }
+
+    /**
+     * Posizione di un voto espresso come testo: numerico se possibile, altrimenti il centro della fascia
+     * riconosciuta dal convertitore (es. "B" in Malta). NaN se il voto non è riconoscibile.
+     */
+    public double posizione(String voto) {
+        double numero = ConvertitoreVoto.parseNumero(voto, 0, voto.length());
+        if (!Double.isNaN(numero)) return posizione(numero);
+        TipoVoto tipo = convertitore.classifica(voto);
+        return tipo == null ? Double.NaN : FASCE - 1 - tipo.ordinal() + 0.5;
+    }
+
+    public TipoVoto tipoVoto(double posizione) {
+        int rango = (int) Math.min(FASCE - 1, Math.max(0, Math.floor(posizione)));
+        return TipoVoto.values()[FASCE - 1 - rango];
+    }
+
+    public boolean isCrescente() {
+        return crescente;
+    }
+
+    double[] posizioni() {
+        return posizioni;
+    }
+
+    /**
+     * Interpolazione lineare di y in x, con x ordinato in modo crescente
+     */
+    static double interpola(double[] x, double[] y, double valore) {
+        if (valore <= x[0]) return y[0];
+        int ultimo = x.length - 1;
+        if (valore >= x[ultimo]) return y[ultimo];
+        int i = Arrays.binarySearch(x, valore);
+        if (i >= 0) return y[i];
+        int dopo = -i - 1;
+        int prima = dopo - 1;
+        double t = (valore - x[prima]) / (x[dopo] - x[prima]);
+        return y[prima] + t * (y[dopo] - y[prima]);
+    }
+
+    private static double bonta(double voto, boolean crescente) {
+        return crescente ? voto : -voto;
+    }
+
+    private static double media(double a, double b) {
+        boolean finitoA = finito(a), finitoB = finito(b);
+        if (finitoA && finitoB) return (a + b) / 2;
+        if (finitoA) return a;
+        if (finitoB) return b;
+        return Double.NaN;
+    }
+
+    private static boolean finito(double valore) {
+        return !Double.isNaN(valore) && !Double.isInfinite(valore);
+    }
+}
@@ -0,0 +1,244 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+import vacislavbaluyev.eduatlas.payload.RigaMatriceDTO;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Istantanea binaria della matrice (paese, sistema di valutazione, sistema universitario, titolo di studio),
+ * letta tramite un FileChannel mappato in memoria. Struttura, big-endian:
+ * <pre>
+ * intestazione  magic "EDUS", versione, numero paesi, numero stringhe, CRC32C, byte stringhe
+ * stringhe      (numero stringhe + 1) offset int, poi i byte UTF-8 di tutte le stringhe, allineati a 4
+ * paesi         un record a larghezza fissa di CAMPI int per paese
+ * </pre>
+ * Ogni stringa compare una sola volta nella tabella e i record ne contengono l'indice (-1 per null);
+ * i campi interi valgono Integer.MIN_VALUE quando sono null. Il CRC32C copre l'intero file tranne sé stesso;
+ * indici di stringa e di scala fuori intervallo vengono segnalati con IOException alla lettura della riga.
+ */
+public final class SnapshotMatrice {
+
+    // 2: il checksum copre anche l'intestazione
+    public static final int VERSIONE = 2;
+
+    private static final int MAGIC = 0x45445553; // "EDUS"
+    private static final int DIMENSIONE_INTESTAZIONE = 24;
+    private static final int POSIZIONE_CRC = 16;
+    private static final int CAMPI = 12;
+    private static final int DIMENSIONE_RECORD = CAMPI * Integer.BYTES;
+    private static final int NULLO = -1;
+    private static final int INTERO_NULLO = Integer.MIN_VALUE;
+    private static final TipoScala[] SCALE = TipoScala.values();
+
+    private final ByteBuffer buffer;
+    private final int paesi;
+    private final int offsetTabella;
+    private final int offsetStringhe;
+    private final int offsetRecord;
+    private final String[] stringhe;
+
+    private SnapshotMatrice(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < DIMENSIONE_INTESTAZIONE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Snapshot non valido: intestazione mancante");
+        }
+        int versione = buffer.getInt(4);
+        if (versione != VERSIONE) {
+            throw new IOException("Versione dello snapshot non supportata: " + versione);
+        }
+        this.buffer = buffer;
+        this.paesi = buffer.getInt(8);
+        int numeroStringhe = buffer.getInt(12);
+        int byteStringhe = buffer.getInt(20);
+        this.offsetTabella = DIMENSIONE_INTESTAZIONE;
+        this.offsetStringhe = offsetTabella + (numeroStringhe + 1) * Integer.BYTES;
+        this.offsetRecord = allinea(offsetStringhe + byteStringhe);
+        if (paesi < 0 || numeroStringhe < 0 || byteStringhe < 0
+                || (long) offsetTabella + ((long) numeroStringhe + 1) * Integer.BYTES + byteStringhe > buffer.limit()
+                || (long) offsetRecord + (long) paesi * DIMENSIONE_RECORD != buffer.limit()) {
+            throw new IOException("Snapshot non valido: dimensione inattesa");
+        }
+        if (checksum(buffer) != buffer.getInt(POSIZIONE_CRC)) {
+            throw new IOException("Snapshot non valido: checksum errato");
+        }
+        // Gli offset delimitano le stringhe: devono partire da 0, crescere e fermarsi alla fine dei byte
+        int precedente = 0;
+        for (int i = 0; i <= numeroStringhe; i++) {
+            int offset = buffer.getInt(offsetTabella + i * Integer.BYTES);
+            if ((i == 0 && offset != 0) || offset < precedente || offset > byteStringhe) {
+                throw new IOException("Snapshot non valido: offset della stringa " + i + " fuori intervallo");
+            }
+            precedente = offset;
+        }
+        if (precedente != byteStringhe) {
+            throw new IOException("Snapshot non valido: la tabella delle stringhe non copre i byte dichiarati");
+        }
+        this.stringhe = new String[numeroStringhe];
+    }
+
+    /**
+     * Mappa il file in sola lettura e ne verifica intestazione e checksum
+     */
+    public static SnapshotMatrice apri(Path file) throws IOException {
+        try (FileChannel canale = FileChannel.open(file, StandardOpenOption.READ)) {
+            // La mappatura resta valida anche dopo la chiusura del canale
+            MappedByteBuffer mappato = canale.map(FileChannel.MapMode.READ_ONLY, 0, canale.size());
+            return new SnapshotMatrice(mappato);
+        }
+    }
+
+    public static SnapshotMatrice di(ByteBuffer buffer) throws IOException {
+        return new SnapshotMatrice(buffer.duplicate());
+    }
+
+    /**
+     * Serializza le righe; i numeri di riga non vengono conservati (in lettura valgono la posizione + 1)
+     */
+    public static ByteBuffer scrivi(Collection<RigaMatriceDTO> righe) {
+        Map<String, Integer> indici = new HashMap<>();
+        List<String> ordine = new ArrayList<>();
+        int[] record = new int[righe.size() * CAMPI];
+        int posizione = 0;
+        for (RigaMatriceDTO riga : righe) {
+            record[posizione++] = indice(riga.nome(), indici, ordine);
+            record[posizione++] = intero(riga.anniScuolaObbligatoria());
+            record[posizione++] = indice(riga.votoA(), indici, ordine);
+            record[posizione++] = indice(riga.votoB(), indici, ordine);
+            record[posizione++] = indice(riga.votoC(), indici, ordine);
+            record[posizione++] = indice(riga.votoDE(), indici, ordine);
+            record[posizione++] = indice(riga.votoF(), indici, ordine);
+            record[posizione++] = riga.scalaTipo() == null ? NULLO : riga.scalaTipo().ordinal();
+            record[posizione++] = intero(riga.durataBaseAnni());
+            record[posizione++] = intero(riga.creditiPerAnno());
+            record[posizione++] = indice(riga.livelloEQF(), indici, ordine);
+            record[posizione++] = indice(riga.denominazione(), indici, ordine);
+        }
+
+        byte[][] codificate = new byte[ordine.size()][];
+        int byteStringhe = 0;
+        for (int i = 0; i < codificate.length; i++) {
+            codificate[i] = ordine.get(i).getBytes(StandardCharsets.UTF_8);
+            byteStringhe += codificate[i].length;
+        }
+        int offsetStringhe = DIMENSIONE_INTESTAZIONE + (codificate.length + 1) * Integer.BYTES;
+        int offsetRecord = allinea(offsetStringhe + byteStringhe);
+
+        ByteBuffer buffer = ByteBuffer.allocate(offsetRecord + record.length * Integer.BYTES);
+        buffer.putInt(MAGIC).putInt(VERSIONE).putInt(righe.size()).putInt(codificate.length).putInt(0).putInt(byteStringhe);
+        int inizio = 0;
+        for (byte[] stringa : codificate) {
+            buffer.putInt(inizio);
+            inizio += stringa.length;
+        }
+        buffer.putInt(inizio);
+        for (byte[] stringa : codificate) {
+            buffer.put(stringa);
+        }
+        buffer.position(offsetRecord);
+        buffer.asIntBuffer().put(record);
+
+        buffer.putInt(POSIZIONE_CRC, checksum(buffer));
+        return buffer.clear();
+    }
+
+    public int dimensione() {
+        return paesi;
+    }
+
+    public RigaMatriceDTO riga(int indice) throws IOException {
+        Objects.checkIndex(indice, paesi);
+        int base = offsetRecord + indice * DIMENSIONE_RECORD;
+        int scala = campo(base, 7);
+        if (scala < NULLO || scala >= SCALE.length) {
+            throw new IOException("Snapshot non valido: tipo di scala " + scala + " sconosciuto al paese " + (indice + 1));
+        }
+        return new RigaMatriceDTO(
+                indice + 1,
+                stringa(campo(base, 0)),
+                intero(campo(base, 1)),
+                stringa(campo(base, 2)),
+                stringa(campo(base, 3)),
+                stringa(campo(base, 4)),
+                stringa(campo(base, 5)),
+                stringa(campo(base, 6)),
+                scala == NULLO ? null : SCALE[scala],
+                intero(campo(base, 8)),
+                intero(campo(base, 9)),
+                stringa(campo(base, 10)),
+                stringa(campo(base, 11)));
+    }
+
+    /**
+     * Consegna tutte le righe nell'ordine del file; restituisce il numero di righe
+     */
+    public int leggi(Consumer<RigaMatriceDTO> destinazione) throws IOException {
+        for (int i = 0; i < paesi; i++) {
+            destinazione.accept(riga(i));
+        }
+        return paesi;
+    }
+
+    private int campo(int base, int campo) {
+        return buffer.getInt(base + campo * Integer.BYTES);
+    }
+
+    // Le stringhe si ripetono molto (voti, livelli EQF): ognuna viene decodificata una sola volta
+    private String stringa(int indice) throws IOException {
+        if (indice == NULLO) return null;
+        if (indice < 0 || indice >= stringhe.length) {
+            throw new IOException("Snapshot non valido: indice di stringa " + indice + " fuori intervallo");
+        }
+        String stringa = stringhe[indice];
+        if (stringa == null) {
+            int inizio = buffer.getInt(offsetTabella + indice * Integer.BYTES);
+            int fine = buffer.getInt(offsetTabella + (indice + 1) * Integer.BYTES);
+            byte[] bytes = new byte[fine - inizio];
+            buffer.get(offsetStringhe + inizio, bytes);
+            stringa = new String(bytes, StandardCharsets.UTF_8);
+            stringhe[indice] = stringa;
+        }
+        return stringa;
+    }
+
+    // Intestazione senza il campo del checksum, seguita dal resto del file
+    private static int checksum(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, POSIZIONE_CRC));
+        crc.update(buffer.slice(POSIZIONE_CRC + Integer.BYTES, buffer.limit() - POSIZIONE_CRC - Integer.BYTES));
+        return (int) crc.getValue();
+    }
+
+    private static int indice(String valore, Map<String, Integer> indici, List<String> ordine) {
+        if (valore == null) return NULLO;
+        return indici.computeIfAbsent(valore, v -> {
+            ordine.add(v);
+            return ordine.size() - 1;
+        });
+    }
+
+    private static int intero(Integer valore) {
+        return valore == null ? INTERO_NULLO : valore;
+    }
+
+    private static Integer intero(int valore) {
+        return valore == INTERO_NULLO ? null : valore;
+    }
+
+    private static int allinea(int offset) {
+        return (offset + Integer.BYTES - 1) & -Integer.BYTES;
+    }
+}
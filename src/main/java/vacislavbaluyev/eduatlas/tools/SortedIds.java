@@ -0,0 +1,90 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Operazioni su array di id ordinati in modo crescente e senza duplicati.
+ * Gli array in ingresso non vengono mai modificati: ogni operazione restituisce una copia.
+ */
+public final class SortedIds {
+
+    public static final long[] EMPTY = new long[0];
+
+    private SortedIds() {
+    }
+
+    /**
+     * Array ordinato e senza duplicati a partire da una collezione qualsiasi di id
+     */
+    public static long[] of(Collection<Long> ids) {
+        long[] ordinati = ids.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+        return ordinati.length == 0 ? EMPTY : ordinati;
+    }
+
+    /**
+     * Posizione del primo id strettamente maggiore di id (ids.length se non ce ne sono)
+     */
+    public static int primoDopo(long[] ids, long id) {
+        int pos = Arrays.binarySearch(ids, id);
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+
+    public static long[] insert(long[] ids, long id) {
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos >= 0) return ids;
+        pos = -pos - 1;
+        long[] risultato = new long[ids.length + 1];
+        System.arraycopy(ids, 0, risultato, 0, pos);
+        risultato[pos] = id;
+        System.arraycopy(ids, pos, risultato, pos + 1, ids.length - pos);
+        return risultato;
+    }
+
+    public static long[] remove(long[] ids, long id) {
+        int pos = Arrays.binarySearch(ids, id);
+        if (pos < 0) return ids;
+        if (ids.length == 1) return EMPTY;
+        long[] risultato = new long[ids.length - 1];
+        System.arraycopy(ids, 0, risultato, 0, pos);
+        System.arraycopy(ids, pos + 1, risultato, pos, ids.length - pos - 1);
+        return risultato;
+    }
+
+    public static long[] intersect(long[] a, long[] b) {
+        long[] risultato = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                risultato[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == risultato.length ? risultato : Arrays.copyOf(risultato, n);
+    }
+
+    public static long[] union(long[] a, long[] b) {
+        if (a.length == 0) return b;
+        if (b.length == 0) return a;
+        long[] risultato = new long[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                risultato[n++] = a[i++];
+            } else if (a[i] > b[j]) {
+                risultato[n++] = b[j++];
+            } else {
+                risultato[n++] = a[i++];
+                j++;
+            }
+        }
+        while (i < a.length) risultato[n++] = a[i++];
+        while (j < b.length) risultato[n++] = b[j++];
+        return n == risultato.length ? risultato : Arrays.copyOf(risultato, n);
+    }
+}
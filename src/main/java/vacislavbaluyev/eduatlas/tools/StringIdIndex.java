@@ -0,0 +1,56 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Indice immutabile chiave testuale → id ordinati, aggiornato copy-on-write come IntIdIndex.
+ */
+public final class StringIdIndex {
+
+    public static final StringIdIndex EMPTY = new StringIdIndex(Map.of());
+
+    private final Map<String, long[]> ids;
+
+    private StringIdIndex(Map<String, long[]> ids) {
+        this.ids = ids;
+    }
+
+    public static StringIdIndex of(Map<String, ? extends Collection<Long>> idPerChiave) {
+        Map<String, long[]> ids = new HashMap<>(idPerChiave.size() * 2);
+        idPerChiave.forEach((chiave, lista) -> ids.put(chiave, SortedIds.of(lista)));
+        return new StringIdIndex(ids);
+    }
+
+    public long[] get(String chiave) {
+        if (chiave == null) return SortedIds.EMPTY;
+        return ids.getOrDefault(chiave, SortedIds.EMPTY);
+    }
+
+    public StringIdIndex with(String chiave, long id) {
+        long[] attuali = get(chiave);
+        long[] aggiornati = SortedIds.insert(attuali, id);
+        if (aggiornati == attuali) return this;
+        Map<String, long[]> copia = new HashMap<>(ids);
+        copia.put(chiave, aggiornati);
+        return new StringIdIndex(copia);
+    }
+
+    public StringIdIndex without(String chiave, long id) {
+        long[] attuali = get(chiave);
+        long[] aggiornati = SortedIds.remove(attuali, id);
+        if (aggiornati == attuali) return this;
+        Map<String, long[]> copia = new HashMap<>(ids);
+        if (aggiornati.length == 0) {
+            copia.remove(chiave);
+        } else {
+            copia.put(chiave, aggiornati);
+        }
+        return new StringIdIndex(copia);
+    }
+
+    public Iterable<String> chiavi() {
+        return ids.keySet();
+    }
+}
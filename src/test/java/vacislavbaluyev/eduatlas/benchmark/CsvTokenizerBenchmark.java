@@ -0,0 +1,97 @@
+package vacislavbaluyev.eduatlas.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import vacislavbaluyev.eduatlas.service.CsvImportService;
+import vacislavbaluyev.eduatlas.tools.CsvTokenizer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Confronta la suddivisione con regex usata in precedenza (split con lookahead, cleanValue e replaceAll
+ * sui campi numerici) con il CsvTokenizer, su una matrice sintetica di 100k righe.
+ * Il terzo benchmark misura la lettura completa tramite CsvImportService.leggiRighe.
+ * Si esegue dal classpath di test tramite il metodo main.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvTokenizerBenchmark {
+
+    private static final int RIGHE = 100_000;
+    private static final int COLONNE = 19;
+
+    private String[] linee;
+    private byte[] file;
+    private CsvImportService csvImportService;
+
+    @Setup
+    public void setUp() {
+        linee = new String[RIGHE];
+        StringBuilder csv = new StringBuilder("NOME;ANNI\n;;1;2;3\n");
+        for (int i = 0; i < RIGHE; i++) {
+            linee[i] = "Paese " + i + ";12|13*;1;2;" + (3 + i % 2) + ";4*;;60;60;60;60*;;17-20;15.16.9;13-14.9;10-12.9;>10;6;"
+                    + "\"Bachelor; \"\"Kunsten\"\" " + i + "\t\";;;;";
+            csv.append(linee[i]).append('\n');
+        }
+        file = csv.toString().getBytes(StandardCharsets.UTF_8);
+        csvImportService = new CsvImportService(null, null);
+    }
+
+    @Benchmark
+    public void splitRegex(Blackhole bh) {
+        for (String linea : linee) {
+            String[] campi = Arrays.stream(Arrays.copyOf(linea.split(";(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)", -1), COLONNE))
+                    .map(CsvTokenizerBenchmark::cleanValue)
+                    .toArray(String[]::new);
+            bh.consume(campi[0].trim());
+            bh.consume(Integer.parseInt(campi[1].split("\\|")[0].replaceAll("[^0-9]", "")));
+            bh.consume(Integer.parseInt(campi[4].replaceAll("[^0-9]", "")));
+            bh.consume(Integer.parseInt(campi[7].replaceAll("[^0-9]", "")));
+            bh.consume(campi[18].trim());
+        }
+    }
+
+    @Benchmark
+    public void tokenizer(Blackhole bh) {
+        CsvTokenizer campi = new CsvTokenizer(COLONNE);
+        for (String linea : linee) {
+            campi.tokenizza(linea);
+            bh.consume(campi.testo(0));
+            bh.consume(campi.intero(1, '|'));
+            bh.consume(campi.intero(4));
+            bh.consume(campi.intero(7));
+            bh.consume(campi.testo(18));
+        }
+    }
+
+    @Benchmark
+    public int leggiRighe() throws IOException {
+        return csvImportService.leggiRighe(new ByteArrayInputStream(file), riga -> { });
+    }
+
+    private static String cleanValue(String value) {
+        if (value == null) return "";
+        value = value.trim();
+        if (value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        return value.replace("\"\"", "\"");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CsvTokenizerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,100 @@
+package vacislavbaluyev.eduatlas.benchmark;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import vacislavbaluyev.eduatlas.entities.Ruolo;
+import vacislavbaluyev.eduatlas.entities.Utente;
+import vacislavbaluyev.eduatlas.repository.UtenteRepository;
+import vacislavbaluyev.eduatlas.security.JWTAuthFilter;
+import vacislavbaluyev.eduatlas.security.TokenVerificatiCache;
+import vacislavbaluyev.eduatlas.security.VersioniTokenRegistry;
+import vacislavbaluyev.eduatlas.tools.JWTTools;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Costo per richiesta dell'autenticazione: la doppia verifica usata in precedenza (chiave e parser ricreati
+ * a ogni chiamata), la verifica singola con parser condiviso, la cache dei token verificati e il filtro completo
+ * con la cache calda (ruolo e versione vengono dal token, senza query per richiesta).
+ * Si esegue dal classpath di test tramite il metodo main.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JWTAuthFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret-0123456789";
+    private static final FilterChain CATENA = (request, response) -> { };
+    // Creare un MockServletContext per ogni richiesta costerebbe più del filtro stesso
+    private static final MockServletContext SERVLET_CONTEXT = new MockServletContext();
+
+    private JWTTools jwtTools;
+    private TokenVerificatiCache cache;
+    private JWTAuthFilter filtro;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtTools = new JWTTools(SECRET);
+        cache = new TokenVerificatiCache(jwtTools, 10_000);
+        token = jwtTools.generateToken(Utente.builder().username("admin").ruolo(Ruolo.ROOT_ADMIN).build());
+
+        // La versione viene letta una sola volta, poi il filtro non accede più al repository
+        UtenteRepository utenteRepository = mock(UtenteRepository.class);
+        when(utenteRepository.findVersioneTokenByUsername("admin")).thenReturn(Optional.of(0));
+        filtro = new JWTAuthFilter(cache, new VersioniTokenRegistry(utenteRepository, Duration.ofHours(1)));
+    }
+
+    @Benchmark
+    public String doppiaVerifica() {
+        Jwts.parser().verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes())).build().parseSignedClaims(token);
+        return Jwts.parser().verifyWith(Keys.hmacShaKeyFor(SECRET.getBytes())).build()
+                .parseSignedClaims(token).getPayload().getSubject();
+    }
+
+    @Benchmark
+    public String verificaSingola() {
+        return jwtTools.verifyToken(token).getSubject();
+    }
+
+    @Benchmark
+    public String cacheCalda() {
+        return cache.verifica(token).username();
+    }
+
+    @Benchmark
+    public int filtro() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest(SERVLET_CONTEXT, "GET", "/utenti/me");
+        request.setServletPath("/utenti/me");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filtro.doFilter(request, response, CATENA);
+        SecurityContextHolder.clearContext();
+        return response.getStatus();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JWTAuthFilterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
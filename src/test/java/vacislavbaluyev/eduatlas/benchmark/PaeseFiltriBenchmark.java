@@ -0,0 +1,92 @@
+package vacislavbaluyev.eduatlas.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import vacislavbaluyev.eduatlas.EduatlasApplication;
+import vacislavbaluyev.eduatlas.payload.DettaglioPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.FiltroPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaRichiestaDTO;
+import vacislavbaluyev.eduatlas.repository.PaeseRepository;
+import vacislavbaluyev.eduatlas.runner.CsvDataRunner;
+import vacislavbaluyev.eduatlas.service.PaeseService;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Confronta i filtri serviti dagli indici del catalogo con la query JPQL sul repository.
+ * Usa il contesto Spring con il database H2 dei test, popolato dal MATRIXCSV.csv dopo l'avvio.
+ * Si esegue dal classpath di test tramite il metodo main.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaeseFiltriBenchmark {
+
+    private static final PaginaRichiestaDTO PAGINA = PaginaRichiestaDTO.prima(PaginaRichiestaDTO.DIMENSIONE_MASSIMA);
+    private static final FiltroPaeseDTO FILTRO_MULTIPLO = new FiltroPaeseDTO(12, 13, 3, 4, 60, 60, "6");
+
+    private ConfigurableApplicationContext context;
+    private PaeseRepository paeseRepository;
+    private PaeseService paeseService;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(EduatlasApplication.class)
+                .web(WebApplicationType.NONE)
+                .run();
+        // Il popolamento dal CSV avviene in background dopo l'avvio
+        context.getBean(CsvDataRunner.class).completamento().toCompletableFuture().join();
+        paeseRepository = context.getBean(PaeseRepository.class);
+        paeseService = context.getBean(PaeseService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<DettaglioPaeseDTO> repositoryDurataBase() {
+        return paeseRepository.findDettagliByDurataBaseAnni(4);
+    }
+
+    @Benchmark
+    public List<DettaglioPaeseDTO> indiceDurataBase() {
+        return paeseService.getPaesiByDurataBaseAnni(4, PAGINA).contenuto();
+    }
+
+    @Benchmark
+    public List<DettaglioPaeseDTO> repositoryLivelloEQF() {
+        return paeseRepository.findDettagliByLivelloEQF("6");
+    }
+
+    @Benchmark
+    public List<DettaglioPaeseDTO> indiceLivelloEQF() {
+        return paeseService.getPaesiByLivelloEQF("6", PAGINA).contenuto();
+    }
+
+    @Benchmark
+    public List<DettaglioPaeseDTO> indiceIntervalloDurataBase() {
+        return paeseService.getPaesiByDurataBaseAnni(3, 4, PAGINA).contenuto();
+    }
+
+    @Benchmark
+    public List<DettaglioPaeseDTO> indiceMultiCriterio() {
+        return paeseService.filtraPaesi(FILTRO_MULTIPLO, PAGINA).contenuto();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PaeseFiltriBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
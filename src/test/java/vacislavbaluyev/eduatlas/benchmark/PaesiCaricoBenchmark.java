@@ -0,0 +1,131 @@
+package vacislavbaluyev.eduatlas.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import vacislavbaluyev.eduatlas.EduatlasApplication;
+import vacislavbaluyev.eduatlas.repository.UtenteRepository;
+import vacislavbaluyev.eduatlas.runner.CsvDataRunner;
+import vacislavbaluyev.eduatlas.tools.JWTTools;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Prova di carico con 2000 client concorrenti (ognuno su un thread virtuale, richieste in sequenza), prima con il
+ * pool di thread di piattaforma di Tomcat e poi con i thread virtuali. Il bersaglio è GET /admin (pagina keyset
+ * degli utenti, autenticata come admin root), che esegue una query per richiesta: GET /paesi è servito dal
+ * catalogo in memoria e non misurerebbe il limite di 20 connessioni. Per ogni modalità riporta richieste al
+ * secondo, le risposte 503 (SQLTransientConnectionException: con i thread virtuali nessun permesso del
+ * DataSourceLimitato entro eduatlas.db.attesa-massima, con quelli di piattaforma nessuna connessione entro il
+ * connection-timeout di Hikari) con la loro percentuale, gli altri errori e le latenze p50/p99 delle risposte 200.
+ * Usa il pool di produzione (20 connessioni) e, salvo -Dspring.datasource.url=..., il database H2 in memoria dei
+ * test: le sue query non attendono I/O, quindi su una macchina con poche CPU il limite è la CPU e i permessi si
+ * esauriscono solo contro un PostgreSQL reale.
+ * Si esegue dal classpath di test tramite il metodo main; argomenti opzionali: client, secondi di misura,
+ * attesa massima di una connessione (es. 5s, il valore di produzione, o 50ms per esaurire prima i permessi).
+ * Client e server girano nella stessa JVM e si contendono le stesse CPU: i numeri servono a confrontare le due
+ * modalità sulla stessa macchina, non come latenze di produzione.
+ */
+public class PaesiCaricoBenchmark {
+
+    private static final Duration RISCALDAMENTO = Duration.ofSeconds(5);
+
+    public static void main(String[] args) throws Exception {
+        int client = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Duration misura = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 20);
+        String attesaMassima = args.length > 2 ? args[2] : "5s";
+        for (boolean virtuali : new boolean[]{false, true}) {
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(EduatlasApplication.class)
+                    .properties("server.port=0", "spring.threads.virtual.enabled=" + virtuali,
+                            "spring.datasource.hikari.maximum-pool-size=20",
+                            "eduatlas.db.attesa-massima=" + attesaMassima,
+                            "logging.level.root=WARN")
+                    .run()) {
+                context.getBean(CsvDataRunner.class).completamento().toCompletableFuture().join();
+                int porta = ((WebServerApplicationContext) context).getWebServer().getPort();
+                String token = context.getBean(JWTTools.class).generateToken(
+                        context.getBean(UtenteRepository.class).findByUsername("admin").orElseThrow());
+                HttpRequest richiesta = HttpRequest.newBuilder(URI.create("http://localhost:" + porta + "/admin"))
+                        .header("Authorization", "Bearer " + token)
+                        .timeout(Duration.ofSeconds(60))
+                        .GET()
+                        .build();
+                esegui(richiesta, client, RISCALDAMENTO);
+                Risultato risultato = esegui(richiesta, client, misura);
+                long risposte = risultato.completate() + risultato.rifiutate();
+                System.out.printf("%-22s %,10.0f richieste/s  503 %,d (%.2f%%)  errori %,d  p50 %,d ms  p99 %,d ms%n",
+                        virtuali ? "thread virtuali" : "thread di piattaforma",
+                        risultato.completate() / (double) misura.toSeconds(), risultato.rifiutate(),
+                        risposte == 0 ? 0.0 : 100.0 * risultato.rifiutate() / risposte, risultato.errori(),
+                        risultato.percentile(0.50), risultato.percentile(0.99));
+            }
+        }
+    }
+
+    private record Risultato(long completate, long rifiutate, long errori, long[] latenzeMillis) {
+        long percentile(double p) {
+            return latenzeMillis.length == 0 ? 0 : latenzeMillis[(int) Math.min(latenzeMillis.length - 1, p * latenzeMillis.length)];
+        }
+    }
+
+    private static Risultato esegui(HttpRequest richiesta, int client, Duration durata) throws Exception {
+        HttpClient http = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        long fine = System.nanoTime() + durata.toNanos();
+        AtomicLong rifiutate = new AtomicLong();
+        AtomicLong errori = new AtomicLong();
+        List<Future<long[]>> risultati = new ArrayList<>(client);
+        try (ExecutorService esecutore = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < client; i++) {
+                risultati.add(esecutore.submit(() -> {
+                    long[] latenze = new long[64];
+                    int n = 0;
+                    while (System.nanoTime() < fine) {
+                        long inizio = System.nanoTime();
+                        try {
+                            HttpResponse<Void> risposta = http.send(richiesta, HttpResponse.BodyHandlers.discarding());
+                            if (risposta.statusCode() == 503) {
+                                rifiutate.incrementAndGet();
+                                continue;
+                            }
+                            if (risposta.statusCode() != 200) {
+                                errori.incrementAndGet();
+                                continue;
+                            }
+                        } catch (Exception e) {
+                            errori.incrementAndGet();
+                            continue;
+                        }
+                        if (n == latenze.length) latenze = Arrays.copyOf(latenze, n * 2);
+                        latenze[n++] = (System.nanoTime() - inizio) / 1_000_000;
+                    }
+                    return Arrays.copyOf(latenze, n);
+                }));
+            }
+        }
+        long[] tutte = risultati.stream().map(PaesiCaricoBenchmark::valore).flatMapToLong(Arrays::stream).sorted().toArray();
+        http.close();
+        return new Risultato(tutte.length, rifiutate.get(), errori.get(), tutte);
+    }
+
+    private static long[] valore(Future<long[]> futuro) {
+        try {
+            return futuro.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
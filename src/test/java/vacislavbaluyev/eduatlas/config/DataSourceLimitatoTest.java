@@ -0,0 +1,53 @@
+package vacislavbaluyev.eduatlas.config;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DataSourceLimitatoTest {
+
+    @Test
+    void restituisceIlPermessoUnaSolaVoltaAllaChiusura() throws SQLException {
+        DataSource pool = mock(DataSource.class);
+        Connection prima = mock(Connection.class);
+        when(pool.getConnection()).thenReturn(prima, mock(Connection.class));
+        DataSourceLimitato limitato = new DataSourceLimitato(pool, 1, Duration.ofMillis(50));
+
+        Connection connessione = limitato.getConnection();
+        assertThat(limitato.permessiDisponibili()).isZero();
+        assertThatThrownBy(limitato::getConnection)
+                .isInstanceOf(SQLTransientConnectionException.class)
+                .hasMessageContaining("attesa massima");
+
+        // Tutto ciò che non è close arriva alla connessione del pool
+        connessione.isWrapperFor(Connection.class);
+        verify(prima).isWrapperFor(Connection.class);
+
+        connessione.close();
+        connessione.close();
+        verify(prima, times(2)).close();
+        assertThat(limitato.permessiDisponibili()).isEqualTo(1);
+        assertThat(limitato.getConnection()).isNotNull();
+    }
+
+    @Test
+    void nonTrattieneIlPermessoSeIlPoolFallisce() throws SQLException {
+        DataSource pool = mock(DataSource.class);
+        when(pool.getConnection()).thenThrow(new SQLException("pool esaurito"));
+        DataSourceLimitato limitato = new DataSourceLimitato(pool, 2, Duration.ofMillis(50));
+
+        assertThatThrownBy(limitato::getConnection).hasMessage("pool esaurito");
+        assertThat(limitato.permessiDisponibili()).isEqualTo(2);
+    }
+}
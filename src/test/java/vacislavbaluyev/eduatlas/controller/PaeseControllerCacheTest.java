@@ -0,0 +1,171 @@
+package vacislavbaluyev.eduatlas.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import vacislavbaluyev.eduatlas.entities.VersioneCatalogo;
+import vacislavbaluyev.eduatlas.repository.PaeseRepository;
+import vacislavbaluyev.eduatlas.repository.VersioneCatalogoRepository;
+import vacislavbaluyev.eduatlas.runner.CsvDataRunner;
+import vacislavbaluyev.eduatlas.service.CorpiPaesiCache;
+import vacislavbaluyev.eduatlas.service.CountryCatalogue;
+import vacislavbaluyev.eduatlas.service.ModifichePaesi;
+import vacislavbaluyev.eduatlas.service.PaeseChangedEvent;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class PaeseControllerCacheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private CountryCatalogue countryCatalogue;
+    @Autowired
+    private CsvDataRunner csvDataRunner;
+    @Autowired
+    private PaeseRepository paeseRepository;
+    @Autowired
+    private VersioneCatalogoRepository versioneCatalogoRepository;
+    @Autowired
+    private ModifichePaesi modifichePaesi;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void attendiPopolamento() {
+        csvDataRunner.completamento().toCompletableFuture().join();
+    }
+
+    @Test
+    void rispondeNotModifiedFinchéIlDatasetNonCambia() throws Exception {
+        MvcResult prima = mockMvc.perform(get("/paesi").servletPath("/paesi"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=60, public"))
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn();
+        String etag = prima.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).startsWith("\"").doesNotStartWith("W/");
+
+        mockMvc.perform(get("/paesi/1").servletPath("/paesi/1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        // Ricaricare il catalogo senza scritture (ad esempio un riavvio) non cambia la versione
+        countryCatalogue.ricarica();
+        mockMvc.perform(get("/paesi").servletPath("/paesi").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        CountryCatalogue altraReplica = new CountryCatalogue(paeseRepository, versioneCatalogoRepository);
+        assertThat(altraReplica.versioneDataset()).isEqualTo(countryCatalogue.versioneDataset());
+
+        // Ogni scrittura o importazione incrementa la versione persistita nella propria transazione
+        new TransactionTemplate(transactionManager).executeWithoutResult(
+                stato -> modifichePaesi.registraTutti());
+        mockMvc.perform(get("/paesi").servletPath("/paesi").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(result -> assertThat(result.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(etag));
+    }
+
+    @Test
+    void laVarianteGzipHaLoStessoContenutoEUnEtagDistinto() throws Exception {
+        MvcResult chiaro = mockMvc.perform(get("/paesi").servletPath("/paesi"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(result -> assertThat(result.getResponse().getHeaders(HttpHeaders.VARY)).contains(HttpHeaders.ACCEPT_ENCODING))
+                .andReturn();
+        MvcResult compresso = mockMvc.perform(get("/paesi").servletPath("/paesi")
+                        .header(HttpHeaders.ACCEPT_ENCODING, "br;q=1.0, gzip;q=0.8"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+
+        byte[] json = chiaro.getResponse().getContentAsByteArray();
+        byte[] gzip = compresso.getResponse().getContentAsByteArray();
+        assertThat(gzip.length).isLessThan(json.length);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            assertThat(in.readAllBytes()).isEqualTo(json);
+        }
+        String etag = chiaro.getResponse().getHeader(HttpHeaders.ETAG);
+        String etagGzip = compresso.getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etagGzip).isNotEqualTo(etag).endsWith("-gz\"");
+
+        // Un ETag vale solo per la propria rappresentazione
+        mockMvc.perform(get("/paesi").servletPath("/paesi").header(HttpHeaders.IF_NONE_MATCH, etag)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/paesi").servletPath("/paesi").header(HttpHeaders.IF_NONE_MATCH, etagGzip)
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void unPaeseInesistenteRestituisce404NonRiusabile() throws Exception {
+        mockMvc.perform(get("/paesi/999999").servletPath("/paesi/999999"))
+                .andExpect(status().isNotFound())
+                .andExpect(result -> assertThat(result.getResponse().getHeaders(HttpHeaders.CACHE_CONTROL))
+                        .noneMatch(valore -> valore.contains("public")));
+    }
+
+    @Test
+    void unEventoSuperatoDaAltreScrittureRicaricaIlCatalogo() {
+        CountryCatalogue altraReplica = new CountryCatalogue(paeseRepository, versioneCatalogoRepository);
+        long iniziale = altraReplica.snapshot().versione();
+        Long id = paeseRepository.findAll().getFirst().getId();
+
+        // Due scritture confermate: la replica riceve l'evento della prima quando la seconda è già persistita
+        TransactionTemplate transazione = new TransactionTemplate(transactionManager);
+        transazione.executeWithoutResult(stato -> modifichePaesi.registra(id));
+        transazione.executeWithoutResult(stato -> modifichePaesi.registra(id));
+        VersioneCatalogo persistita = versioneCatalogoRepository.findById(VersioneCatalogo.ID).orElseThrow();
+        assertThat(persistita.getVersione()).isEqualTo(iniziale + 2);
+
+        altraReplica.onPaeseChanged(new PaeseChangedEvent(id, iniziale + 1, persistita.getUltimaModificaMillis()));
+        assertThat(altraReplica.snapshot().versione()).isEqualTo(iniziale + 2);
+        assertThat(altraReplica.versioneDataset()).isEqualTo(countryCatalogue.versioneDataset());
+
+        // L'evento della seconda scrittura è già incluso nel caricamento completo
+        CountryCatalogue.Snapshot ricaricato = altraReplica.snapshot();
+        altraReplica.onPaeseChanged(new PaeseChangedEvent(id, iniziale + 2, persistita.getUltimaModificaMillis()));
+        assertThat(altraReplica.snapshot()).isSameAs(ricaricato);
+    }
+
+    @Test
+    void unaScritturaAnnullataNonCambiaLaVersione() {
+        CountryCatalogue.VersioneDataset prima = countryCatalogue.versioneDataset();
+
+        TransactionTemplate transazione = new TransactionTemplate(transactionManager);
+        transazione.executeWithoutResult(stato -> {
+            modifichePaesi.registraTutti();
+            stato.setRollbackOnly();
+        });
+
+        assertThat(countryCatalogue.versioneDataset()).isEqualTo(prima);
+        assertThat(versioneCatalogoRepository.findById(VersioneCatalogo.ID).orElseThrow().getVersione())
+                .isEqualTo(Long.parseLong(prima.etag().replace("\"", "")));
+    }
+
+    @Test
+    void accettaGzipRispettaIValoriQ() {
+        assertThat(CorpiPaesiCache.accettaGzip(null)).isFalse();
+        assertThat(CorpiPaesiCache.accettaGzip("deflate, br")).isFalse();
+        assertThat(CorpiPaesiCache.accettaGzip("gzip;q=0")).isFalse();
+        assertThat(CorpiPaesiCache.accettaGzip("GZIP")).isTrue();
+        assertThat(CorpiPaesiCache.accettaGzip("identity, *;q=0.5")).isTrue();
+    }
+}
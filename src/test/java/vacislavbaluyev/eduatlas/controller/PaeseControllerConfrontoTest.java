@@ -0,0 +1,96 @@
+package vacislavbaluyev.eduatlas.controller;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import vacislavbaluyev.eduatlas.payload.DettaglioPaeseDTO;
+import vacislavbaluyev.eduatlas.runner.CsvDataRunner;
+import vacislavbaluyev.eduatlas.service.CountryCatalogue;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class PaeseControllerConfrontoTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private CountryCatalogue countryCatalogue;
+    @Autowired
+    private CsvDataRunner csvDataRunner;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private List<String> nomi;
+
+    @BeforeEach
+    void setUp() {
+        csvDataRunner.completamento().toCompletableFuture().join();
+        nomi = countryCatalogue.snapshot().paesi().stream().map(DettaglioPaeseDTO::nome).limit(11).toList();
+        assertThat(nomi).hasSize(11);
+    }
+
+    @Test
+    void confrontaDaDueADieciPaesiNellOrdineDellaRichiesta() throws Exception {
+        confronta(nomi.subList(0, 2))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nome", hasSize(2)))
+                .andExpect(jsonPath("$.nome[0]").value(nomi.get(0)))
+                .andExpect(jsonPath("$.nome[1]").value(nomi.get(1)));
+
+        List<String> dieci = nomi.subList(0, 10).reversed();
+        confronta(dieci)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.nome", hasSize(10)))
+                .andExpect(jsonPath("$.nome[0]").value(dieci.get(0)))
+                .andExpect(jsonPath("$.votoA", hasSize(10)));
+    }
+
+    @Test
+    void unoOPiuDiDieciPaesiRestituiscono400ConIlCorpoDegliErrori() throws Exception {
+        confronta(nomi.subList(0, 1))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Validation failed"))
+                .andExpect(jsonPath("$.details", containsString("Si possono confrontare da 2 a 10 paesi")));
+        confronta(nomi)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Validation failed"));
+    }
+
+    @Test
+    void unNomeSconosciutoRestituisce404() throws Exception {
+        confronta(List.of(nomi.get(0), "Paese inesistente"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void ilConfrontoNonInterrogaIlDatabase() throws Exception {
+        countryCatalogue.snapshot();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        confronta(nomi.subList(0, 10)).andExpect(status().isOk());
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    private ResultActions confronta(List<String> paesi) throws Exception {
+        return mockMvc.perform(get("/paesi/confronta").servletPath("/paesi/confronta")
+                .param("paesi", paesi.toArray(String[]::new)));
+    }
+}
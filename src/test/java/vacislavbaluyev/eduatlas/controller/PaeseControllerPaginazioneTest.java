@@ -0,0 +1,85 @@
+package vacislavbaluyev.eduatlas.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import vacislavbaluyev.eduatlas.payload.PaginaRichiestaDTO;
+import vacislavbaluyev.eduatlas.runner.CsvDataRunner;
+import vacislavbaluyev.eduatlas.service.CountryCatalogue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class PaeseControllerPaginazioneTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private CountryCatalogue countryCatalogue;
+    @Autowired
+    private CsvDataRunner csvDataRunner;
+
+    @BeforeEach
+    void attendiPopolamento() {
+        csvDataRunner.completamento().toCompletableFuture().join();
+    }
+
+    @Test
+    void ilCursoreNellIntestazionePercorreTuttiIPaesi() throws Exception {
+        List<Long> visti = new ArrayList<>();
+        String cursore = null;
+        do {
+            var richiesta = get("/paesi").servletPath("/paesi").param("dimensione", "7");
+            if (cursore != null) richiesta.param("cursore", cursore);
+            MvcResult risultato = mockMvc.perform(richiesta).andExpect(status().isOk()).andReturn();
+
+            JsonNode pagina = objectMapper.readTree(risultato.getResponse().getContentAsByteArray());
+            assertThat(pagina.size()).isBetween(1, 7);
+            pagina.forEach(paese -> visti.add(paese.get("id").asLong()));
+            cursore = risultato.getResponse().getHeader(RispostePaginate.CURSORE_SUCCESSIVO);
+        } while (cursore != null);
+
+        assertThat(visti).isSorted().doesNotHaveDuplicates()
+                .hasSize(countryCatalogue.snapshot().paesi().size());
+    }
+
+    @Test
+    void senzaParametriRestituisceLaPrimaPaginaPredefinita() throws Exception {
+        MvcResult predefinita = mockMvc.perform(get("/paesi").servletPath("/paesi"))
+                .andExpect(status().isOk())
+                .andReturn();
+        MvcResult esplicita = mockMvc.perform(get("/paesi").servletPath("/paesi")
+                        .param("dimensione", String.valueOf(PaginaRichiestaDTO.DIMENSIONE_PREDEFINITA)))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(objectMapper.readTree(predefinita.getResponse().getContentAsByteArray()))
+                .isEqualTo(objectMapper.readTree(esplicita.getResponse().getContentAsByteArray()));
+        assertThat(predefinita.getResponse().getHeader(RispostePaginate.CURSORE_SUCCESSIVO))
+                .isEqualTo(esplicita.getResponse().getHeader(RispostePaginate.CURSORE_SUCCESSIVO));
+    }
+
+    @Test
+    void cursoreODimensioneNonValidiRestituiscono400() throws Exception {
+        mockMvc.perform(get("/paesi").servletPath("/paesi").param("cursore", "non-un-cursore"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/paesi/livello-eqf/6").servletPath("/paesi/livello-eqf/6").param("dimensione", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist(RispostePaginate.CURSORE_SUCCESSIVO));
+    }
+}
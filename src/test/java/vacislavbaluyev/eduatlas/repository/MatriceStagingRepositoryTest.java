@@ -0,0 +1,106 @@
+package vacislavbaluyev.eduatlas.repository;
+
+import org.junit.jupiter.api.Test;
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+import vacislavbaluyev.eduatlas.payload.RigaMatriceDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Codifica delle righe nel formato testo di COPY, che su H2 non viene mai eseguita
+ */
+class MatriceStagingRepositoryTest {
+
+    @Test
+    void unaRigaCompletaDiventaQuattordiciColonneSeparateDaTab() {
+        RigaMatriceDTO riga = new RigaMatriceDTO(7, "Italia", 13, "29-30", "27-28", "24-26", "18-23", ">18",
+                TipoScala.NUMERICO, 3, 60, "6", "Laurea");
+
+        assertThat(copia(riga)).isEqualTo("7\tItalia\t13\t29-30\t27-28\t24-26\t18-23\t>18\tNUMERICO\t3\t60\t6\tLaurea\t"
+                + riga.hashContenuto() + "\n");
+    }
+
+    @Test
+    void iValoriNulliDiventanoBackslashN() {
+        RigaMatriceDTO riga = new RigaMatriceDTO(1, "Atlantide", null, null, null, null, null, null,
+                null, null, null, null, null);
+
+        String testo = copia(riga);
+
+        assertThat(testo).isEqualTo("1\tAtlantide" + "\t\\N".repeat(11) + "\t" + riga.hashContenuto() + "\n");
+        assertThat(colonne(testo)).hasSize(14).filteredOn(c -> c == null).hasSize(11);
+    }
+
+    @Test
+    void tabAcapoEBackslashVengonoProtetti() {
+        RigaMatriceDTO riga = new RigaMatriceDTO(2, "Costa\td'Avorio", 12, "a\\b", "riga\nnuova", "ritorno\r", "\\N",
+                null, TipoScala.LETTERE, null, null, null, "Laurea\\\t\n");
+
+        String testo = copia(riga);
+
+        assertThat(testo).contains("\tCosta\\td'Avorio\t", "\ta\\\\b\t", "\triga\\nnuova\t", "\tritorno\\r\t",
+                "\t\\\\N\t", "\tLaurea\\\\\\t\\n\t");
+        // Una sola riga, un solo terminatore: i separatori nei valori non spezzano il record
+        assertThat(testo.indexOf('\n')).isEqualTo(testo.length() - 1);
+        List<String> colonne = colonne(testo);
+        assertThat(colonne).hasSize(14);
+        assertThat(colonne.get(1)).isEqualTo(riga.nome());
+        assertThat(colonne.get(3)).isEqualTo(riga.votoA());
+        assertThat(colonne.get(4)).isEqualTo(riga.votoB());
+        assertThat(colonne.get(5)).isEqualTo(riga.votoC());
+        // Il testo "\N" è un valore, non NULL
+        assertThat(colonne.get(6)).isEqualTo("\\N");
+        assertThat(colonne.get(7)).isNull();
+        assertThat(colonne.get(12)).isEqualTo(riga.denominazione());
+    }
+
+    @Test
+    void piuRigheVengonoAccodateNelloStessoBuffer() {
+        StringBuilder sb = new StringBuilder();
+        MatriceStagingRepository.rigaCopy(sb, new RigaMatriceDTO(1, "A", 1, null, null, null, null, null,
+                null, null, null, null, null));
+        MatriceStagingRepository.rigaCopy(sb, new RigaMatriceDTO(2, "B", 2, null, null, null, null, null,
+                null, null, null, null, null));
+
+        assertThat(sb.toString().split("\n")).hasSize(2)
+                .satisfiesExactly(r -> assertThat(r).startsWith("1\tA\t1\t"), r -> assertThat(r).startsWith("2\tB\t2\t"));
+    }
+
+    private static String copia(RigaMatriceDTO riga) {
+        StringBuilder sb = new StringBuilder();
+        MatriceStagingRepository.rigaCopy(sb, riga);
+        return sb.toString();
+    }
+
+    // Decodifica come fa PostgreSQL: \N isolato è NULL, le altre sequenze di escape tornano al carattere originale
+    private static List<String> colonne(String testo) {
+        String riga = testo.substring(0, testo.length() - 1);
+        List<String> colonne = new ArrayList<>();
+        for (String grezza : riga.split("\t", -1)) {
+            if (grezza.equals("\\N")) {
+                colonne.add(null);
+                continue;
+            }
+            StringBuilder valore = new StringBuilder();
+            for (int i = 0; i < grezza.length(); i++) {
+                char c = grezza.charAt(i);
+                if (c != '\\') {
+                    valore.append(c);
+                    continue;
+                }
+                char successivo = grezza.charAt(++i);
+                valore.append(switch (successivo) {
+                    case 't' -> '\t';
+                    case 'n' -> '\n';
+                    case 'r' -> '\r';
+                    default -> successivo;
+                });
+            }
+            colonne.add(valore.toString());
+        }
+        return colonne;
+    }
+}
@@ -0,0 +1,49 @@
+package vacislavbaluyev.eduatlas.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import vacislavbaluyev.eduatlas.exception.TroppeRichiesteException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LimitatoreConversioniTest {
+
+    private final AtomicLong adesso = new AtomicLong();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final LimitatoreConversioni limitatore = new LimitatoreConversioni(registry, 600, 2, adesso::get);
+
+    @Test
+    void rifiutaOltreIlLimiteESiRiempieColTempo() {
+        limitatore.consuma("10.0.0.1", 500);
+        assertThatThrownBy(() -> limitatore.consuma("10.0.0.1", 200))
+                .isInstanceOf(TroppeRichiesteException.class)
+                .satisfies(e -> assertThat(((TroppeRichiesteException) e).getSecondiAttesa()).isEqualTo(10));
+        // Gli altri client hanno il proprio secchio
+        limitatore.consuma("10.0.0.2", 600);
+
+        adesso.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        limitatore.consuma("10.0.0.1", 200);
+        assertThat(registry.counter("eduatlas.voti.rifiutate").count()).isEqualTo(1);
+    }
+
+    @Test
+    void unLibrettoPiuGrandeDelLimiteSvuotaIlSecchio() {
+        limitatore.consuma("10.0.0.1", 2000);
+        assertThatThrownBy(() -> limitatore.consuma("10.0.0.1", 1)).isInstanceOf(TroppeRichiesteException.class);
+    }
+
+    @Test
+    void iClientInattiviVengonoRimossiQuandoSonoTroppi() {
+        limitatore.consuma("10.0.0.1", 600);
+        limitatore.consuma("10.0.0.2", 1);
+        adesso.addAndGet(TimeUnit.MINUTES.toNanos(1));
+
+        // Entrambi i secchi sono di nuovo pieni: vengono rimossi e il nuovo client parte da un secchio pieno
+        limitatore.consuma("10.0.0.3", 600);
+        limitatore.consuma("10.0.0.1", 600);
+    }
+}
@@ -0,0 +1,80 @@
+package vacislavbaluyev.eduatlas.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import vacislavbaluyev.eduatlas.exception.ServizioSovraccaricoException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PasswordHasherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void ricalcolaGliHashConCostoOAlgoritmoSuperati() {
+        PasswordHasher bcrypt = new PasswordHasher(new SecurityConfig().getBCrypt("bcrypt", 5), meterRegistry, 1, 4);
+        // Hash salvato prima della codifica delegata: BCrypt senza prefisso e con un costo più basso
+        String legacy = new BCryptPasswordEncoder(4).encode("segreta");
+
+        PasswordHasher.Verifica verifica = bcrypt.verifica("segreta", legacy);
+        assertThat(verifica.corrisponde()).isTrue();
+        assertThat(verifica.nuovoHash()).startsWith("{bcrypt}$2a$05$");
+        assertThat(bcrypt.verifica("segreta", verifica.nuovoHash())).isEqualTo(new PasswordHasher.Verifica(true, null));
+        assertThat(bcrypt.verifica("sbagliata", legacy).corrisponde()).isFalse();
+
+        PasswordHasher pbkdf2 = new PasswordHasher(new SecurityConfig().getBCrypt("pbkdf2", 5), meterRegistry, 1, 4);
+        PasswordHasher.Verifica migrata = pbkdf2.verifica("segreta", verifica.nuovoHash());
+        assertThat(migrata.corrisponde()).isTrue();
+        assertThat(migrata.nuovoHash()).startsWith("{pbkdf2}");
+
+        assertThat(meterRegistry.get("eduatlas.password.attesa").timer().count()).isEqualTo(4);
+    }
+
+    @Test
+    void rifiutaLeRichiesteOltreLaCoda() {
+        CountDownLatch iniziata = new CountDownLatch(1);
+        CountDownLatch sblocca = new CountDownLatch(1);
+        PasswordEncoder lento = new BCryptPasswordEncoder(4) {
+            @Override
+            public String encode(CharSequence password) {
+                iniziata.countDown();
+                try {
+                    sblocca.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.encode(password);
+            }
+        };
+        PasswordHasher hasher = new PasswordHasher(lento, meterRegistry, 1, 1);
+
+        CompletableFuture<String> inCorso = CompletableFuture.supplyAsync(() -> hasher.codifica("a"));
+        awaitQuietly(iniziata);
+        CompletableFuture<String> inCoda = CompletableFuture.supplyAsync(() -> hasher.codifica("b"));
+        while (meterRegistry.get("eduatlas.password.coda").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        assertThatThrownBy(() -> hasher.codifica("c")).isInstanceOf(ServizioSovraccaricoException.class);
+        assertThat(meterRegistry.get("eduatlas.password.rifiutate").counter().count()).isEqualTo(1);
+
+        sblocca.countDown();
+        assertThat(inCorso.join()).startsWith("$2a$04$");
+        assertThat(inCoda.join()).startsWith("$2a$04$");
+        hasher.chiudi();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
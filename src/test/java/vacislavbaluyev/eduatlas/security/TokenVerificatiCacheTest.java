@@ -0,0 +1,67 @@
+package vacislavbaluyev.eduatlas.security;
+
+import org.junit.jupiter.api.Test;
+import vacislavbaluyev.eduatlas.entities.Ruolo;
+import vacislavbaluyev.eduatlas.entities.Utente;
+import vacislavbaluyev.eduatlas.exception.UnauthorizedOperationException;
+import vacislavbaluyev.eduatlas.tools.JWTTools;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class TokenVerificatiCacheTest {
+
+    private static final String SECRET = "test-secret-test-secret-test-secret-test-secret-0123456789";
+
+    private final JWTTools jwtTools = spy(new JWTTools(SECRET));
+
+    @Test
+    void verificaOgniTokenUnaSolaVolta() {
+        TokenVerificatiCache cache = new TokenVerificatiCache(jwtTools, 100);
+        String token = jwtTools.generateToken(utente("mario"));
+
+        assertThat(cache.verifica(token)).satisfies(verificato -> {
+            assertThat(verificato.username()).isEqualTo("mario");
+            assertThat(verificato.ruolo()).isEqualTo(Ruolo.ADMIN);
+            assertThat(verificato.versione()).isEqualTo(2);
+        });
+        assertThat(cache.verifica(token).username()).isEqualTo("mario");
+
+        verify(jwtTools, times(1)).verifyToken(token);
+    }
+
+    @Test
+    void nonMemorizzaITokenNonValidi() {
+        TokenVerificatiCache cache = new TokenVerificatiCache(jwtTools, 100);
+        String firmatoAltrove = new JWTTools(SECRET.replace('0', '1')).generateToken(utente("mario"));
+
+        assertThatThrownBy(() -> cache.verifica(firmatoAltrove)).isInstanceOf(UnauthorizedOperationException.class);
+        assertThatThrownBy(() -> cache.verifica(firmatoAltrove)).isInstanceOf(UnauthorizedOperationException.class);
+        assertThat(cache.dimensione()).isZero();
+    }
+
+    @Test
+    void rifiutaITokenSenzaRuolo() {
+        TokenVerificatiCache cache = new TokenVerificatiCache(jwtTools, 100);
+        String senzaRuolo = jwtTools.generateToken(Utente.builder().username("mario").build());
+
+        assertThatThrownBy(() -> cache.verifica(senzaRuolo)).isInstanceOf(UnauthorizedOperationException.class);
+    }
+
+    @Test
+    void restaEntroIlNumeroMassimoDiVoci() {
+        TokenVerificatiCache cache = new TokenVerificatiCache(jwtTools, 3);
+
+        for (int i = 0; i < 10; i++) {
+            cache.verifica(jwtTools.generateToken(utente("utente" + i)));
+            assertThat(cache.dimensione()).isLessThanOrEqualTo(3);
+        }
+    }
+
+    private static Utente utente(String username) {
+        return Utente.builder().username(username).ruolo(Ruolo.ADMIN).versioneToken(2).build();
+    }
+}
@@ -0,0 +1,65 @@
+package vacislavbaluyev.eduatlas.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.password.NoOpPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import vacislavbaluyev.eduatlas.entities.Ruolo;
+import vacislavbaluyev.eduatlas.entities.Utente;
+import vacislavbaluyev.eduatlas.payload.UtenteUpdateDTO;
+import vacislavbaluyev.eduatlas.repository.UtenteRepository;
+import vacislavbaluyev.eduatlas.service.UtenteService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({VersioniTokenRegistry.class, UtenteService.class, VersioniTokenRegistryTest.Configurazione.class})
+class VersioniTokenRegistryTest {
+
+    @TestConfiguration
+    static class Configurazione {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return NoOpPasswordEncoder.getInstance();
+        }
+    }
+
+    @Autowired
+    private VersioniTokenRegistry versioniTokenRegistry;
+    @Autowired
+    private UtenteService utenteService;
+    @Autowired
+    private UtenteRepository utenteRepository;
+
+    @Test
+    void revocaITokenDopoCambioPasswordOEliminazione() {
+        utenteRepository.save(utente("root", Ruolo.ROOT_ADMIN));
+        Utente admin = utenteRepository.save(utente("admin1", Ruolo.ADMIN));
+        assertThat(versioniTokenRegistry.valida("admin1", 0)).isTrue();
+
+        // Modificare il nome non revoca nulla, cambiare la password sì
+        utenteService.updateUser(admin.getId(), new UtenteUpdateDTO(null, null, "Mario", null), "root");
+        assertThat(versioniTokenRegistry.valida("admin1", 0)).isTrue();
+        utenteService.updateUser(admin.getId(), new UtenteUpdateDTO(null, "nuova-password", null, null), "root");
+        assertThat(versioniTokenRegistry.valida("admin1", 0)).isFalse();
+        assertThat(versioniTokenRegistry.valida("admin1", 1)).isTrue();
+
+        utenteService.deleteAdminByUsername("admin1", "root");
+        assertThat(versioniTokenRegistry.valida("admin1", 1)).isFalse();
+    }
+
+    private static Utente utente(String username, Ruolo ruolo) {
+        return Utente.builder()
+                .username(username)
+                .email(username + "@eduatlas.com")
+                .password("password")
+                .nome("Nome")
+                .cognome("Cognome")
+                .ruolo(ruolo)
+                .build();
+    }
+}
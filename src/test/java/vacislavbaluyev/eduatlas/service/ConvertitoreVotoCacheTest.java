@@ -0,0 +1,48 @@
+package vacislavbaluyev.eduatlas.service;
+
+import org.junit.jupiter.api.Test;
+import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+import vacislavbaluyev.eduatlas.repository.SistemaValutazioneRepository;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConvertitoreVotoCacheTest {
+
+    private final SistemaValutazioneRepository repository = mock(SistemaValutazioneRepository.class);
+    private final ConvertitoreVotoCache cache = new ConvertitoreVotoCache(repository);
+
+    @Test
+    void ilSecondoAccessoNonInterrogaIlDatabase() {
+        when(repository.findByPaeseId(1L)).thenReturn(Optional.of(sistema()));
+
+        assertThat(cache.get(1L)).isSameAs(cache.get(1L));
+        verify(repository, times(1)).findByPaeseId(1L);
+    }
+
+    @Test
+    void unConvertitoreInvalidatoDuranteLaLetturaNonEntraInCache() {
+        when(repository.findByPaeseId(1L)).thenAnswer(invocazione -> {
+            cache.invalida(1L);
+            return Optional.of(sistema());
+        });
+
+        cache.get(1L);
+        cache.get(1L);
+
+        verify(repository, times(2)).findByPaeseId(1L);
+    }
+
+    private static SistemaValutazione sistema() {
+        return SistemaValutazione.builder()
+                .votoA("10").votoB("9").votoC("8").votoDE("6").votoF("5")
+                .scalaTipo(TipoScala.NUMERICO)
+                .build();
+    }
+}
@@ -0,0 +1,63 @@
+package vacislavbaluyev.eduatlas.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+import vacislavbaluyev.eduatlas.payload.DettaglioPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaRichiestaDTO;
+import vacislavbaluyev.eduatlas.tools.CursoreKeyset;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CorpiPaesiCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CountryCatalogue countryCatalogue = mock(CountryCatalogue.class);
+    private final CorpiPaesiCache corpiPaesiCache = new CorpiPaesiCache(countryCatalogue, objectMapper);
+
+    @Test
+    void laPrimaPaginaHaLaDimensionePredefinitaEIlCursoreDellaSuccessiva() throws IOException {
+        when(countryCatalogue.snapshot()).thenReturn(CountryCatalogue.Snapshot.of(0, -1, paesi(120), Map.of()));
+
+        CorpiPaesiCache.PrimaPagina prima = corpiPaesiCache.primaPagina();
+
+        JsonNode json = objectMapper.readTree(prima.corpo().json());
+        assertThat(json).hasSize(PaginaRichiestaDTO.DIMENSIONE_PREDEFINITA);
+        assertThat(json.get(0).get("id").asLong()).isEqualTo(1);
+        assertThat(CursoreKeyset.decodifica(prima.cursoreSuccessivo())).isEqualTo(PaginaRichiestaDTO.DIMENSIONE_PREDEFINITA);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(prima.corpo().gzip()))) {
+            assertThat(in.readAllBytes()).isEqualTo(prima.corpo().json());
+        }
+        // Condivisa tra le richieste finché lo snapshot non cambia
+        assertThat(corpiPaesiCache.primaPagina()).isSameAs(prima);
+    }
+
+    @Test
+    void senzaAltrePagineIlCursoreManca() throws IOException {
+        when(countryCatalogue.snapshot()).thenReturn(CountryCatalogue.Snapshot.of(0, -1, paesi(3), Map.of()));
+
+        CorpiPaesiCache.PrimaPagina prima = corpiPaesiCache.primaPagina();
+
+        assertThat(objectMapper.readTree(prima.corpo().json())).hasSize(3);
+        assertThat(prima.cursoreSuccessivo()).isNull();
+    }
+
+    private static List<DettaglioPaeseDTO> paesi(int quanti) {
+        List<DettaglioPaeseDTO> paesi = new ArrayList<>(quanti);
+        for (int i = 1; i <= quanti; i++) {
+            paesi.add(new DettaglioPaeseDTO((long) i, "Paese " + i, 12, "A", "B", "C", "D", "F",
+                    TipoScala.NUMERICO, 3, 60, "6"));
+        }
+        return paesi;
+    }
+}
@@ -0,0 +1,56 @@
+package vacislavbaluyev.eduatlas.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+import vacislavbaluyev.eduatlas.payload.DettaglioPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.FiltroPaeseDTO;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CountryCatalogueSnapshotTest {
+
+    @Test
+    void laCostruzioneInBloccoEquivaleAgliInserimentiUnoAllaVolta() {
+        List<DettaglioPaeseDTO> paesi = paesi(200);
+        CountryCatalogue.Snapshot inBlocco = CountryCatalogue.Snapshot.of(0, -1, paesi.reversed(), Map.of());
+        CountryCatalogue.Snapshot incrementale = CountryCatalogue.Snapshot.of(0, -1, List.of(), Map.of());
+        for (DettaglioPaeseDTO paese : paesi) {
+            incrementale = incrementale.with(1, -1, paese);
+        }
+
+        assertThat(inBlocco.ids()).containsExactly(incrementale.ids());
+        assertThat(inBlocco.paesi()).isEqualTo(incrementale.paesi());
+        for (int anni = 10; anni <= 13; anni++) {
+            assertThat(inBlocco.perAnniScuola().get(anni)).containsExactly(incrementale.perAnniScuola().get(anni));
+        }
+        assertThat(inBlocco.perLivelloEQF().get("7")).containsExactly(incrementale.perLivelloEQF().get("7"));
+        FiltroPaeseDTO filtro = new FiltroPaeseDTO(11, 12, 3, 3, null, null, "6");
+        assertThat(inBlocco.filtra(filtro)).containsExactly(incrementale.filtra(filtro));
+        assertThat(inBlocco.ricerca().cerca("paese 1", 20)).containsExactly(incrementale.ricerca().cerca("paese 1", 20));
+        assertThat(inBlocco.byNome("Paese 42")).isEqualTo(incrementale.byNome("Paese 42"));
+    }
+
+    // Con gli inserimenti copy-on-write il caricamento completo era quadratico e non terminava
+    @Test
+    @Timeout(30)
+    void unCaricamentoCompletoDiCentomilaPaesiNonEQuadratico() {
+        CountryCatalogue.Snapshot snapshot = CountryCatalogue.Snapshot.of(0, -1, paesi(100_000), Map.of());
+
+        assertThat(snapshot.ids()).hasSize(100_000);
+        assertThat(snapshot.perAnniScuola().get(12)).hasSize(25_000);
+    }
+
+    private static List<DettaglioPaeseDTO> paesi(int quanti) {
+        List<DettaglioPaeseDTO> paesi = new ArrayList<>(quanti);
+        for (int i = 1; i <= quanti; i++) {
+            paesi.add(new DettaglioPaeseDTO((long) i, "Paese " + i, 10 + i % 4, "A", "B", "C", "D", "F",
+                    TipoScala.NUMERICO, 3 + i % 2, 60, i % 3 == 0 ? "7" : "6"));
+        }
+        return paesi;
+    }
+}
@@ -0,0 +1,142 @@
+package vacislavbaluyev.eduatlas.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import vacislavbaluyev.eduatlas.entities.Paese;
+import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+import vacislavbaluyev.eduatlas.exception.CsvImportException;
+import vacislavbaluyev.eduatlas.payload.RigaMatriceDTO;
+import vacislavbaluyev.eduatlas.payload.RisultatoImportDTO;
+import vacislavbaluyev.eduatlas.repository.MatriceImportRepository;
+import vacislavbaluyev.eduatlas.repository.PaeseRepository;
+import vacislavbaluyev.eduatlas.repository.SistemaUniversitarioRepository;
+import vacislavbaluyev.eduatlas.repository.SistemaValutazioneRepository;
+import vacislavbaluyev.eduatlas.repository.TitoloStudioRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@Import({CsvImportService.class, ModifichePaesi.class, MatriceImportRepository.class})
+class CsvImportServiceTest {
+
+    private static final String INTESTAZIONE = "NOME;ANNI;DURATA\n;;1;2;3\n";
+    private static final String RIGA = "%s;13;1;2;3;;;60;60;60;;;29-30;27-28;24-26;18-23;>18;6;Laurea\n";
+
+    @Autowired
+    private CsvImportService csvImportService;
+    @Autowired
+    private PaeseRepository paeseRepository;
+    @Autowired
+    private SistemaValutazioneRepository sistemaValutazioneRepository;
+    @Autowired
+    private SistemaUniversitarioRepository sistemaUniversitarioRepository;
+    @Autowired
+    private TitoloStudioRepository titoloStudioRepository;
+
+    @Test
+    void importaLaMatriceCompleta() throws IOException {
+        RisultatoImportDTO risultato;
+        try (InputStream csv = getClass().getClassLoader().getResourceAsStream("MATRIXCSV.csv")) {
+            risultato = csvImportService.importCsvData(csv);
+        }
+
+        assertThat(risultato.righe()).isEqualTo(31);
+        assertThat(risultato.righePerSecondo()).isPositive();
+        assertThat(paeseRepository.count()).isEqualTo(31);
+        assertThat(sistemaValutazioneRepository.count()).isEqualTo(31);
+        assertThat(sistemaUniversitarioRepository.count()).isEqualTo(31);
+        assertThat(titoloStudioRepository.count()).isEqualTo(31);
+
+        Paese belgio = paeseRepository.findByNome("Belgium").orElseThrow();
+        assertThat(belgio.getAnniSculaObbligaroia()).isEqualTo(12);
+        SistemaValutazione voti = sistemaValutazioneRepository.findByPaese(belgio).orElseThrow();
+        assertThat(voti.getVotoA()).isEqualTo("17-20");
+        assertThat(voti.getVotoF()).isEqualTo(">10");
+        assertThat(voti.getScalaTipo()).isEqualTo(TipoScala.NUMERICO);
+    }
+
+    @Test
+    void segnalaLaRigaErrataSenzaScrivereNulla() {
+        String csv = INTESTAZIONE
+                + "Italia;13;1;2;3;;;60;60;60;;;29-30;27-28;24-26;18-23;>18;6;Laurea\n"
+                + "\n"
+                + ";13;1;2;3;;;60;60;60;;;29-30;27-28;24-26;18-23;>18;6;Laurea\n";
+
+        assertThatThrownBy(() -> csvImportService.importCsvData(stream(csv)))
+                .isInstanceOf(CsvImportException.class)
+                .hasMessageStartingWith("Errore alla riga 5:");
+        assertThat(paeseRepository.count()).isZero();
+    }
+
+    @Test
+    void rifiutaPaesiDuplicati() {
+        String riga = "Italia;13;1;2;3;;;60;60;60;;;29-30;27-28;24-26;18-23;>18;6;Laurea\n";
+
+        assertThatThrownBy(() -> csvImportService.importCsvData(stream(INTESTAZIONE + riga + riga)))
+                .isInstanceOf(CsvImportException.class)
+                .hasMessage("Errore alla riga 4: Paese duplicato: Italia");
+    }
+
+    @Test
+    void unisceLeLineeDiUnCampoTraVirgoletteConAcapo() throws IOException {
+        String csv = INTESTAZIONE
+                + "Italia;13;1;2;3;;;60;60;60;;;29-30;27-28;24-26;18-23;>18;6;\"Laurea;\n triennale\"\n"
+                + "Francia;12|13*;1;2;3 anni;;;60;60;60;;;A;B;C;D;E;6;Licence\n";
+
+        List<RigaMatriceDTO> righe = csvImportService.leggiRighe(stream(csv));
+
+        assertThat(righe).extracting(RigaMatriceDTO::numeroRiga).containsExactly(3, 5);
+        assertThat(righe.get(0).denominazione()).isEqualTo("Laurea;\n triennale");
+        assertThat(righe.get(1).anniScuolaObbligatoria()).isEqualTo(12);
+        assertThat(righe.get(1).durataBaseAnni()).isEqualTo(3);
+        assertThat(righe.get(1).scalaTipo()).isEqualTo(TipoScala.LETTERE);
+    }
+
+    @Test
+    void consegnaLeRigheNellOrdineDelFileAncheSuPiuBlocchi() throws IOException {
+        int totale = CsvImportService.RIGHE_PER_BLOCCO * 5 + 17;
+        List<RigaMatriceDTO> righe = csvImportService.leggiRighe(stream(INTESTAZIONE + paesi(totale)));
+
+        assertThat(righe).hasSize(totale);
+        for (int i = 0; i < totale; i++) {
+            assertThat(righe.get(i).nome()).isEqualTo("Paese " + i);
+            assertThat(righe.get(i).numeroRiga()).isEqualTo(i + 3);
+        }
+    }
+
+    @Test
+    void segnalaIlPrimoErroreInOrdineDiRigaTraBlocchiDiversi() {
+        // Il duplicato (riga 103) precede la riga senza nome, che cade in un blocco successivo
+        StringBuilder csv = new StringBuilder(INTESTAZIONE).append(paesi(100));
+        csv.append(RIGA.formatted("Paese 0"));
+        csv.append(paesi(CsvImportService.RIGHE_PER_BLOCCO * 3));
+        csv.append(RIGA.formatted(""));
+
+        assertThatThrownBy(() -> csvImportService.importCsvData(stream(csv.toString())))
+                .isInstanceOf(CsvImportException.class)
+                .hasMessage("Errore alla riga 103: Paese duplicato: Paese 0");
+        assertThat(paeseRepository.count()).isZero();
+    }
+
+    private static String paesi(int numero) {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < numero; i++) {
+            csv.append(RIGA.formatted("Paese " + i));
+        }
+        return csv.toString();
+    }
+
+    private static InputStream stream(String testo) {
+        return new ByteArrayInputStream(testo.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,152 @@
+package vacislavbaluyev.eduatlas.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import vacislavbaluyev.eduatlas.exception.ImportazioneInCorsoException;
+import vacislavbaluyev.eduatlas.payload.RisultatoImportDTO;
+import vacislavbaluyev.eduatlas.payload.StatoImportDTO;
+import vacislavbaluyev.eduatlas.repository.MatriceImportRepository;
+import vacislavbaluyev.eduatlas.repository.MatriceStagingRepository;
+import vacislavbaluyev.eduatlas.repository.PaeseRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * L'importazione gira su un altro thread con una propria transazione: il test non ne apre una
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({ImportJobService.class, MatriceCopyImportService.class, CsvImportService.class, ModifichePaesi.class,
+        MatriceImportRepository.class, MatriceStagingRepository.class})
+class ImportJobServiceTest {
+
+    @Autowired
+    private ImportJobService importJobService;
+    @Autowired
+    private PaeseRepository paeseRepository;
+
+    @Test
+    void importaInBackgroundSegnalandoLAvanzamento() throws Exception {
+        byte[] contenuto;
+        try (InputStream csv = getClass().getClassLoader().getResourceAsStream("MATRIXCSV.csv")) {
+            contenuto = csv.readAllBytes();
+        }
+
+        StatoImportDTO iniziale = importJobService.avvia(new MockMultipartFile("file", "MATRIXCSV.csv", "text/csv", contenuto), true);
+        assertThat(iniziale.dimensioneByte()).isEqualTo(contenuto.length);
+
+        StatoImportDTO finale = attendiTermine(iniziale);
+        assertThat(finale.stato()).isEqualTo(ImportJob.Stato.COMPLETATO);
+        assertThat(finale.righeAnalizzate()).isEqualTo(31);
+        assertThat(finale.righeScritte()).isEqualTo(31);
+        assertThat(finale.byteLetti()).isEqualTo(contenuto.length);
+        assertThat(finale.percentuale()).isEqualTo(100.0);
+        assertThat(paeseRepository.count()).isEqualTo(31);
+
+        // Un file errato fallisce senza modificare i dati già presenti
+        String errato = "NOME;ANNI\n;;1;2;3\nItalia;13;1;2;3;;;60;60;60;;;29-30;27-28;24-26;18-23;>18;6;Laurea\n;12\n";
+        StatoImportDTO fallito = attendiTermine(importJobService.avvia(
+                new MockMultipartFile("file", "errato.csv", "text/csv", errato.getBytes(StandardCharsets.UTF_8)), true));
+        assertThat(fallito.stato()).isEqualTo(ImportJob.Stato.FALLITO);
+        assertThat(fallito.errore()).startsWith("Errore alla riga 4:");
+        assertThat(paeseRepository.count()).isEqualTo(31);
+        assertThat(paeseRepository.findByNome("Italia")).isEmpty();
+    }
+
+    @Test
+    void rifiutaUnaNuovaImportazioneFinoAlTermineDellaPrecedente() throws Exception {
+        CountDownLatch avviata = new CountDownLatch(1);
+        CountDownLatch sblocca = new CountDownLatch(1);
+        MatriceCopyImportService bloccato = mock(MatriceCopyImportService.class);
+        when(bloccato.importa(any(InputStream.class), anyBoolean(), any())).thenAnswer(invocazione -> {
+            avviata.countDown();
+            sblocca.await();
+            return RisultatoImportDTO.di(1, System.nanoTime());
+        });
+        ImportJobService servizio = new ImportJobService(bloccato);
+        try {
+            StatoImportDTO prima = servizio.avvia(file("prima.csv"), false);
+            assertThat(avviata.await(10, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> servizio.avvia(file("seconda.csv"), false))
+                    .isInstanceOf(ImportazioneInCorsoException.class)
+                    .hasMessageContaining(prima.id().toString());
+
+            sblocca.countDown();
+            assertThat(attendiTermine(servizio, prima).stato()).isEqualTo(ImportJob.Stato.COMPLETATO);
+            assertThat(attendiTermine(servizio, servizio.avvia(file("terza.csv"), false)).stato())
+                    .isEqualTo(ImportJob.Stato.COMPLETATO);
+        } finally {
+            sblocca.countDown();
+            servizio.chiudi();
+        }
+    }
+
+    @Test
+    void lArrestoInterrompeLImportazioneEdEliminaIlFile() throws Exception {
+        CountDownLatch avviata = new CountDownLatch(1);
+        MatriceCopyImportService bloccato = mock(MatriceCopyImportService.class);
+        when(bloccato.importa(any(InputStream.class), anyBoolean(), any())).thenAnswer(invocazione -> {
+            avviata.countDown();
+            new CountDownLatch(1).await();
+            return null;
+        });
+        ImportJobService servizio = new ImportJobService(bloccato);
+        Set<Path> prima = fileTemporanei();
+        StatoImportDTO stato = servizio.avvia(file("prima.csv"), false);
+        assertThat(avviata.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(fileTemporanei()).hasSize(prima.size() + 1);
+
+        servizio.chiudi();
+
+        assertThat(attendiTermine(servizio, stato).stato()).isEqualTo(ImportJob.Stato.FALLITO);
+        assertThat(fileTemporanei()).isEqualTo(prima);
+        assertThatThrownBy(() -> servizio.avvia(file("dopo.csv"), false))
+                .isInstanceOf(ImportazioneInCorsoException.class);
+        assertThat(fileTemporanei()).isEqualTo(prima);
+    }
+
+    private static MockMultipartFile file(String nome) {
+        return new MockMultipartFile("file", nome, "text/csv", "NOME;ANNI\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Set<Path> fileTemporanei() throws IOException {
+        try (Stream<Path> file = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return file.filter(f -> f.getFileName().toString().startsWith("matrice-")).collect(Collectors.toSet());
+        }
+    }
+
+    private StatoImportDTO attendiTermine(StatoImportDTO stato) throws InterruptedException, IOException {
+        return attendiTermine(importJobService, stato);
+    }
+
+    private static StatoImportDTO attendiTermine(ImportJobService servizio, StatoImportDTO stato) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 30_000;
+        while (!stato.stato().terminato() && System.currentTimeMillis() < limite) {
+            Thread.sleep(20);
+            stato = servizio.getStato(stato.id());
+        }
+        return stato;
+    }
+}
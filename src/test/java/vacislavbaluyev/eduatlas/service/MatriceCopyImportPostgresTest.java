@@ -0,0 +1,109 @@
+package vacislavbaluyev.eduatlas.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import vacislavbaluyev.eduatlas.entities.Paese;
+import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
+import vacislavbaluyev.eduatlas.payload.RisultatoImportDTO;
+import vacislavbaluyev.eduatlas.repository.MatriceImportRepository;
+import vacislavbaluyev.eduatlas.repository.MatriceStagingRepository;
+import vacislavbaluyev.eduatlas.repository.PaeseRepository;
+import vacislavbaluyev.eduatlas.repository.SistemaValutazioneRepository;
+import vacislavbaluyev.eduatlas.repository.TitoloStudioRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Percorso PostgreSQL (COPY ... FROM STDIN in una tabella temporanea ON COMMIT DROP).
+ * Richiede Docker: senza, la classe viene saltata e resta coperto solo il percorso H2.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({MatriceCopyImportService.class, CsvImportService.class, ModifichePaesi.class, MatriceImportRepository.class, MatriceStagingRepository.class})
+@Testcontainers(disabledWithoutDocker = true)
+// Ogni importazione fa il commit della propria transazione, così la tabella di appoggio viene davvero eliminata
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MatriceCopyImportPostgresTest {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    private static final String INTESTAZIONE = "NOME;ANNI;DURATA\n;;1;2;3\n";
+
+    @Autowired
+    private MatriceCopyImportService matriceCopyImportService;
+    @Autowired
+    private PaeseRepository paeseRepository;
+    @Autowired
+    private SistemaValutazioneRepository sistemaValutazioneRepository;
+    @Autowired
+    private TitoloStudioRepository titoloStudioRepository;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void svuota() {
+        jdbcTemplate.execute("TRUNCATE paese, sistema_valutazione, sistema_universitario, titolo_studio CASCADE");
+    }
+
+    @Test
+    void importaLaMatriceCompletaConCopy() throws IOException {
+        RisultatoImportDTO risultato;
+        try (InputStream csv = getClass().getClassLoader().getResourceAsStream("MATRIXCSV.csv")) {
+            risultato = matriceCopyImportService.importa(csv);
+        }
+
+        assertThat(risultato.righe()).isEqualTo(31);
+        assertThat(paeseRepository.count()).isEqualTo(31);
+        assertThat(sistemaValutazioneRepository.count()).isEqualTo(31);
+        assertThat(titoloStudioRepository.count()).isEqualTo(31);
+    }
+
+    @Test
+    void iCaratteriSpecialiArrivanoIntatti() throws IOException {
+        // Il CSV non ammette tab né a capo nei campi: backslash e sequenze simili a \N sono i casi raggiungibili
+        matriceCopyImportService.importa(stream(INTESTAZIONE
+                + "Costa d'Avorio \\ Sud;12;1;2;3;;;60;60;60;;;\\N;a\\tb;\\\\;18-23;>18;6;Licence \\N\n"));
+
+        Paese paese = paeseRepository.findByNome("Costa d'Avorio \\ Sud").orElseThrow();
+        SistemaValutazione voti = sistemaValutazioneRepository.findByPaese(paese).orElseThrow();
+        assertThat(voti.getVotoA()).isEqualTo("\\N");
+        assertThat(voti.getVotoB()).isEqualTo("a\\tb");
+        assertThat(voti.getVotoC()).isEqualTo("\\\\");
+        assertThat(jdbcTemplate.queryForObject("SELECT denominazione FROM titolo_studio WHERE paese_id = ?",
+                String.class, paese.getId())).isEqualTo("Licence \\N");
+    }
+
+    @Test
+    void laTabellaDiAppoggioNonSopravviveAlCommit() throws IOException {
+        String csv = INTESTAZIONE + "Italia;13;1;2;3;;;60;60;60;;;29-30;27-28;24-26;18-23;>18;6;Laurea\n";
+        matriceCopyImportService.importa(stream(csv));
+
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_class WHERE relname = 'matrice_staging'", Integer.class)).isZero();
+        // Una seconda importazione ricrea la tabella e riconosce la riga invariata
+        matriceCopyImportService.sincronizza(stream(csv));
+        assertThat(paeseRepository.count()).isEqualTo(1);
+    }
+
+    private static InputStream stream(String testo) {
+        return new ByteArrayInputStream(testo.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,245 @@
+package vacislavbaluyev.eduatlas.service;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import vacislavbaluyev.eduatlas.entities.Paese;
+import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
+import vacislavbaluyev.eduatlas.exception.CsvImportException;
+import vacislavbaluyev.eduatlas.payload.RigaMatriceDTO;
+import vacislavbaluyev.eduatlas.payload.RisultatoImportDTO;
+import vacislavbaluyev.eduatlas.repository.MatriceImportRepository;
+import vacislavbaluyev.eduatlas.repository.MatriceStagingRepository;
+import vacislavbaluyev.eduatlas.repository.PaeseRepository;
+import vacislavbaluyev.eduatlas.repository.SistemaUniversitarioRepository;
+import vacislavbaluyev.eduatlas.repository.SistemaValutazioneRepository;
+import vacislavbaluyev.eduatlas.repository.TitoloStudioRepository;
+import vacislavbaluyev.eduatlas.tools.SnapshotMatrice;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Percorso H2 (insert a blocchi nella tabella di appoggio); le istruzioni di unione sono le stesse di PostgreSQL
+ */
+@DataJpaTest
+@Import({MatriceCopyImportService.class, CsvImportService.class, ModifichePaesi.class, MatriceImportRepository.class, MatriceStagingRepository.class})
+class MatriceCopyImportServiceTest {
+
+    private static final String INTESTAZIONE = "NOME;ANNI;DURATA\n;;1;2;3\n";
+
+    @Autowired
+    private MatriceCopyImportService matriceCopyImportService;
+    @Autowired
+    private PaeseRepository paeseRepository;
+    @Autowired
+    private SistemaValutazioneRepository sistemaValutazioneRepository;
+    @Autowired
+    private SistemaUniversitarioRepository sistemaUniversitarioRepository;
+    @Autowired
+    private TitoloStudioRepository titoloStudioRepository;
+    @Autowired
+    private MatriceImportRepository matriceImportRepository;
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void importaLaMatriceCompleta() throws IOException {
+        RisultatoImportDTO risultato;
+        try (InputStream csv = getClass().getClassLoader().getResourceAsStream("MATRIXCSV.csv")) {
+            risultato = matriceCopyImportService.importa(csv);
+        }
+
+        assertThat(risultato.righe()).isEqualTo(31);
+        assertThat(paeseRepository.count()).isEqualTo(31);
+        assertThat(sistemaValutazioneRepository.count()).isEqualTo(31);
+        assertThat(sistemaUniversitarioRepository.count()).isEqualTo(31);
+        assertThat(titoloStudioRepository.count()).isEqualTo(31);
+    }
+
+    @Test
+    void unisceAggiornandoIPaesiEsistenti() throws IOException {
+        matriceCopyImportService.importa(stream(INTESTAZIONE
+                + "Italia;13;1;2;3;;;60;60;60;;;29-30;27-28;24-26;18-23;>18;6;Laurea\n"
+                + "Francia;12;1;2;3;;;60;60;60;;;16-20;14-15.9;12-13.9;10-11.9;>10;6;Licence\n"));
+        Long italia = paeseRepository.findByNome("Italia").orElseThrow().getId();
+
+        matriceCopyImportService.importa(stream(INTESTAZIONE
+                + "Italia;12;1;2;3;;;60;60;60;;;30;27-29;24-26;18-23;>18;6;Laurea triennale\n"
+                + "Spagna;12;1;2;3;4;;60;60;60;60;;9|10;7-8.9;6-6.9;5-5.9;>5;6;Grado\n"));
+        // L'unione scrive via JDBC: le entità già caricate nel contesto di persistenza non sono aggiornate
+        entityManager.clear();
+
+        assertThat(paeseRepository.count()).isEqualTo(3);
+        Paese aggiornata = paeseRepository.findByNome("Italia").orElseThrow();
+        assertThat(aggiornata.getId()).isEqualTo(italia);
+        assertThat(aggiornata.getAnniSculaObbligaroia()).isEqualTo(12);
+        assertThat(sistemaValutazioneRepository.findByPaese(aggiornata).orElseThrow().getVotoA()).isEqualTo("30");
+        assertThat(sistemaValutazioneRepository.count()).isEqualTo(3);
+        assertThat(titoloStudioRepository.count()).isEqualTo(3);
+    }
+
+    @Test
+    void sincronizzaToccandoSoloLeRigheCambiate() throws IOException {
+        String italia = "Italia;13;1;2;3;;;60;60;60;;;29-30;27-28;24-26;18-23;>18;6;Laurea\n";
+        matriceCopyImportService.sincronizza(stream(INTESTAZIONE + italia
+                + "Francia;12;1;2;3;;;60;60;60;;;16-20;14-15.9;12-13.9;10-11.9;>10;6;Licence\n"
+                + "Germania;13;1;2;3;;;60;60;60;;;1-1.5;1.6-2.5;2.6-3.5;3.6-4;>4;6;Bachelor\n"));
+        // Creato dall'API: senza impronta, non viene mai rimosso dalla sincronizzazione
+        paeseRepository.save(Paese.builder().nome("Atlantide").anniSculaObbligaroia(10).build());
+        Long votiItalia = sistemaValutazioneRepository.findByPaese(
+                paeseRepository.findByNome("Italia").orElseThrow()).orElseThrow().getId();
+
+        String nuovaVersione = INTESTAZIONE + italia
+                + "Francia;12;1;2;4;;;60;60;60;;;16-20;14-15.9;12-13.9;10-11.9;>10;7;Master\n"
+                + "Spagna;12;1;2;3;4;;60;60;60;60;;9|10;7-8.9;6-6.9;5-5.9;>5;6;Grado\n";
+        matriceCopyImportService.sincronizza(stream(nuovaVersione));
+        entityManager.clear();
+
+        assertThat(paeseRepository.findAll()).extracting(Paese::getNome)
+                .containsExactlyInAnyOrder("Italia", "Francia", "Spagna", "Atlantide");
+        assertThat(sistemaUniversitarioRepository.count()).isEqualTo(3);
+        Paese italiaSalvata = paeseRepository.findByNome("Italia").orElseThrow();
+        // Riga invariata: i dati collegati non sono stati riscritti
+        assertThat(sistemaValutazioneRepository.findByPaese(italiaSalvata).orElseThrow().getId()).isEqualTo(votiItalia);
+        assertThat(italiaSalvata.getHashContenuto()).isNotNull();
+        Paese francia = paeseRepository.findByNome("Francia").orElseThrow();
+        assertThat(sistemaUniversitarioRepository.findByPaeseId(francia.getId()).orElseThrow().getDurataBaseAnni()).isEqualTo(4);
+
+        // Riapplicare la stessa versione non modifica nulla
+        Long votiFrancia = sistemaValutazioneRepository.findByPaese(francia).orElseThrow().getId();
+        matriceCopyImportService.sincronizza(stream(nuovaVersione));
+        entityManager.clear();
+        assertThat(paeseRepository.count()).isEqualTo(4);
+        assertThat(sistemaValutazioneRepository.findByPaese(francia).orElseThrow().getId()).isEqualTo(votiFrancia);
+    }
+
+    @Test
+    void leModificheDallApiSopravvivonoAllaSincronizzazione() throws IOException {
+        String italia = "Italia;13;1;2;3;;;60;60;60;;;29-30;27-28;24-26;18-23;>18;6;Laurea\n";
+        String francia = "Francia;12;1;2;3;;;60;60;60;;;16-20;14-15.9;12-13.9;10-11.9;>10;6;Licence\n";
+        matriceCopyImportService.sincronizza(stream(INTESTAZIONE + italia + francia));
+        // Come SistemaValutazioneService.updateSistemaValutazione
+        Paese modificata = paeseRepository.findByNome("Italia").orElseThrow();
+        SistemaValutazione voti = sistemaValutazioneRepository.findByPaese(modificata).orElseThrow();
+        voti.setVotoA("30L");
+        sistemaValutazioneRepository.saveAndFlush(voti);
+        paeseRepository.segnaModificatoLocalmente(modificata.getId());
+        entityManager.clear();
+
+        // La riga dell'Italia nel file è invariata ma diversa dal dato modificato: non lo sovrascrive
+        matriceCopyImportService.sincronizza(stream(INTESTAZIONE + italia + francia));
+        entityManager.clear();
+        Paese italiaSalvata = paeseRepository.findByNome("Italia").orElseThrow();
+        assertThat(sistemaValutazioneRepository.findByPaese(italiaSalvata).orElseThrow().getVotoA()).isEqualTo("30L");
+        assertThat(italiaSalvata.isModificatoLocalmente()).isTrue();
+
+        // Uscita dal file non viene rimossa: ora appartiene all'amministratore
+        matriceCopyImportService.sincronizza(stream(INTESTAZIONE + francia));
+        entityManager.clear();
+        assertThat(paeseRepository.findAll()).extracting(Paese::getNome).containsExactlyInAnyOrder("Italia", "Francia");
+    }
+
+    @Test
+    void unPaeseCreatoDallApiNonVieneAdottatoDallaMatrice() throws IOException {
+        // Creato dall'API (PaeseService.createPaese)
+        paeseRepository.save(Paese.builder().nome("Spagna").anniSculaObbligaroia(9).modificatoLocalmente(true).build());
+        String csv = INTESTAZIONE
+                + "Spagna;12;1;2;3;4;;60;60;60;60;;9|10;7-8.9;6-6.9;5-5.9;>5;6;Grado\n"
+                + "Italia;13;1;2;3;;;60;60;60;;;29-30;27-28;24-26;18-23;>18;6;Laurea\n";
+
+        matriceCopyImportService.sincronizza(stream(csv));
+        entityManager.clear();
+
+        Paese spagna = paeseRepository.findByNome("Spagna").orElseThrow();
+        assertThat(spagna.getAnniSculaObbligaroia()).isEqualTo(9);
+        assertThat(spagna.getHashContenuto()).isNull();
+        assertThat(sistemaValutazioneRepository.findByPaese(spagna)).isEmpty();
+        Paese italia = paeseRepository.findByNome("Italia").orElseThrow();
+        assertThat(italia.isModificatoLocalmente()).isFalse();
+        assertThat(sistemaValutazioneRepository.count()).isEqualTo(1);
+
+        matriceCopyImportService.sincronizza(stream(INTESTAZIONE
+                + "Germania;13;1;2;3;;;60;60;60;;;1-1.5;1.6-2.5;2.6-3.5;3.6-4;>4;6;Bachelor\n"));
+        entityManager.clear();
+        assertThat(paeseRepository.findAll()).extracting(Paese::getNome)
+                .containsExactlyInAnyOrder("Spagna", "Germania");
+    }
+
+    @Test
+    void iPaesiSenzaImprontaDellImportazionePrecedenteVengonoAggiornati() throws IOException {
+        matriceCopyImportService.importa(stream(INTESTAZIONE
+                + "Italia;13;1;2;3;;;60;60;60;;;29-30;27-28;24-26;18-23;>18;6;Laurea\n"
+                + "Francia;12;1;2;3;;;60;60;60;;;16-20;14-15.9;12-13.9;10-11.9;>10;6;Licence\n"));
+        // Come le righe scritte prima delle impronte: hash_contenuto NULL e modificato_localmente FALSE
+        entityManager.createNativeQuery("UPDATE paese SET hash_contenuto = NULL, modificato_localmente = FALSE")
+                .executeUpdate();
+
+        matriceCopyImportService.sincronizza(stream(INTESTAZIONE
+                + "Italia;12;1;2;3;;;60;60;60;;;30;27-29;24-26;18-23;>18;6;Laurea triennale\n"
+                + "Francia;12;1;2;3;;;60;60;60;;;16-20;14-15.9;12-13.9;10-11.9;>10;6;Licence\n"));
+        entityManager.clear();
+
+        Paese italia = paeseRepository.findByNome("Italia").orElseThrow();
+        assertThat(italia.getAnniSculaObbligaroia()).isEqualTo(12);
+        assertThat(italia.getHashContenuto()).isNotNull();
+        assertThat(italia.isModificatoLocalmente()).isFalse();
+        assertThat(sistemaValutazioneRepository.findByPaese(italia).orElseThrow().getVotoA()).isEqualTo("30");
+        Paese francia = paeseRepository.findByNome("Francia").orElseThrow();
+        assertThat(francia.getHashContenuto()).isNotNull();
+        assertThat(francia.isModificatoLocalmente()).isFalse();
+        assertThat(sistemaValutazioneRepository.count()).isEqualTo(2);
+        assertThat(titoloStudioRepository.count()).isEqualTo(2);
+    }
+
+    @Test
+    void lIstantaneaEsportataRipristinaLaMatriceSenzaModifiche() throws IOException {
+        try (InputStream csv = getClass().getClassLoader().getResourceAsStream("MATRIXCSV.csv")) {
+            matriceCopyImportService.importa(csv);
+        }
+        Long votiAustria = sistemaValutazioneRepository.findByPaese(paeseRepository.findByNome("Austria").orElseThrow())
+                .orElseThrow().getId();
+
+        List<RigaMatriceDTO> esportate = matriceImportRepository.esporta();
+        assertThat(esportate).hasSize(31);
+        // Le impronte delle righe esportate coincidono con quelle salvate dall'importazione del CSV
+        Map<String, Long> impronte = paeseRepository.findAll().stream()
+                .collect(Collectors.toMap(Paese::getNome, Paese::getHashContenuto));
+        assertThat(esportate).allSatisfy(riga ->
+                assertThat(riga.hashContenuto()).isEqualTo(impronte.get(riga.nome())));
+
+        SnapshotMatrice snapshot = SnapshotMatrice.di(SnapshotMatrice.scrivi(esportate));
+        RisultatoImportDTO risultato = matriceCopyImportService.importaSnapshot(snapshot, true);
+        entityManager.clear();
+
+        assertThat(risultato.righe()).isEqualTo(31);
+        assertThat(paeseRepository.count()).isEqualTo(31);
+        assertThat(sistemaValutazioneRepository.findByPaese(paeseRepository.findByNome("Austria").orElseThrow())
+                .orElseThrow().getId()).isEqualTo(votiAustria);
+    }
+
+    @Test
+    void unErroreDiAnalisiInterrompeIlCaricamento() {
+        String csv = INTESTAZIONE
+                + "Italia;13;1;2;3;;;60;60;60;;;29-30;27-28;24-26;18-23;>18;6;Laurea\n"
+                + ";12;1;2;3;;;60;60;60;;;16-20;14-15.9;12-13.9;10-11.9;>10;6;Licence\n";
+
+        assertThatThrownBy(() -> matriceCopyImportService.importa(stream(csv)))
+                .isInstanceOf(CsvImportException.class)
+                .hasMessageStartingWith("Errore alla riga 4:");
+    }
+
+    private static InputStream stream(String testo) {
+        return new ByteArrayInputStream(testo.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,59 @@
+package vacislavbaluyev.eduatlas.service;
+
+import org.junit.jupiter.api.Test;
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+import vacislavbaluyev.eduatlas.payload.DettaglioPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.QueryPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.RisultatoQueryPaeseDTO;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaeseFacetIndexTest {
+
+    private final PaeseFacetIndex indice = PaeseFacetIndex.of(List.of(
+            paese(1L, "Austria", 13, 3, TipoScala.NUMERICO),
+            paese(2L, "Belgium", 12, 3, TipoScala.NUMERICO),
+            paese(3L, "Cyprus", 12, 4, TipoScala.LETTERE),
+            paese(4L, "Denmark", 12, 3, TipoScala.NUMERICO)));
+
+    @Test
+    void intersecaICriteriERestituisceIConteggi() {
+        RisultatoQueryPaeseDTO risultato = indice.query(
+                new QueryPaeseDTO(12, 3, null, null, null, null, null));
+
+        assertThat(risultato.contenuto()).extracting(DettaglioPaeseDTO::nome).containsExactly("Belgium", "Denmark");
+        assertThat(risultato.totale()).isEqualTo(2);
+        // I conteggi di una facet ignorano il criterio sulla facet stessa
+        assertThat(risultato.facet().get(PaeseFacetIndex.DURATA_BASE)).containsEntry("3", 2).containsEntry("4", 1);
+        assertThat(risultato.facet().get(PaeseFacetIndex.ANNI_SCUOLA)).containsEntry("12", 2).containsEntry("13", 1);
+        assertThat(risultato.facet().get(PaeseFacetIndex.SCALA_TIPO)).containsOnlyKeys("NUMERICO");
+    }
+
+    @Test
+    void paginaIlRisultato() {
+        RisultatoQueryPaeseDTO risultato = indice.query(
+                new QueryPaeseDTO(null, null, null, null, TipoScala.NUMERICO, 1, 2));
+
+        assertThat(risultato.contenuto()).extracting(DettaglioPaeseDTO::nome).containsExactly("Denmark");
+        assertThat(risultato.totale()).isEqualTo(3);
+    }
+
+    @Test
+    void iValoriNumericiSonoInOrdineNumerico() {
+        PaeseFacetIndex numerico = PaeseFacetIndex.of(List.of(
+                paese(1L, "Austria", 10, 3, TipoScala.NUMERICO),
+                paese(2L, "Belgium", 9, 3, TipoScala.NUMERICO),
+                paese(3L, "Cyprus", 12, 4, TipoScala.LETTERE)));
+
+        RisultatoQueryPaeseDTO risultato = numerico.query(new QueryPaeseDTO(null, null, null, null, null, null, null));
+
+        assertThat(risultato.facet().get(PaeseFacetIndex.ANNI_SCUOLA).keySet()).containsExactly("9", "10", "12");
+        assertThat(risultato.facet().get(PaeseFacetIndex.SCALA_TIPO).keySet()).containsExactly("LETTERE", "NUMERICO");
+    }
+
+    private static DettaglioPaeseDTO paese(Long id, String nome, int anniScuola, int durata, TipoScala scala) {
+        return new DettaglioPaeseDTO(id, nome, anniScuola, "A", "B", "C", "D", "F", scala, durata, 60, "6");
+    }
+}
@@ -0,0 +1,148 @@
+package vacislavbaluyev.eduatlas.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import vacislavbaluyev.eduatlas.entities.Paese;
+import vacislavbaluyev.eduatlas.entities.SistemaUniversitario;
+import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+import vacislavbaluyev.eduatlas.payload.DettaglioPaeseDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaRichiestaDTO;
+import vacislavbaluyev.eduatlas.repository.PaeseRepository;
+import vacislavbaluyev.eduatlas.repository.SistemaUniversitarioRepository;
+import vacislavbaluyev.eduatlas.repository.SistemaValutazioneRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({PaeseService.class, PaeseCompletoService.class, ModifichePaesi.class, CountryCatalogue.class})
+class PaeseServiceQueryCountTest {
+
+    private static final PaginaRichiestaDTO PRIMA_PAGINA = PaginaRichiestaDTO.prima(PaginaRichiestaDTO.DIMENSIONE_MASSIMA);
+
+    @Autowired
+    private PaeseService paeseService;
+    @Autowired
+    private CountryCatalogue countryCatalogue;
+    @Autowired
+    private PaeseRepository paeseRepository;
+    @Autowired
+    private SistemaValutazioneRepository sistemaValutazioneRepository;
+    @Autowired
+    private SistemaUniversitarioRepository sistemaUniversitarioRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    void caricamentoDettagliUsaUnNumeroCostanteDiQuery() {
+        creaPaesi(0, 3);
+        long conTrePaesi = contaQuery(() -> paeseRepository.findAllDettagli(), 3);
+
+        creaPaesi(3, 30);
+        long conTrentaPaesi = contaQuery(() -> paeseRepository.findAllDettagli(), 30);
+
+        assertThat(conTrePaesi).isEqualTo(1);
+        assertThat(conTrentaPaesi).isEqualTo(conTrePaesi);
+    }
+
+    @Test
+    void filtriUsanoUnNumeroCostanteDiQuery() {
+        creaPaesi(0, 20);
+
+        assertThat(contaQuery(() -> paeseRepository.findDettagliByAnniScuolaObbligatoria(12), 20)).isEqualTo(1);
+        assertThat(contaQuery(() -> paeseRepository.findDettagliByDurataBaseAnni(3), 20)).isEqualTo(1);
+        assertThat(contaQuery(() -> paeseRepository.findDettagliByCreditiPerAnno(60), 20)).isEqualTo(1);
+        assertThat(contaQuery(() -> paeseRepository.findDettagliByLivelloEQF("6"), 20)).isEqualTo(1);
+    }
+
+    @Test
+    void lettureDelServizioNonInterroganoIlDatabase() {
+        creaPaesi(0, 10);
+        entityManager.flush();
+        countryCatalogue.ricarica();
+        Long id = paeseService.getAllPaesi().get(0).id();
+
+        assertThat(contaQuery(() -> paeseService.getAllPaesi(), 10)).isZero();
+        assertThat(contaQuery(() -> List.of(paeseService.getPaeseById(id)), 1)).isZero();
+        assertThat(contaQuery(() -> List.of(paeseService.getPaeseByNome("paese 3")), 1)).isZero();
+        assertThat(contaQuery(() -> paeseService.getPaesiByAnniScuolaObbligatoria(12, PRIMA_PAGINA).contenuto(), 10)).isZero();
+        assertThat(contaQuery(() -> paeseService.getPaesiByDurataBaseAnni(3, PRIMA_PAGINA).contenuto(), 10)).isZero();
+        assertThat(contaQuery(() -> paeseService.getPaesiByCreditiPerAnno(60, PRIMA_PAGINA).contenuto(), 10)).isZero();
+        assertThat(contaQuery(() -> paeseService.getPaesiByLivelloEQF("6", PRIMA_PAGINA).contenuto(), 10)).isZero();
+    }
+
+    @Test
+    void paginazioneKeysetAttraversaTuttiIPaesiSenzaQuery() {
+        creaPaesi(0, 10);
+        entityManager.flush();
+        countryCatalogue.ricarica();
+
+        List<Long> visti = new ArrayList<>();
+        PaginaRichiestaDTO richiesta = PaginaRichiestaDTO.prima(3);
+        int pagine = 0;
+        statistics.clear();
+        while (richiesta != null) {
+            PaginaDTO<DettaglioPaeseDTO> pagina = paeseService.getPaesi(richiesta);
+            pagina.contenuto().forEach(p -> visti.add(p.id()));
+            richiesta = pagina.cursoreSuccessivo() == null ? null : new PaginaRichiestaDTO(pagina.cursoreSuccessivo(), 3);
+            pagine++;
+        }
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(pagine).isEqualTo(4);
+        assertThat(visti).hasSize(10).doesNotHaveDuplicates().isSorted();
+    }
+
+    private long contaQuery(Supplier<List<DettaglioPaeseDTO>> chiamata, int righeAttese) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+
+        List<DettaglioPaeseDTO> risultato = chiamata.get();
+
+        assertThat(risultato).hasSize(righeAttese);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void creaPaesi(int da, int a) {
+        for (int i = da; i < a; i++) {
+            Paese paese = paeseRepository.save(Paese.builder()
+                    .nome("Paese " + i)
+                    .anniSculaObbligaroia(12)
+                    .build());
+            sistemaValutazioneRepository.save(SistemaValutazione.builder()
+                    .paese(paese)
+                    .votoA("10").votoB("9").votoC("8").votoDE("6").votoF("5")
+                    .scalaTipo(TipoScala.NUMERICO)
+                    .build());
+            sistemaUniversitarioRepository.save(SistemaUniversitario.builder()
+                    .paese(paese)
+                    .durataBaseAnni(3)
+                    .creditiPerAnno(60)
+                    .livelloEQF("6")
+                    .build());
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package vacislavbaluyev.eduatlas.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import vacislavbaluyev.eduatlas.entities.Paese;
+import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+import vacislavbaluyev.eduatlas.entities.TipoVoto;
+import vacislavbaluyev.eduatlas.payload.ConversioneVotiDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaDTO;
+import vacislavbaluyev.eduatlas.payload.PaginaRichiestaDTO;
+import vacislavbaluyev.eduatlas.payload.RisultatoConversioneVotiDTO;
+import vacislavbaluyev.eduatlas.payload.SistemaValutazioneDTO;
+import vacislavbaluyev.eduatlas.payload.VotoConvertitoDTO;
+import vacislavbaluyev.eduatlas.payload.VotoDaConvertireDTO;
+import vacislavbaluyev.eduatlas.repository.PaeseRepository;
+import vacislavbaluyev.eduatlas.repository.SistemaValutazioneRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import({SistemaValutazioneService.class, ModifichePaesi.class, ConvertitoreVotoCache.class, EquivalenzaVotiService.class})
+class SistemaValutazioneServiceTest {
+
+    @Autowired
+    private SistemaValutazioneService sistemaValutazioneService;
+    @Autowired
+    private EquivalenzaVotiService equivalenzaVotiService;
+    @Autowired
+    private PaeseRepository paeseRepository;
+    @Autowired
+    private SistemaValutazioneRepository sistemaValutazioneRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private Long italia;
+    private Long germania;
+    private Long belgio;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+
+        italia = creaPaese("Italia", "29-30+", "27-28", "24-26", "18-23", ">18");
+        germania = creaPaese("Germania", "1.0-1.5", "1.6-2.5", "2.6-3.5", "3.6-4.0", "4.1-6.0");
+        belgio = creaPaese("Belgio", "17-20", "15.16.9", "13-14.9", "10-12.9", ">10");
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void sistemiLettiAPagineKeysetConUnaQueryPerPagina() {
+        statistics.clear();
+        PaginaDTO<SistemaValutazioneDTO> prima = sistemaValutazioneService.getAllSistemiValutazione(PaginaRichiestaDTO.prima(2));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(prima.contenuto()).extracting(SistemaValutazioneDTO::nomePaese).containsExactly("Italia", "Germania");
+        assertThat(prima.cursoreSuccessivo()).isNotNull();
+
+        PaginaDTO<SistemaValutazioneDTO> seconda = sistemaValutazioneService.getAllSistemiValutazione(
+                new PaginaRichiestaDTO(prima.cursoreSuccessivo(), 2));
+        assertThat(seconda.contenuto()).extracting(SistemaValutazioneDTO::nomePaese).containsExactly("Belgio");
+        assertThat(seconda.cursoreSuccessivo()).isNull();
+    }
+
+    @Test
+    void convertiLibrettoRisolveOgniSistemaUnaVolta() {
+        List<VotoDaConvertireDTO> voti = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            voti.add(i % 2 == 0 ? new VotoDaConvertireDTO(italia, "28") : new VotoDaConvertireDTO(germania, "1,2"));
+        }
+        ConversioneVotiDTO richiesta = new ConversioneVotiDTO(belgio, voti);
+
+        statistics.clear();
+        RisultatoConversioneVotiDTO freddo = sistemaValutazioneService.convertiVoti(richiesta);
+        // Una query per i convertitori e una per la matrice delle equivalenze, caricata alla prima richiesta
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+        statistics.clear();
+        sistemaValutazioneService.convertiVoti(richiesta);
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+
+        assertThat(freddo.voti()).hasSize(500);
+        // Il voto equivalente coincide con quello di /voti/equivalenza; la fascia è il testo del sistema di destinazione
+        assertThat(freddo.voti().get(0)).isEqualTo(new VotoConvertitoDTO(italia, "28", TipoVoto.B,
+                equivalenzaVotiService.convertiVoto(italia, belgio, "28").votoEquivalente(), "15.16.9"));
+        assertThat(freddo.voti().get(1)).isEqualTo(new VotoConvertitoDTO(germania, "1,2", TipoVoto.A,
+                equivalenzaVotiService.convertiVoto(germania, belgio, "1,2").votoEquivalente(), "17-20"));
+        assertThat(freddo.voti().get(0).votoEquivalente()).isNotNull();
+    }
+
+    @Test
+    void determinaTipoVotoUsaIlConvertitoreInCache() {
+        assertThat(sistemaValutazioneService.determinaTipoVoto("25", italia)).isEqualTo(TipoVoto.C);
+
+        statistics.clear();
+        assertThat(sistemaValutazioneService.determinaTipoVoto("3", germania)).isEqualTo(TipoVoto.C);
+        assertThat(sistemaValutazioneService.determinaTipoVoto("30", italia)).isEqualTo(TipoVoto.A);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    private Long creaPaese(String nome, String a, String b, String c, String de, String f) {
+        Paese paese = paeseRepository.save(Paese.builder().nome(nome).anniSculaObbligaroia(12).build());
+        sistemaValutazioneRepository.save(SistemaValutazione.builder()
+                .paese(paese)
+                .votoA(a).votoB(b).votoC(c).votoDE(de).votoF(f)
+                .scalaTipo(TipoScala.NUMERICO)
+                .build());
+        return paese.getId();
+    }
+}
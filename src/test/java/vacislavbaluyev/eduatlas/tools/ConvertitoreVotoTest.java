@@ -0,0 +1,78 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import org.junit.jupiter.api.Test;
+import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
+import vacislavbaluyev.eduatlas.entities.TipoVoto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConvertitoreVotoTest {
+
+    private static ConvertitoreVoto compila(String a, String b, String c, String de, String f) {
+        return ConvertitoreVoto.compila(SistemaValutazione.builder()
+                .votoA(a).votoB(b).votoC(c).votoDE(de).votoF(f)
+                .build());
+    }
+
+    @Test
+    void classificaIntervalliESogliaAperta() {
+        ConvertitoreVoto italia = compila("29-30+", "27-28", "24-26", "18-23", ">18");
+
+        assertThat(italia.isCrescente()).isTrue();
+        assertThat(italia.classifica("30")).isEqualTo(TipoVoto.A);
+        assertThat(italia.classifica("28,5")).isEqualTo(TipoVoto.B);
+        assertThat(italia.classifica(" 25 ")).isEqualTo(TipoVoto.C);
+        assertThat(italia.classifica("18")).isEqualTo(TipoVoto.DE);
+        assertThat(italia.classifica("12")).isEqualTo(TipoVoto.F);
+        assertThat(italia.classifica("trenta")).isNull();
+    }
+
+    @Test
+    void gestisceScaleInverseEFormatiDelFoglio() {
+        ConvertitoreVoto germania = compila("1.0-1.5", "1.6-2.5", "2.6-3.5", "3.6-4.0", "4.1-6.0");
+        assertThat(germania.isCrescente()).isFalse();
+        assertThat(germania.classifica("1,3")).isEqualTo(TipoVoto.A);
+        assertThat(germania.classifica("1.55")).isEqualTo(TipoVoto.B);
+        assertThat(germania.classifica("5")).isEqualTo(TipoVoto.F);
+
+        // "09-ott" e "ott-13" sono 9-10 e 10-13 trasformati in date dal foglio di calcolo
+        ConvertitoreVoto olanda = compila("09-ott", "8", "7", "6", ">6");
+        assertThat(olanda.classifica("9.5")).isEqualTo(TipoVoto.A);
+        assertThat(olanda.classifica("7.4")).isEqualTo(TipoVoto.C);
+        assertThat(olanda.classifica("4")).isEqualTo(TipoVoto.F);
+
+        // "15.16.9" è l'intervallo 15-16.9
+        ConvertitoreVoto belgio = compila("17-20", "15.16.9", "13-14.9", "10-12.9", ">10");
+        assertThat(belgio.classifica("16")).isEqualTo(TipoVoto.B);
+        assertThat(belgio.classifica("16.95")).isEqualTo(TipoVoto.B);
+        assertThat(belgio.classifica("17-20")).isEqualTo(TipoVoto.A);
+    }
+
+    @Test
+    void ignoraValoriFuoriScalaEUsaLeFasceVicine() {
+        ConvertitoreVoto islanda = compila("9|10", "88.9", "7-7.9", "5-6.9", ">5");
+
+        assertThat(islanda.classifica("9")).isEqualTo(TipoVoto.A);
+        assertThat(islanda.classifica("8.5")).isEqualTo(TipoVoto.B);
+        assertThat(islanda.classifica("7.5")).isEqualTo(TipoVoto.C);
+    }
+
+    @Test
+    void classificaEtichette() {
+        ConvertitoreVoto malta = compila("A (70-100%)", "B (60-69%)", "C (50-59%)", "D (45-49%)", "F (>45%)");
+        assertThat(malta.classifica("b")).isEqualTo(TipoVoto.B);
+        assertThat(malta.classifica("D")).isEqualTo(TipoVoto.DE);
+        assertThat(malta.classifica("75")).isEqualTo(TipoVoto.A);
+        assertThat(malta.classifica("30")).isEqualTo(TipoVoto.F);
+
+        ConvertitoreVoto svezia = compila("VG (Väl godkänd)", "NA", "G (Godkänd)", "G (Godkänd)", "U (Underkänd)");
+        assertThat(svezia.haValoriNumerici()).isFalse();
+        assertThat(svezia.classifica("VG")).isEqualTo(TipoVoto.A);
+        assertThat(svezia.classifica("G")).isEqualTo(TipoVoto.C);
+        assertThat(svezia.classifica("u")).isEqualTo(TipoVoto.F);
+        assertThat(svezia.classifica("4")).isNull();
+
+        ConvertitoreVoto lettere = compila("A", "B", "C|D", "E", "F");
+        assertThat(lettere.classifica("D")).isEqualTo(TipoVoto.C);
+    }
+}
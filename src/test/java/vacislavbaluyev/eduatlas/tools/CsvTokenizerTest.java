@@ -0,0 +1,54 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CsvTokenizerTest {
+
+    @Test
+    void gestisceVirgoletteSeparatoriEAcapoNeiCampi() {
+        CsvTokenizer campi = new CsvTokenizer(4);
+
+        campi.tokenizza(" Belgio ;\"Bachelor; \"\"Kunsten\"\"\t\";\"riga uno\nriga due\";x");
+
+        assertThat(campi.testo(0)).isEqualTo("Belgio");
+        assertThat(campi.testo(1)).isEqualTo("Bachelor; \"Kunsten\"");
+        assertThat(campi.testo(2)).isEqualTo("riga uno\nriga due");
+        assertThat(campi.testo(3)).isEqualTo("x");
+    }
+
+    @Test
+    void completaICampiMancantiEIgnoraQuelliInEccesso() {
+        CsvTokenizer campi = new CsvTokenizer(3);
+
+        campi.tokenizza("a;b;c;d;e");
+        assertThat(campi.testo(2)).isEqualTo("c");
+
+        // Il buffer viene riutilizzato: nessun residuo del record precedente
+        campi.tokenizza("z");
+        assertThat(campi.testo(0)).isEqualTo("z");
+        assertThat(campi.vuoto(1)).isTrue();
+        assertThat(campi.testoONull(2)).isNull();
+    }
+
+    @Test
+    void leggeGliInteriDirettamenteDaiCaratteri() {
+        CsvTokenizer campi = new CsvTokenizer(4);
+
+        campi.tokenizza("12|13*;3 anni;;99999999999");
+
+        assertThat(campi.intero(0, '|')).isEqualTo(12);
+        assertThat(campi.intero(0)).isEqualTo(1213);
+        assertThat(campi.intero(1)).isEqualTo(3);
+        assertThat(campi.intero(2)).isNull();
+        assertThatThrownBy(() -> campi.intero(3)).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    void riconosceLeVirgoletteAperte() {
+        assertThat(CsvTokenizer.virgoletteAperte("a;\"b")).isTrue();
+        assertThat(CsvTokenizer.virgoletteAperte("a;\"b\"\"c\";d")).isFalse();
+    }
+}
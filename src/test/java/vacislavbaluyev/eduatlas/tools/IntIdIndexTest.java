@@ -0,0 +1,62 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntIdIndexTest {
+
+    @Test
+    void inserimentiERimozioniMantengonoGliIdOrdinati() {
+        IntIdIndex indice = IntIdIndex.EMPTY
+                .with(3, 7L)
+                .with(4, 2L)
+                .with(3, 1L)
+                .with(5, 9L);
+
+        assertThat(indice.get(3)).containsExactly(1L, 7L);
+        assertThat(indice.chiavi()).containsExactly(3, 4, 5);
+
+        IntIdIndex senzaQuattro = indice.without(4, 2L);
+        assertThat(senzaQuattro.chiavi()).containsExactly(3, 5);
+        assertThat(indice.get(4)).containsExactly(2L);
+    }
+
+    @Test
+    void intervalloUnisceLeListeDelleChiavi() {
+        IntIdIndex indice = IntIdIndex.EMPTY
+                .with(2, 5L)
+                .with(3, 4L)
+                .with(3, 8L)
+                .with(4, 1L)
+                .with(6, 3L);
+
+        assertThat(indice.range(3, 4)).containsExactly(1L, 4L, 8L);
+        assertThat(indice.range(Integer.MIN_VALUE, Integer.MAX_VALUE)).containsExactly(1L, 3L, 4L, 5L, 8L);
+        assertThat(indice.range(5, 5)).isEmpty();
+    }
+
+    @Test
+    void costruzioneInBloccoEquivaleAgliInserimenti() {
+        IntIdIndex inBlocco = IntIdIndex.of(Map.of(3, List.of(7L, 1L, 7L), 5, List.of(9L), 4, List.of(2L)));
+        IntIdIndex incrementale = IntIdIndex.EMPTY.with(3, 7L).with(4, 2L).with(3, 1L).with(5, 9L);
+
+        assertThat(inBlocco.chiavi()).containsExactly(incrementale.chiavi());
+        assertThat(inBlocco.get(3)).containsExactly(incrementale.get(3));
+        assertThat(inBlocco.range(4, 5)).containsExactly(incrementale.range(4, 5));
+
+        StringIdIndex testuale = StringIdIndex.of(Map.of("6", List.of(5L, 2L, 5L)));
+        assertThat(testuale.get("6")).containsExactly(StringIdIndex.EMPTY.with("6", 5L).with("6", 2L).get("6"));
+        assertThat(SortedIds.of(List.of(9L, 1L, 9L, 4L))).containsExactly(1L, 4L, 9L);
+        assertThat(SortedIds.of(List.of())).isSameAs(SortedIds.EMPTY);
+    }
+
+    @Test
+    void intersezioneDiIdOrdinati() {
+        assertThat(SortedIds.intersect(new long[]{1, 3, 5, 7}, new long[]{2, 3, 7, 9})).containsExactly(3L, 7L);
+        assertThat(SortedIds.union(new long[]{1, 5}, new long[]{2, 5, 9})).containsExactly(1L, 2L, 5L, 9L);
+    }
+}
@@ -0,0 +1,69 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import org.junit.jupiter.api.Test;
+import vacislavbaluyev.eduatlas.entities.SistemaValutazione;
+import vacislavbaluyev.eduatlas.entities.TipoVoto;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class MatriceEquivalenzeTest {
+
+    private static final ScalaVoto ITALIA = scala("29-30+", "27-28", "24-26", "18-23", ">18");
+    private static final ScalaVoto GERMANIA = scala("1.0-1.5", "1.6-2.5", "2.6-3.5", "3.6-4.0", "4.1-6.0");
+    private static final ScalaVoto SPAGNA = scala("9|10", "7-8.9", "6-6.9", "5-5.9", ">5");
+    private static final ScalaVoto SVEZIA = scala("VG (Väl godkänd)", "NA", "G (Godkänd)", "G (Godkänd)", "U (Underkänd)");
+
+    private static ScalaVoto scala(String a, String b, String c, String de, String f) {
+        return ScalaVoto.of(ConvertitoreVoto.compila(SistemaValutazione.builder()
+                .votoA(a).votoB(b).votoC(c).votoDE(de).votoF(f)
+                .build()));
+    }
+
+    @Test
+    void convertePreservandoLeFasce() {
+        MatriceEquivalenze matrice = MatriceEquivalenze.of(Map.of(1L, ITALIA, 2L, GERMANIA, 3L, SPAGNA));
+        MatriceEquivalenze.Mappatura italiaGermania = matrice.mappatura(1L, 2L);
+
+        assertThat(italiaGermania.converti(30)).isLessThan(1.5);
+        assertThat(GERMANIA.tipoVoto(GERMANIA.posizione(italiaGermania.converti(28)))).isEqualTo(TipoVoto.B);
+        assertThat(GERMANIA.tipoVoto(GERMANIA.posizione(italiaGermania.converti(20)))).isEqualTo(TipoVoto.DE);
+        // Più alto in Italia significa più basso in Germania
+        assertThat(italiaGermania.converti(25)).isGreaterThan(italiaGermania.converti(27));
+
+        // Andata e ritorno restituiscono il voto di partenza
+        double spagnolo = matrice.mappatura(1L, 3L).converti(26);
+        assertThat(matrice.mappatura(3L, 1L).converti(spagnolo)).isCloseTo(26, within(1e-9));
+        assertThat(matrice.mappatura(1L, 1L).converti(22)).isCloseTo(22, within(1e-9));
+    }
+
+    @Test
+    void scaleSenzaValoriNumericiNonHannoCorrispondenze() {
+        assertThat(SVEZIA).isNull();
+
+        MatriceEquivalenze matrice = MatriceEquivalenze.of(Map.of(1L, ITALIA)).with(4L, null);
+        assertThat(matrice.contiene(4L)).isTrue();
+        assertThat(matrice.mappatura(1L, 4L)).isNull();
+        assertThat(matrice.mappatura(1L, 1L)).isNotNull();
+    }
+
+    @Test
+    void aggiornamentoIncrementaleEquivaleAllaRicostruzione() {
+        MatriceEquivalenze incrementale = MatriceEquivalenze.of(Map.of(1L, ITALIA, 3L, SPAGNA))
+                .with(2L, SPAGNA)
+                .with(2L, GERMANIA)
+                .with(5L, ITALIA)
+                .without(5L);
+        MatriceEquivalenze completa = MatriceEquivalenze.of(Map.of(1L, ITALIA, 2L, GERMANIA, 3L, SPAGNA));
+
+        assertThat(incrementale.dimensione()).isEqualTo(3);
+        for (long da = 1; da <= 3; da++) {
+            for (long a = 1; a <= 3; a++) {
+                assertThat(incrementale.mappatura(da, a).da()).containsExactly(completa.mappatura(da, a).da());
+                assertThat(incrementale.mappatura(da, a).a()).containsExactly(completa.mappatura(da, a).a());
+            }
+        }
+    }
+}
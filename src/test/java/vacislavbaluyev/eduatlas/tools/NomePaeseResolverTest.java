@@ -0,0 +1,40 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NomePaeseResolverTest {
+
+    private static final String ALIAS = """
+            Austria;Österreich;Oesterreich
+            Belgium;Belgio;België;Belgique;Belgien
+            Slovakia;Slovacchia;Slovensko
+            Slovenia;Slovenija
+            USA;Stati Uniti;US
+            """;
+
+    @Test
+    void risolveAliasETypo() throws IOException {
+        Map<String, List<String>> alias = NomePaeseResolver.caricaAlias(
+                new ByteArrayInputStream(ALIAS.getBytes(StandardCharsets.UTF_8)));
+        NomePaeseResolver resolver = NomePaeseResolver.of(
+                Map.of(1L, "Austria", 2L, "Belgium", 3L, "Slovakia", 4L, "Slovenia", 5L, "USA"), alias);
+
+        assertThat(resolver.risolvi("Belgio")).isEqualTo(OptionalLong.of(2L));
+        assertThat(resolver.risolvi("belgium")).isEqualTo(OptionalLong.of(2L));
+        assertThat(resolver.risolvi("Österreich")).isEqualTo(OptionalLong.of(1L));
+        assertThat(resolver.risolvi("osterreich")).isEqualTo(OptionalLong.of(1L));
+        assertThat(resolver.risolvi("Belgim")).isEqualTo(OptionalLong.of(2L));
+        assertThat(resolver.risolvi("us")).isEqualTo(OptionalLong.of(5L));
+        assertThat(resolver.risolvi("Slovnia")).isEqualTo(OptionalLong.of(4L));
+        assertThat(resolver.risolvi("Atlantide")).isEmpty();
+    }
+}
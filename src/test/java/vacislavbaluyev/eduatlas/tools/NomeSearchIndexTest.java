@@ -0,0 +1,52 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NomeSearchIndexTest {
+
+    private final NomeSearchIndex indice = NomeSearchIndex.EMPTY
+            .with(1L, "Czech Republic")
+            .with(2L, "Österreich")
+            .with(3L, "Slovakia")
+            .with(4L, "Slovenia")
+            .with(5L, "Cyprus");
+
+    @Test
+    void ordinaPrefissiPrimaDelleSottostringhe() {
+        assertThat(indice.cerca("slov", 10)).containsExactly(3L, 4L);
+        assertThat(indice.cerca("rep", 10)).containsExactly(1L);
+        assertThat(indice.cerca("pub", 10)).containsExactly(1L);
+        assertThat(indice.cerca("c", 10)).containsExactly(5L, 1L, 2L);
+    }
+
+    @Test
+    void ignoraAccentiEMaiuscole() {
+        assertThat(indice.cerca("OSTERR", 10)).containsExactly(2L);
+        assertThat(indice.cerca("reich", 10)).containsExactly(2L);
+    }
+
+    @Test
+    void aggiornamentiIncrementali() {
+        NomeSearchIndex senzaSlovacchia = indice.without(3L);
+
+        assertThat(senzaSlovacchia.cerca("slov", 10)).containsExactly(4L);
+        assertThat(indice.cerca("slov", 10)).containsExactly(3L, 4L);
+        assertThat(senzaSlovacchia.with(6L, "Slovakia").cerca("akia", 10)).containsExactly(6L);
+        assertThat(indice.cerca("slov", 1)).containsExactly(3L);
+    }
+
+    @Test
+    void costruzioneInBloccoEquivaleAgliInserimenti() {
+        NomeSearchIndex inBlocco = NomeSearchIndex.of(Map.of(
+                1L, "Czech Republic", 2L, "Österreich", 3L, "Slovakia", 4L, "Slovenia", 5L, "Cyprus"));
+
+        for (String query : new String[]{"slov", "rep", "c", "OSTERR", "akia", "cyprus"}) {
+            assertThat(inBlocco.cerca(query, 10)).containsExactly(indice.cerca(query, 10));
+        }
+        assertThat(inBlocco.without(3L).with(6L, "Slovakia").cerca("slov", 10)).containsExactly(6L, 4L);
+    }
+}
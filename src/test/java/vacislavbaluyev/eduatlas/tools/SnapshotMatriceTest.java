@@ -0,0 +1,110 @@
+package vacislavbaluyev.eduatlas.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import vacislavbaluyev.eduatlas.entities.TipoScala;
+import vacislavbaluyev.eduatlas.payload.RigaMatriceDTO;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnapshotMatriceTest {
+
+    private static final List<RigaMatriceDTO> RIGHE = List.of(
+            new RigaMatriceDTO(1, "Italia", 13, "29-30", "27-28", "24-26", "18-23", ">18",
+                    TipoScala.NUMERICO, 3, 60, "6", "Laurea"),
+            new RigaMatriceDTO(2, "Côte d'Ivoire", null, "A", "B", null, null, "F",
+                    TipoScala.LETTERE, null, 60, "6", null),
+            new RigaMatriceDTO(3, "Senza sistemi", 9, null, null, null, null, null,
+                    null, null, null, null, null));
+
+    @Test
+    void rileggeLeRigheDaUnFileMappato(@TempDir Path cartella) throws IOException {
+        Path file = cartella.resolve("matrice.snapshot");
+        ByteBuffer scritto = SnapshotMatrice.scrivi(RIGHE);
+        Files.write(file, scritto.array());
+
+        SnapshotMatrice snapshot = SnapshotMatrice.apri(file);
+        List<RigaMatriceDTO> lette = new ArrayList<>();
+
+        assertThat(snapshot.leggi(lette::add)).isEqualTo(3);
+        assertThat(lette).containsExactlyElementsOf(RIGHE);
+        assertThat(snapshot.riga(1).nome()).isEqualTo("Côte d'Ivoire");
+    }
+
+    @Test
+    void rifiutaUnFileCorrottoODiUnAltroFormato() {
+        ByteBuffer corrotto = SnapshotMatrice.scrivi(RIGHE);
+        corrotto.put(corrotto.limit() - 1, (byte) 7);
+        assertThatThrownBy(() -> SnapshotMatrice.di(corrotto))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum");
+
+        ByteBuffer altroFormato = SnapshotMatrice.scrivi(RIGHE).putInt(0, 0x504b0304);
+        assertThatThrownBy(() -> SnapshotMatrice.di(altroFormato))
+                .isInstanceOf(IOException.class);
+
+        ByteBuffer troncato = SnapshotMatrice.scrivi(RIGHE).limit(40);
+        assertThatThrownBy(() -> SnapshotMatrice.di(troncato))
+                .isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void ilChecksumCopreAncheLIntestazione() {
+        ByteBuffer buffer = SnapshotMatrice.scrivi(RIGHE);
+        // Un byte in meno di stringhe cade nel riempimento e lascia invariata la dimensione del file
+        buffer.putInt(20, buffer.getInt(20) - 1);
+
+        assertThatThrownBy(() -> SnapshotMatrice.di(buffer))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("checksum");
+    }
+
+    @Test
+    void segnalaIndiciFuoriIntervalloConIOException() throws IOException {
+        ByteBuffer stringaInesistente = SnapshotMatrice.scrivi(RIGHE);
+        campo(stringaInesistente, 0, 2, 1_000);
+        SnapshotMatrice conStringaInesistente = SnapshotMatrice.di(ricalcolaChecksum(stringaInesistente));
+        assertThat(conStringaInesistente.riga(1).nome()).isEqualTo("Côte d'Ivoire");
+        assertThatThrownBy(() -> conStringaInesistente.riga(0))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("indice di stringa 1000");
+        assertThatThrownBy(() -> conStringaInesistente.leggi(riga -> { }))
+                .isInstanceOf(IOException.class);
+
+        ByteBuffer scalaInesistente = SnapshotMatrice.scrivi(RIGHE);
+        campo(scalaInesistente, 1, 7, TipoScala.values().length);
+        SnapshotMatrice conScalaInesistente = SnapshotMatrice.di(ricalcolaChecksum(scalaInesistente));
+        assertThatThrownBy(() -> conScalaInesistente.riga(1))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("tipo di scala");
+
+        ByteBuffer offsetDecrescente = SnapshotMatrice.scrivi(RIGHE);
+        offsetDecrescente.putInt(24 + Integer.BYTES, 1_000);
+        assertThatThrownBy(() -> SnapshotMatrice.di(ricalcolaChecksum(offsetDecrescente)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("offset");
+    }
+
+    // I record a larghezza fissa (12 int) occupano la coda del file
+    private static void campo(ByteBuffer buffer, int paese, int campo, int valore) {
+        int offsetRecord = buffer.limit() - RIGHE.size() * 12 * Integer.BYTES;
+        buffer.putInt(offsetRecord + (paese * 12 + campo) * Integer.BYTES, valore);
+    }
+
+    // Come un file scritto da un programma difettoso: contenuto incoerente ma checksum corretto
+    private static ByteBuffer ricalcolaChecksum(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(0, 16));
+        crc.update(buffer.slice(20, buffer.limit() - 20));
+        return buffer.putInt(16, (int) crc.getValue());
+    }
+}